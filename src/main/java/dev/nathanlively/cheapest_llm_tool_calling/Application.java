@@ -1,13 +1,26 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@EnableConfigurationProperties(ConversationProperties.class)
 public class Application {
 
 	public static void main(String[] args) {
 		SpringApplication.run(Application.class, args);
 	}
 
+	@Bean
+	ConversationService conversationService(ChatClient.Builder chatClientBuilder, ChatMemory chatMemory,
+											ConversationProperties properties) {
+		ChatClient chatClient = chatClientBuilder.defaultSystem(properties.systemPrompt()).build();
+		return new ConversationService(chatClient, chatMemory, MockMixingConsoleService::new,
+				properties.maxSessions());
+	}
+
 }
@@ -0,0 +1,72 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The tools of {@link MockMixingConsoleService} over a {@link SimulatedConsoleTransport}: every call returns as
+ * soon as its request is on the wire and completes when the console answers, instead of sleeping on the
+ * caller's thread. The console's state is a {@link MockMixingConsoleService}, so both answer alike.
+ */
+public class AsyncMixingConsoleService {
+    private final SimulatedConsoleTransport transport;
+    private final MockMixingConsoleService console = new MockMixingConsoleService();
+
+    public AsyncMixingConsoleService(SimulatedConsoleTransport transport) {
+        this.transport = transport;
+    }
+
+    @Tool(description = "Get current value of a mixer parameter", resultConverter = AsyncToolResultConverter.class)
+    public CompletableFuture<MockMixingConsoleService.Response> getParameter(
+            @ToolParam(description = "API path to get (e.g., ch.0.cfg.name)")
+            String path) {
+        return transport.roundTrip(() -> console.read(path));
+    }
+
+    @Tool(description = "Make a single API call to the Mixing Station console. Use 0-based channel indexing.",
+            resultConverter = AsyncToolResultConverter.class)
+    public CompletableFuture<MockMixingConsoleService.Response> setSingleParameter(
+            @ToolParam(description = "API call with path and value")
+            ApiCall apiCall) {
+        return transport.roundTrip(() -> console.write(apiCall));
+    }
+
+    @Tool(description = "Make multiple API calls in sequence for complex mixer setup. Use 0-based channel indexing for all paths.",
+            resultConverter = AsyncToolResultConverter.class)
+    public CompletableFuture<List<MockMixingConsoleService.Response>> setMultipleParameters(
+            @ToolParam(description = "List of API calls to execute in order")
+            List<ApiCall> apiCalls) {
+        // Each call goes out once the previous one is acknowledged, as on the blocking console
+        CompletableFuture<List<MockMixingConsoleService.Response>> responses =
+                CompletableFuture.completedFuture(new ArrayList<>());
+        for (ApiCall call : apiCalls) {
+            responses = responses.thenCompose(done -> transport.roundTrip(() -> {
+                done.add(console.write(call));
+                return done;
+            }));
+        }
+        return responses;
+    }
+
+    // Test helpers
+    public int getTotalCallCount() {
+        return console.getTotalCallCount();
+    }
+
+    public List<ApiCall> getCapturedApiCalls() {
+        return console.getCapturedApiCalls();
+    }
+
+    public @Nullable Object getValue(String path) {
+        return console.getValue(path);
+    }
+
+    public void reset() {
+        console.reset();
+    }
+}
@@ -0,0 +1,43 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.tool.execution.DefaultToolCallResultConverter;
+import org.springframework.ai.tool.execution.ToolCallResultConverter;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Lets {@code @Tool} methods return a {@link CompletionStage} or {@link Mono}. When the tool calls run under a
+ * {@link PendingToolResults} collector, the result is not awaited here: it is deferred and serialized once it
+ * completes, and the collector waits for all of a response's results together. Otherwise Spring AI needs the
+ * answer synchronously, so it is awaited on the thread executing the tool call.
+ */
+public class AsyncToolResultConverter implements ToolCallResultConverter {
+    private final ToolCallResultConverter delegate = new DefaultToolCallResultConverter();
+
+    @Override
+    public String convert(@Nullable Object result, @Nullable Type returnType) {
+        CompletableFuture<?> future = result instanceof Mono<?> mono ? mono.toFuture()
+                : result instanceof CompletionStage<?> stage ? stage.toCompletableFuture()
+                : null;
+        if (future == null) {
+            return delegate.convert(result, returnType);
+        }
+        Type valueType = valueType(returnType);
+        PendingToolResults pending = PendingToolResults.current();
+        if (pending != null) {
+            return pending.defer(future.thenApply(value -> delegate.convert(value, valueType)));
+        }
+        return delegate.convert(PendingToolResults.join(future), valueType);
+    }
+
+    private static @Nullable Type valueType(@Nullable Type returnType) {
+        return returnType instanceof ParameterizedType parameterized
+                ? parameterized.getActualTypeArguments()[0]
+                : null;
+    }
+}
@@ -0,0 +1,47 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link MockWeatherService} as a reactive tool: the lookup is a {@link Mono} that completes after the simulated
+ * service latency on Reactor's timer instead of sleeping on the caller's thread.
+ */
+public class AsyncWeatherService {
+    private final Duration latency;
+    private final AtomicInteger callCount = new AtomicInteger(0);
+
+    public AsyncWeatherService(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Tool(description = "Get weather information for a specific location", resultConverter = AsyncToolResultConverter.class)
+    public Mono<MockWeatherService.WeatherResponse> getWeather(
+            @ToolParam(description = "The city and state e.g. San Francisco, CA")
+            String location,
+            @ToolParam(description = "Temperature unit")
+            MockWeatherService.Unit unit) {
+        return Mono.delay(latency).map(ignored -> {
+            callCount.incrementAndGet();
+
+            double temperature = 0;
+            if (location.contains("Paris")) {
+                temperature = 15;
+            } else if (location.contains("Tokyo")) {
+                temperature = 10;
+            } else if (location.contains("San Francisco")) {
+                temperature = 30;
+            }
+
+            return new MockWeatherService.WeatherResponse(temperature, 15, 8, 12, 53, 45, unit);
+        });
+    }
+
+    public int getTotalCallCount() {
+        return callCount.get();
+    }
+}
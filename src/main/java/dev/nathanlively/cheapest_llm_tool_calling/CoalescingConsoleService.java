@@ -0,0 +1,188 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sits in front of a {@link MockMixingConsoleService} and exposes the same tools, but holds writes for a short
+ * window before sending them. Within the window a later write to a path replaces the earlier one, and a write
+ * of the value the console already holds, or is being sent, is dropped, so only the last value of each
+ * parameter goes over the wire. Pending writes are sent when the window closes, before any read, and on {@link #flush()}, which the
+ * benchmark runner calls at the end of every turn.
+ */
+public class CoalescingConsoleService {
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingConsoleService.class);
+
+    private final MockMixingConsoleService console;
+    private final Duration window;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "console-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Insertion order is the order paths were last written
+    private final Map<String, ApiCall> pending = new LinkedHashMap<>();
+    // The batch flush() is sending, which the console holds once it is sent; guarded by pending
+    private final Map<String, ApiCall> inFlight = new HashMap<>();
+    private final Object sendLock = new Object();
+    private final AtomicInteger received = new AtomicInteger();
+    private final AtomicInteger forwarded = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicInteger superseded = new AtomicInteger();
+
+    public CoalescingConsoleService(MockMixingConsoleService console, Duration window) {
+        this.console = console;
+        this.window = window;
+    }
+
+    @Tool(description = "Get current value of a mixer parameter")
+    public MockMixingConsoleService.Response getParameter(
+            @ToolParam(description = "API path to get (e.g., ch.0.cfg.name)")
+            String path) {
+        // Reads must see the writes the model already believes are applied
+        flush();
+        return console.getParameter(path);
+    }
+
+    @Tool(description = "Make a single API call to the Mixing Station console. Use 0-based channel indexing.")
+    public MockMixingConsoleService.Response setSingleParameter(
+            @ToolParam(description = "API call with path and value")
+            ApiCall apiCall) {
+        enqueue(List.of(apiCall));
+        return accepted(apiCall);
+    }
+
+    @Tool(description = "Make multiple API calls in sequence for complex mixer setup. Use 0-based channel indexing for all paths.")
+    public List<MockMixingConsoleService.Response> setMultipleParameters(
+            @ToolParam(description = "List of API calls to execute in order")
+            List<ApiCall> apiCalls) {
+        enqueue(apiCalls);
+        return apiCalls.stream().map(CoalescingConsoleService::accepted).toList();
+    }
+
+    private static MockMixingConsoleService.Response accepted(ApiCall apiCall) {
+        return new MockMixingConsoleService.Response(apiCall.path(), apiCall.value(), "SUCCESS");
+    }
+
+    private void enqueue(List<ApiCall> apiCalls) {
+        received.addAndGet(apiCalls.size());
+        boolean openWindow;
+        synchronized (pending) {
+            openWindow = pending.isEmpty();
+            for (ApiCall apiCall : apiCalls) {
+                ApiCall previous = pending.remove(apiCall.path());
+                if (previous != null && Objects.equals(previous.value(), apiCall.value())) {
+                    duplicates.incrementAndGet();
+                    pending.put(apiCall.path(), apiCall);
+                    continue;
+                }
+                if (previous != null) {
+                    superseded.incrementAndGet();
+                }
+                // A write back to the value the console will hold is dropped along with the one it supersedes
+                if (Objects.equals(sentValue(apiCall.path()), apiCall.value())) {
+                    duplicates.incrementAndGet();
+                } else {
+                    pending.put(apiCall.path(), apiCall);
+                }
+            }
+            openWindow &= !pending.isEmpty();
+        }
+        if (openWindow) {
+            scheduler.schedule(this::flush, window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Called holding the pending lock. The console's value is stale while a batch writing the path is in flight
+    private @Nullable Object sentValue(String path) {
+        ApiCall sending = inFlight.get(path);
+        return sending != null ? sending.value() : console.getValue(path);
+    }
+
+    /**
+     * Sends every pending write to the console, as one batch when there is more than one.
+     */
+    public void flush() {
+        synchronized (sendLock) {
+            List<ApiCall> batch;
+            synchronized (pending) {
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                batch.forEach(apiCall -> inFlight.put(apiCall.path(), apiCall));
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                if (batch.size() == 1) {
+                    console.setSingleParameter(batch.getFirst());
+                } else {
+                    console.setMultipleParameters(batch);
+                }
+            } finally {
+                synchronized (pending) {
+                    inFlight.clear();
+                }
+            }
+            forwarded.addAndGet(batch.size());
+            logger.debug("Sent {} coalesced writes", batch.size());
+        }
+    }
+
+    // Test helpers, mirroring the wrapped console so the benchmark runner can drive either
+    public int getTotalCallCount() {
+        return console.getTotalCallCount();
+    }
+
+    public List<ApiCall> getCapturedApiCalls() {
+        return console.getCapturedApiCalls();
+    }
+
+    public @Nullable Object getValue(String path) {
+        flush();
+        return console.getValue(path);
+    }
+
+    /**
+     * Writes the model made that never reached the console.
+     */
+    public int getSavedCallCount() {
+        return duplicates.get() + superseded.get();
+    }
+
+    public void reset() {
+        synchronized (sendLock) {
+            synchronized (pending) {
+                pending.clear();
+            }
+            console.reset();
+            received.set(0);
+            forwarded.set(0);
+            duplicates.set(0);
+            superseded.set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        int total = received.get();
+        return String.format("%d of %d writes sent (%d duplicate, %d superseded, %.1f%% saved)",
+                forwarded.get(), total, duplicates.get(), superseded.get(),
+                total > 0 ? 100.0 * getSavedCallCount() / total : 0);
+    }
+}
@@ -0,0 +1,198 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ChatMemory} that keeps each conversation's last {@code maxMessages} messages off the heap. Every
+ * conversation has a ring of encoded messages in a direct buffer (see {@link MessageCodec}); the heap holds only
+ * the ring's bookkeeping and the encoded system message. Messages are decoded when a conversation is read, so an idle conversation costs no
+ * {@link Message} objects, and the ring buffer is reused as old messages fall out of the window.
+ * <p>
+ * Like {@link org.springframework.ai.chat.memory.MessageWindowChatMemory}, a new system message replaces the
+ * previous one and counts toward {@code maxMessages}, so a conversation never returns more than that; the oldest
+ * other messages make room for it. Message metadata and media are not kept.
+ */
+public class CompactChatMemory implements ChatMemory {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxMessages;
+    private final ConcurrentHashMap<String, Ring> conversations = new ConcurrentHashMap<>();
+    private final AtomicLong offHeapBytes = new AtomicLong();
+
+    public CompactChatMemory(int maxMessages) {
+        if (maxMessages < 1) {
+            throw new IllegalArgumentException("maxMessages must be positive");
+        }
+        this.maxMessages = maxMessages;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        addEncoded(conversationId, messages.stream().map(MessageCodec::encode).toList());
+    }
+
+    /** Adds messages already in {@link MessageCodec} form. */
+    void addEncoded(String conversationId, List<byte[]> records) {
+        Ring ring = conversations.computeIfAbsent(conversationId, id -> new Ring());
+        synchronized (ring) {
+            for (byte[] record : records) {
+                if (MessageCodec.isSystem(record)) {
+                    ring.system = record;
+                    ring.trim();
+                } else {
+                    ring.append(record);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        // Decoded outside the lock so readers do not hold up writers
+        List<byte[]> records = getEncoded(conversationId);
+        List<Message> messages = new ArrayList<>(records.size());
+        for (byte[] record : records) {
+            messages.add(MessageCodec.decode(ByteBuffer.wrap(record)));
+        }
+        return messages;
+    }
+
+    /** The conversation's messages in {@link MessageCodec} form, system message first. */
+    List<byte[]> getEncoded(String conversationId) {
+        Ring ring = conversations.get(conversationId);
+        if (ring == null) {
+            return List.of();
+        }
+        synchronized (ring) {
+            return ring.records();
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        Ring ring = conversations.remove(conversationId);
+        if (ring != null) {
+            synchronized (ring) {
+                offHeapBytes.addAndGet(-ring.bytes.capacity());
+            }
+        }
+    }
+
+    public int getConversationCount() {
+        return conversations.size();
+    }
+
+    /** Direct-buffer capacity held by all conversations. */
+    public long getOffHeapBytes() {
+        return offHeapBytes.get();
+    }
+
+    /**
+     * Encoded messages laid end to end in a circular byte buffer, oldest first. Free space is always the
+     * contiguous (wrapping) stretch from the end of the newest message to the start of the oldest.
+     */
+    private final class Ring {
+        ByteBuffer bytes = allocate(INITIAL_CAPACITY);
+        final int[] starts = new int[maxMessages];
+        final int[] lengths = new int[maxMessages];
+        int first;
+        int count;
+        int end;
+        int used;
+        byte @Nullable [] system;
+
+        void append(byte[] record) {
+            if (window() == 0) {
+                return;
+            }
+            if (count == window()) {
+                evictOldest();
+            }
+            if (used + record.length > bytes.capacity()) {
+                grow(used + record.length);
+            }
+            int slot = (first + count) % maxMessages;
+            starts[slot] = end;
+            lengths[slot] = record.length;
+            write(end, record);
+            end = (end + record.length) % bytes.capacity();
+            used += record.length;
+            count++;
+        }
+
+        List<byte[]> records() {
+            List<byte[]> records = new ArrayList<>(count + 1);
+            if (system != null) {
+                records.add(system);
+            }
+            for (int i = 0; i < count; i++) {
+                int slot = (first + i) % maxMessages;
+                records.add(read(starts[slot], lengths[slot]));
+            }
+            return records;
+        }
+
+        /** Evicts the oldest messages beyond the window, which shrinks by one once there is a system message. */
+        void trim() {
+            while (count > window()) {
+                evictOldest();
+            }
+        }
+
+        private int window() {
+            return system != null ? maxMessages - 1 : maxMessages;
+        }
+
+        private void evictOldest() {
+            used -= lengths[first];
+            first = (first + 1) % maxMessages;
+            count--;
+        }
+
+        private void grow(int needed) {
+            int capacity = bytes.capacity();
+            while (capacity < needed) {
+                capacity *= 2;
+            }
+            ByteBuffer larger = allocate(capacity);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int slot = (first + i) % maxMessages;
+                byte[] record = read(starts[slot], lengths[slot]);
+                larger.put(position, record);
+                starts[slot] = position;
+                position += record.length;
+            }
+            offHeapBytes.addAndGet(-bytes.capacity());
+            bytes = larger;
+            end = position;
+        }
+
+        private void write(int position, byte[] record) {
+            int head = Math.min(record.length, bytes.capacity() - position);
+            bytes.put(position, record, 0, head);
+            bytes.put(0, record, head, record.length - head);
+        }
+
+        private byte[] read(int position, int length) {
+            byte[] record = new byte[length];
+            int head = Math.min(length, bytes.capacity() - position);
+            bytes.get(position, record, 0, head);
+            bytes.get(0, record, head, length - head);
+            return record;
+        }
+
+        private ByteBuffer allocate(int capacity) {
+            offHeapBytes.addAndGet(capacity);
+            return ByteBuffer.allocateDirect(capacity);
+        }
+    }
+}
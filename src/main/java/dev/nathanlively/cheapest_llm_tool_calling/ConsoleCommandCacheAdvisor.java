@@ -0,0 +1,310 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves repeated console commands without the model. After a turn, the {@link ApiCall} plan the model
+ * executed is cached under the normalized user prompt. When the same command comes again, the plan is
+ * applied to the console directly and the recorded answer is returned.
+ * <p>
+ * Only self-contained commands are cached. Every channel written must be named by number in the prompt,
+ * and every value written must appear in the prompt or in a value the turn read from the console. That way
+ * "rename channel 1 to Kick" is cached, but "rename the first channel you renamed" is not, because its plan
+ * depends on the conversation. Plans that read the console are tied to the values they read: an entry is
+ * dropped once any of those parameters has changed. Entries are evicted least recently used first.
+ */
+public class ConsoleCommandCacheAdvisor implements CallAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(ConsoleCommandCacheAdvisor.class);
+    private static final Pattern CHANNEL_PATH = Pattern.compile("ch\\.(\\d{1,3})\\.");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[.!?]+$");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private record Plan(List<ApiCall> writes, Map<String, @Nullable Object> reads, String answer, long modelMs) {
+    }
+
+    /** A tool call of the turn, with the console values it read as they were when it ran. */
+    private record ToolInvocation(String name, String input, Map<String, @Nullable Object> reads) {
+    }
+
+    private final MockMixingConsoleService console;
+    private final Map<String, Plan> plans;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger uncacheable = new AtomicInteger();
+    private final AtomicInteger invalidations = new AtomicInteger();
+    private final AtomicLong savedMs = new AtomicLong();
+
+    public ConsoleCommandCacheAdvisor(MockMixingConsoleService console, int maxEntries) {
+        this.console = console;
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return "ConsoleCommandCacheAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // Inside chat memory, so cached turns are still remembered by the conversation
+        return Ordered.LOWEST_PRECEDENCE - 2;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        UserMessage userMessage = request.prompt().getUserMessage();
+        String prompt = userMessage.getText();
+        if (prompt == null || prompt.isBlank()) {
+            return chain.nextCall(request);
+        }
+        String key = normalize(prompt);
+
+        long start = System.nanoTime();
+        Plan plan = plans.get(key);
+        if (plan != null) {
+            if (isCurrent(plan)) {
+                hits.incrementAndGet();
+                console.setMultipleParameters(plan.writes());
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                savedMs.addAndGet(Math.max(0, plan.modelMs() - elapsedMs));
+                logger.debug("Served '{}' from cache with {} writes", key, plan.writes().size());
+                return ChatClientResponse.builder()
+                        .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(plan.answer())))))
+                        .context(request.context())
+                        .build();
+            }
+            invalidations.incrementAndGet();
+            plans.remove(key);
+        }
+        misses.incrementAndGet();
+
+        List<ToolInvocation> invocations = Collections.synchronizedList(new ArrayList<>());
+        ChatClientResponse response = chain.nextCall(recordingTools(request, invocations));
+        long modelMs = (System.nanoTime() - start) / 1_000_000;
+
+        ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse == null || chatResponse.getResult() == null) {
+            return response;
+        }
+        Plan recorded = toPlan(invocations, Objects.requireNonNullElse(chatResponse.getResult().getOutput().getText(), ""),
+                modelMs);
+        if (isSelfContained(recorded, prompt)) {
+            plans.put(key, recorded);
+        } else {
+            uncacheable.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * Case, surrounding whitespace, repeated spaces and trailing punctuation do not change a command.
+     */
+    static String normalize(String prompt) {
+        String collapsed = prompt.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    private boolean isCurrent(Plan plan) {
+        return plan.reads().entrySet().stream()
+                .allMatch(read -> Objects.equals(console.getValue(read.getKey()), read.getValue()));
+    }
+
+    private static boolean isSelfContained(Plan plan, String prompt) {
+        if (plan.writes().isEmpty()) {
+            return false;
+        }
+        String lowerPrompt = prompt.toLowerCase(Locale.ROOT);
+        List<String> promptNumbers = NUMBER.matcher(prompt).results()
+                .map(MatchResult::group)
+                .toList();
+        for (ApiCall write : plan.writes()) {
+            Matcher channel = CHANNEL_PATH.matcher(write.path());
+            // Operators count channels from 1, paths from 0
+            if (!channel.lookingAt()
+                || !promptNumbers.contains(String.valueOf(Integer.parseInt(channel.group(1)) + 1))) {
+                return false;
+            }
+            String value = String.valueOf(write.value()).toLowerCase(Locale.ROOT);
+            boolean fromPrompt = lowerPrompt.contains(value);
+            boolean fromRead = plan.reads().values().stream()
+                    .anyMatch(read -> read != null && value.contains(read.toString().toLowerCase(Locale.ROOT)));
+            if (!fromPrompt && !fromRead) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Plan toPlan(List<ToolInvocation> invocations, String answer, long modelMs) {
+        List<ApiCall> writes = new ArrayList<>();
+        Map<String, @Nullable Object> reads = new LinkedHashMap<>();
+        for (ToolInvocation invocation : invocations) {
+            invocation.reads().forEach(reads::putIfAbsent);
+            JsonNode input = parse(invocation);
+            if (input != null) {
+                collectWrites(input, writes);
+            }
+        }
+        return new Plan(List.copyOf(writes), reads, answer, modelMs);
+    }
+
+    private static @Nullable JsonNode parse(ToolInvocation invocation) {
+        try {
+            return objectMapper.readTree(invocation.input());
+        } catch (JsonProcessingException e) {
+            logger.debug("Ignoring unparseable tool input for {}", invocation.name());
+            return null;
+        }
+    }
+
+    private static void collectWrites(JsonNode node, List<ApiCall> writes) {
+        if (node.isArray()) {
+            node.forEach(element -> collectWrites(element, writes));
+        } else if (node.isObject()) {
+            JsonNode path = node.get("path");
+            if (path == null) {
+                node.forEach(child -> collectWrites(child, writes));
+            } else if (node.has("value")) {
+                writes.add(new ApiCall(path.asText(), node.get("value").asText()));
+            }
+        }
+    }
+
+    /** Paths a tool input reads: objects with a path and no value. */
+    private static void collectReads(JsonNode node, List<String> paths) {
+        if (node.isArray()) {
+            node.forEach(element -> collectReads(element, paths));
+        } else if (node.isObject()) {
+            JsonNode path = node.get("path");
+            if (path == null) {
+                node.forEach(child -> collectReads(child, paths));
+            } else if (!node.has("value")) {
+                paths.add(path.asText());
+            }
+        }
+    }
+
+    private ChatClientRequest recordingTools(ChatClientRequest request, List<ToolInvocation> invocations) {
+        if (!(request.prompt().getOptions() instanceof ToolCallingChatOptions options)
+            || options.getToolCallbacks().isEmpty()) {
+            return request;
+        }
+        ToolCallingChatOptions recordingOptions = options.copy();
+        recordingOptions.setToolCallbacks(options.getToolCallbacks().stream()
+                .map(callback -> recording(callback, invocations))
+                .toList());
+        return request.mutate()
+                .prompt(new Prompt(request.prompt().getInstructions(), recordingOptions))
+                .build();
+    }
+
+    private ToolCallback recording(ToolCallback delegate, List<ToolInvocation> invocations) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return delegate.getToolDefinition();
+            }
+
+            @Override
+            public ToolMetadata getToolMetadata() {
+                return delegate.getToolMetadata();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                String result = delegate.call(toolInput);
+                invocations.add(invocation(toolInput));
+                return result;
+            }
+
+            @Override
+            public String call(String toolInput, @Nullable ToolContext toolContext) {
+                String result = delegate.call(toolInput, toolContext);
+                invocations.add(invocation(toolInput));
+                return result;
+            }
+
+            private ToolInvocation invocation(String toolInput) {
+                ToolInvocation invocation = new ToolInvocation(delegate.getToolDefinition().name(), toolInput, Map.of());
+                JsonNode input = parse(invocation);
+                if (input == null) {
+                    return invocation;
+                }
+                List<String> paths = new ArrayList<>();
+                collectReads(input, paths);
+                Map<String, @Nullable Object> reads = new LinkedHashMap<>();
+                paths.forEach(path -> reads.put(path, console.getValue(path)));
+                return new ToolInvocation(invocation.name(), toolInput, reads);
+            }
+        };
+    }
+
+    public void invalidateAll() {
+        plans.clear();
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        int total = hits.get() + misses.get();
+        return total > 0 ? (double) hits.get() / total : 0;
+    }
+
+    /**
+     * Model time the hits did not spend: each hit's recorded turn time minus the time it took to serve.
+     */
+    public long getSavedMs() {
+        return savedMs.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d uncacheable, %d invalidated, %dms saved",
+                hits.get(), misses.get(), getHitRate() * 100, uncacheable.get(), invalidations.get(), savedMs.get());
+    }
+}
@@ -0,0 +1,137 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gives the model the console's current state instead of making it rebuild that state from the conversation.
+ * Runs just inside chat memory: the state is appended to the system message as {@code path=value} lines, and
+ * the history chat memory added is cut to the last {@code maxHistoryMessages} plain user and assistant
+ * messages, with tool calls and tool results dropped. "What did you name channel 1?" is then answered from
+ * the state even after the turn that named it has left the memory window.
+ * <p>
+ * The state text is rebuilt only when {@link MockMixingConsoleService#getStateVersion()} has moved since the
+ * last request, so turns that read but never write reuse it.
+ */
+public class ConsoleStateSnapshotAdvisor implements CallAdvisor {
+    private static final String HEADER =
+            "Current console state (authoritative, newer than anything earlier in the conversation):";
+
+    private record Rendered(long version, String text) {
+    }
+
+    private final MockMixingConsoleService console;
+    private final int maxHistoryMessages;
+    private volatile Rendered rendered = new Rendered(-1, "");
+    private final AtomicInteger renders = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong trimmedMessages = new AtomicLong();
+
+    public ConsoleStateSnapshotAdvisor(MockMixingConsoleService console, int maxHistoryMessages) {
+        if (maxHistoryMessages < 0) {
+            throw new IllegalArgumentException("maxHistoryMessages must not be negative");
+        }
+        this.console = console;
+        this.maxHistoryMessages = maxHistoryMessages;
+    }
+
+    @Override
+    public String getName() {
+        return "ConsoleStateSnapshotAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // Just after chat memory, so the history it adds is there to trim
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER + 1;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        requests.incrementAndGet();
+        List<Message> instructions = request.prompt().getInstructions();
+        int current = instructions.size() - 1;
+        while (current > 0 && !(instructions.get(current) instanceof UserMessage)) {
+            current--;
+        }
+
+        List<String> systemTexts = new ArrayList<>();
+        List<Message> history = new ArrayList<>();
+        List<Message> trailing = new ArrayList<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            Message message = instructions.get(i);
+            if (message instanceof SystemMessage system) {
+                systemTexts.add(system.getText());
+            } else if (i >= current) {
+                trailing.add(message);
+            } else if (isConversational(message)) {
+                history.add(message);
+            }
+        }
+        int kept = Math.min(history.size(), maxHistoryMessages);
+        trimmedMessages.addAndGet(instructions.size() - systemTexts.size() - trailing.size() - kept);
+
+        systemTexts.add(state());
+        List<Message> messages = new ArrayList<>(1 + kept + trailing.size());
+        messages.add(new SystemMessage(String.join("\n\n", systemTexts)));
+        messages.addAll(history.subList(history.size() - kept, history.size()));
+        messages.addAll(trailing);
+        return chain.nextCall(request.mutate()
+                .prompt(request.prompt().mutate().messages(messages).build())
+                .build());
+    }
+
+    private static boolean isConversational(Message message) {
+        return message instanceof UserMessage
+               || message instanceof AssistantMessage assistant && !assistant.hasToolCalls();
+    }
+
+    private String state() {
+        long version = console.getStateVersion();
+        Rendered last = rendered;
+        if (last.version() == version) {
+            return last.text();
+        }
+        StringBuilder text = new StringBuilder(HEADER);
+        Map<String, Object> state = console.snapshot();
+        if (state.isEmpty()) {
+            text.append("\nnothing set yet");
+        }
+        state.forEach((path, value) -> text.append('\n').append(path).append('=').append(value));
+        renders.incrementAndGet();
+        // A write between reading the version and the snapshot only makes the next request render again
+        Rendered fresh = new Rendered(version, text.toString());
+        rendered = fresh;
+        return fresh.text();
+    }
+
+    /** Times the state text was rebuilt. */
+    public int getRenders() {
+        return renders.get();
+    }
+
+    /** History messages removed from requests. */
+    public long getTrimmedMessages() {
+        return trimmedMessages.get();
+    }
+
+    @Override
+    public String toString() {
+        int total = requests.get();
+        return String.format("%d requests, state rebuilt %d times, %.1f history messages trimmed per request",
+                total, renders.get(), total > 0 ? (double) trimmedMessages.get() / total : 0);
+    }
+}
@@ -0,0 +1,17 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the {@link ConversationService}, under {@code conversations.*}.
+ *
+ * @param maxSessions  how many operator conversations one node keeps open at once
+ * @param systemPrompt the instructions every conversation starts from
+ */
+@ConfigurationProperties("conversations")
+public record ConversationProperties(
+        @DefaultValue("10000") int maxSessions,
+        @DefaultValue("You control a mixing console. Use the tools to read and rename channels.")
+        String systemPrompt) {
+}
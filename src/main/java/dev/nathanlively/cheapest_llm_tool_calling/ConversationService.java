@@ -0,0 +1,208 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serves operator conversations: one session per conversation id, each with its own console and its own
+ * history in the shared {@link ChatMemory}. Every turn runs on its own virtual thread, so a session waiting on
+ * the model or the console costs memory but no platform thread. Turns of one session run one at a time in the
+ * order they were sent; different sessions never wait for each other. At most {@code maxSessions} are open at
+ * once; a message that would open one more is refused until a session is closed.
+ */
+public class ConversationService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationService.class);
+
+    private final ChatClient chatClient;
+    private final ChatMemory chatMemory;
+    private final Advisor memoryAdvisor;
+    private final Supplier<MockMixingConsoleService> consoles;
+    private final int maxSessions;
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger turns = new AtomicInteger();
+    private final AtomicInteger failedTurns = new AtomicInteger();
+
+    /**
+     * A conversation's console and its last queued turn, which the next turn waits for. Turns are queued and the
+     * session is ended under its lock, so no turn is queued on a session that is no longer registered.
+     */
+    private static final class Session {
+        final MockMixingConsoleService console;
+        volatile CompletableFuture<?> lastTurn = CompletableFuture.completedFuture(null);
+        volatile long lastActiveNanos = System.nanoTime();
+        boolean ended;
+
+        Session(MockMixingConsoleService console) {
+            this.console = console;
+        }
+    }
+
+    /**
+     * @param chatClient  answers every turn; the service adds the history of the turn's conversation
+     * @param consoles    makes the console of each new session
+     * @param maxSessions how many sessions may be open at once
+     */
+    public ConversationService(ChatClient chatClient, ChatMemory chatMemory,
+                               Supplier<MockMixingConsoleService> consoles, int maxSessions) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be at least 1, was " + maxSessions);
+        }
+        this.chatClient = chatClient;
+        this.chatMemory = chatMemory;
+        this.memoryAdvisor = MessageChatMemoryAdvisor.builder(chatMemory).build();
+        this.consoles = consoles;
+        this.maxSessions = maxSessions;
+    }
+
+    public ConversationService(ChatModel chatModel, ChatMemory chatMemory, String systemPrompt) {
+        this(ChatClient.builder(chatModel).defaultSystem(systemPrompt).build(), chatMemory,
+                MockMixingConsoleService::new, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sends one operator message and completes with the assistant's answer. Opens the session on first use, or
+     * fails with {@link IllegalStateException} when that would exceed {@code maxSessions}.
+     */
+    public CompletableFuture<String> send(String conversationId, String message) {
+        while (true) {
+            Session session = sessions.computeIfAbsent(conversationId, this::open);
+            if (session == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException(
+                        "Cannot open conversation " + conversationId + ": " + maxSessions + " sessions are open"));
+            }
+            synchronized (session) {
+                if (session.ended) {
+                    // Closed between the lookup and the lock; it is unregistered by now, so open a new one
+                    continue;
+                }
+                // Queue behind the previous turn whether it succeeded or not
+                CompletableFuture<String> turn = session.lastTurn
+                        .handle((previous, error) -> null)
+                        .thenApplyAsync(ignored -> runTurn(session, conversationId, message), executor);
+                session.lastTurn = turn;
+                session.lastActiveNanos = System.nanoTime();
+                return turn;
+            }
+        }
+    }
+
+    // Reserves a slot before the session is registered, so concurrent opens never overshoot the limit
+    private @Nullable Session open(String conversationId) {
+        if (openSessions.incrementAndGet() > maxSessions) {
+            openSessions.decrementAndGet();
+            return null;
+        }
+        return new Session(consoles.get());
+    }
+
+    private String runTurn(Session session, String conversationId, String message) {
+        try {
+            String answer = chatClient.prompt()
+                    .user(message)
+                    .tools(session.console)
+                    .advisors(spec -> spec.advisors(memoryAdvisor).param(ChatMemory.CONVERSATION_ID, conversationId))
+                    .call()
+                    .content();
+            turns.incrementAndGet();
+            return Objects.requireNonNullElse(answer, "");
+        } catch (RuntimeException e) {
+            failedTurns.incrementAndGet();
+            logger.warn("Turn failed in conversation {}: {}", conversationId, e.getMessage());
+            throw e;
+        } finally {
+            session.lastActiveNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * The console of an open session, or {@code null} when no such conversation is open.
+     */
+    public @Nullable MockMixingConsoleService getConsole(String conversationId) {
+        Session session = sessions.get(conversationId);
+        return session != null ? session.console : null;
+    }
+
+    /**
+     * Ends a conversation and forgets its history, after the turns already sent to it have finished.
+     */
+    public void close(String conversationId) {
+        Session session = sessions.get(conversationId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            if (!session.ended) {
+                // A turn in flight would write its answer to the history after it was cleared
+                session.lastTurn.handle((answer, error) -> null).join();
+                end(conversationId, session);
+            }
+        }
+    }
+
+    /**
+     * Ends every conversation with no turn for longer than {@code idle}. Returns how many were closed.
+     */
+    public int closeIdleSessions(Duration idle) {
+        long cutoff = System.nanoTime() - idle.toNanos();
+        int closed = 0;
+        for (var entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            synchronized (session) {
+                if (!session.ended && session.lastActiveNanos < cutoff && session.lastTurn.isDone()) {
+                    end(entry.getKey(), session);
+                    closed++;
+                }
+            }
+        }
+        return closed;
+    }
+
+    // Called holding the session's lock; clears the history before unregistering, so a new session under the
+    // same id never starts from history that is about to be cleared
+    private void end(String conversationId, Session session) {
+        session.ended = true;
+        chatMemory.clear(conversationId);
+        sessions.remove(conversationId, session);
+        openSessions.decrementAndGet();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getTurns() {
+        return turns.get();
+    }
+
+    public int getFailedTurns() {
+        return failedTurns.get();
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d sessions open, %d turns served, %d failed", sessions.size(), turns.get(),
+                failedTurns.get());
+    }
+}
@@ -0,0 +1,115 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Executes commands the {@link FastPathParser} understands directly on the console and answers without the
+ * model; everything else goes down the chain. Runs inside chat memory so the model still sees these turns.
+ */
+public class FastPathAdvisor implements CallAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(FastPathAdvisor.class);
+    private static final Pattern CHANNEL_PATH = Pattern.compile("ch\\.(\\d+)\\.(.+)");
+    private static final Map<String, String> PARAMETER_NAMES = Map.of("cfg.name", "name");
+
+    private final FastPathParser parser;
+    private final MockMixingConsoleService console;
+    private final AtomicInteger handled = new AtomicInteger();
+    private final AtomicInteger passed = new AtomicInteger();
+    private final AtomicLong parseNanos = new AtomicLong();
+
+    public FastPathAdvisor(MockMixingConsoleService console, int channelCount) {
+        this.parser = new FastPathParser(channelCount);
+        this.console = console;
+    }
+
+    @Override
+    public String getName() {
+        return "FastPathAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // Ahead of the command cache: parsing is cheaper than a lookup and needs no first model call
+        return Ordered.LOWEST_PRECEDENCE - 3;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        String prompt = request.prompt().getUserMessage().getText();
+        long start = System.nanoTime();
+        Optional<List<ApiCall>> plan = prompt != null ? parser.parse(prompt) : Optional.empty();
+        parseNanos.addAndGet(System.nanoTime() - start);
+        if (plan.isEmpty()) {
+            passed.incrementAndGet();
+            return chain.nextCall(request);
+        }
+
+        handled.incrementAndGet();
+        List<ApiCall> calls = plan.get();
+        if (calls.size() == 1) {
+            console.setSingleParameter(calls.getFirst());
+        } else {
+            console.setMultipleParameters(calls);
+        }
+        logger.debug("Fast path handled '{}' with {} calls", prompt, calls.size());
+        return ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(describe(calls))))))
+                .context(request.context())
+                .build();
+    }
+
+    /** What was written, in the operator's 1-based channel numbers, e.g. "Set channel 1 name to Kick." */
+    static String describe(List<ApiCall> calls) {
+        return calls.stream()
+                .map(FastPathAdvisor::describe)
+                .collect(Collectors.joining(", ", "Set ", "."));
+    }
+
+    private static String describe(ApiCall call) {
+        Matcher channel = CHANNEL_PATH.matcher(call.path());
+        if (!channel.matches()) {
+            return call.path() + " to " + call.value();
+        }
+        String parameter = PARAMETER_NAMES.getOrDefault(channel.group(2), channel.group(2));
+        return "channel " + (Integer.parseInt(channel.group(1)) + 1) + " " + parameter + " to " + call.value();
+    }
+
+    public int getHandled() {
+        return handled.get();
+    }
+
+    public int getPassed() {
+        return passed.get();
+    }
+
+    public double getHandledRate() {
+        int total = handled.get() + passed.get();
+        return total > 0 ? (double) handled.get() / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        int total = handled.get() + passed.get();
+        return String.format("%d of %d turns handled without the model (%.1f%%), %.1fµs average parse",
+                handled.get(), total, getHandledRate() * 100,
+                total > 0 ? parseNanos.get() / 1_000.0 / total : 0);
+    }
+}
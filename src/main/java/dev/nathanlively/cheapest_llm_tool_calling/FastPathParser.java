@@ -0,0 +1,117 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns unambiguous channel-naming commands straight into {@link ApiCall}s, translating the operator's 1-based
+ * channel numbers to the console's 0-based paths. Only explicit naming is understood, e.g.
+ * {@code Rename channel 1 to Kick and channel 2 to Snare} or {@code Name channels 1-3: Kick, Snare, Hat}.
+ * <p>
+ * Anything else is left to the model: other verbs, since "set channel 4 to mute" or "add reverb on channel 3"
+ * change a parameter rather than a name, questions, names that refer to other channels or to the conversation
+ * ("the same as channel 1", "it"), long names, channels outside the console, or a channel named twice.
+ */
+public class FastPathParser {
+    private static final String SEPARATOR = "\\s*(?:,\\s*(?:and\\s+)?|\\s+and\\s+)";
+    private static final String CHANNELS = "channels?\\s+(\\d{1,3})(?:\\s*-\\s*(\\d{1,3}))?";
+    private static final Pattern RENAME = Pattern.compile("(?:re)?name|label", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RENAME_COMMAND = Pattern.compile(
+            "(?:(?:re)?name|label)\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RENAME_CLAUSE = Pattern.compile(
+            CHANNELS + "\\s*(?:to|as|:)\\s*(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLAUSE_START = Pattern.compile(SEPARATOR + "(?=channels?\\s+\\d)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIST_SEPARATOR = Pattern.compile(SEPARATOR, Pattern.CASE_INSENSITIVE);
+    private static final int MAX_NAME_WORDS = 4;
+    // Words that make a name depend on the console or the conversation rather than spell it out
+    private static final Set<String> REFERENCE_WORDS = Set.of(
+            "channel", "channels", "same", "prefix", "suffix", "it", "its", "that", "this", "them", "those",
+            "first", "second", "last", "previous", "all", "what", "whats", "swap", "instead", "back", "before");
+
+    private final int channelCount;
+
+    public FastPathParser(int channelCount) {
+        this.channelCount = channelCount;
+    }
+
+    public Optional<List<ApiCall>> parse(String prompt) {
+        String command = prompt.strip().replaceAll("\\s+", " ").replaceAll("[.!]+$", "");
+        if (command.isEmpty() || command.contains("?")) {
+            return Optional.empty();
+        }
+        Map<Integer, String> names = new LinkedHashMap<>();
+        if (!parseRename(command, names) || names.isEmpty()) {
+            return Optional.empty();
+        }
+        List<ApiCall> calls = new ArrayList<>();
+        names.forEach((channel, name) -> calls.add(new ApiCall("ch." + (channel - 1) + ".cfg.name", name)));
+        return Optional.of(calls);
+    }
+
+    private boolean parseRename(String command, Map<Integer, String> names) {
+        Matcher matcher = RENAME_COMMAND.matcher(command);
+        if (!matcher.matches()) {
+            return false;
+        }
+        for (String clause : CLAUSE_START.split(matcher.group(1))) {
+            Matcher clauseMatcher = RENAME_CLAUSE.matcher(clause);
+            if (!clauseMatcher.matches()) {
+                return false;
+            }
+            List<String> clauseNames = clauseMatcher.group(2) != null
+                    ? List.of(LIST_SEPARATOR.split(clauseMatcher.group(3)))
+                    : List.of(clauseMatcher.group(3));
+            if (!assign(clauseMatcher.group(1), clauseMatcher.group(2), clauseNames, names)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean assign(String from, @Nullable String to, List<String> clauseNames,
+                           Map<Integer, String> names) {
+        int first = Integer.parseInt(from);
+        int last = to != null ? Integer.parseInt(to) : first;
+        if (first < 1 || last > channelCount || last < first || clauseNames.size() != last - first + 1) {
+            return false;
+        }
+        for (int channel = first; channel <= last; channel++) {
+            String name = clean(clauseNames.get(channel - first));
+            if (name == null || names.putIfAbsent(channel, name) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static @Nullable String clean(String raw) {
+        String name = raw.strip();
+        if (name.length() >= 2 && (name.startsWith("'") && name.endsWith("'")
+                                   || name.startsWith("\"") && name.endsWith("\""))) {
+            name = name.substring(1, name.length() - 1).strip();
+        }
+        if (name.isEmpty() || name.contains("'") || name.contains("\"")) {
+            return null;
+        }
+        String[] words = name.toLowerCase(Locale.ROOT).split("\\s+");
+        if (words.length > MAX_NAME_WORDS || RENAME.matcher(words[0]).matches()) {
+            return null;
+        }
+        for (String word : words) {
+            if (REFERENCE_WORDS.contains(word.replaceAll("[^a-z]", ""))) {
+                return null;
+            }
+        }
+        return name;
+    }
+}
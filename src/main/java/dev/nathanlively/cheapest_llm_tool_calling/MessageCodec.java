@@ -0,0 +1,129 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a chat {@link Message}: a type byte followed by length-prefixed UTF-8 strings. Keeps what the
+ * model sees again on the next turn, the text, tool calls and tool responses, and drops metadata and media.
+ */
+final class MessageCodec {
+    private static final byte USER = 0;
+    private static final byte ASSISTANT = 1;
+    private static final byte SYSTEM = 2;
+    private static final byte TOOL = 3;
+
+    private MessageCodec() {
+    }
+
+    static byte[] encode(Message message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            switch (message) {
+                case AssistantMessage assistant -> {
+                    out.writeByte(ASSISTANT);
+                    writeString(out, assistant.getText());
+                    out.writeInt(assistant.getToolCalls().size());
+                    for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                        writeString(out, call.id());
+                        writeString(out, call.type());
+                        writeString(out, call.name());
+                        writeString(out, call.arguments());
+                    }
+                }
+                case ToolResponseMessage tool -> {
+                    out.writeByte(TOOL);
+                    out.writeInt(tool.getResponses().size());
+                    for (ToolResponseMessage.ToolResponse response : tool.getResponses()) {
+                        writeString(out, response.id());
+                        writeString(out, response.name());
+                        writeString(out, response.responseData());
+                    }
+                }
+                case SystemMessage system -> {
+                    out.writeByte(SYSTEM);
+                    writeString(out, system.getText());
+                }
+                default -> {
+                    out.writeByte(USER);
+                    writeString(out, message.getText());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Message decode(ByteBuffer in) {
+        byte type = in.get();
+        return switch (type) {
+            case ASSISTANT -> {
+                String text = readNullableString(in);
+                int calls = in.getInt();
+                List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>(calls);
+                for (int i = 0; i < calls; i++) {
+                    toolCalls.add(new AssistantMessage.ToolCall(readString(in), readString(in), readString(in),
+                            readString(in)));
+                }
+                yield new AssistantMessage(text, Map.of(), toolCalls);
+            }
+            case TOOL -> {
+                int count = in.getInt();
+                List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    responses.add(new ToolResponseMessage.ToolResponse(readString(in), readString(in),
+                            readString(in)));
+                }
+                yield new ToolResponseMessage(responses, Map.of());
+            }
+            case SYSTEM -> new SystemMessage(readString(in));
+            case USER -> new UserMessage(readString(in));
+            default -> throw new IllegalArgumentException("Unknown message type " + type);
+        };
+    }
+
+    /** Whether an encoded message is a system message, without decoding it. */
+    static boolean isSystem(byte[] encoded) {
+        return encoded[0] == SYSTEM;
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        String value = readNullableString(in);
+        return value != null ? value : "";
+    }
+
+    private static @Nullable String readNullableString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -1,44 +1,34 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.jspecify.annotations.Nullable;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MockMixingConsoleService {
     private final AtomicInteger callCount = new AtomicInteger(0);
     private final List<ApiCall> capturedApiCalls = Collections.synchronizedList(new ArrayList<>());
     private final ConcurrentHashMap<String, Object> consoleState = new ConcurrentHashMap<>();
+    private final AtomicLong stateVersion = new AtomicLong();
 
     @Tool(description = "Get current value of a mixer parameter")
     public Response getParameter(
             @ToolParam(description = "API path to get (e.g., ch.0.cfg.name)")
             String path) {
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        callCount.incrementAndGet();
-        Object value = consoleState.get(path);
-        return new Response(path, value, "SUCCESS");
+        awaitConsole();
+        return read(path);
     }
 
     @Tool(description = "Make a single API call to the Mixing Station console. Use 0-based channel indexing.")
     public Response setSingleParameter(
             @ToolParam(description = "API call with path and value")
             ApiCall apiCall) {
-        try {
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-        callCount.incrementAndGet();
-        capturedApiCalls.add(apiCall);
-        consoleState.put(apiCall.path(), apiCall.value());
-        return new Response(apiCall.path(), apiCall.value(), "SUCCESS");
+        awaitConsole();
+        return write(apiCall);
     }
 
     @Tool(description = "Make multiple API calls in sequence for complex mixer setup. Use 0-based channel indexing for all paths.")
@@ -48,19 +38,35 @@ public class MockMixingConsoleService {
 
         List<Response> responses = new ArrayList<>();
         for (ApiCall call : apiCalls) {
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            callCount.incrementAndGet();
-            capturedApiCalls.add(call);
-            consoleState.put(call.path(), call.value());
-            responses.add(new Response(call.path(), call.value(), "SUCCESS"));
+            awaitConsole();
+            responses.add(write(call));
         }
         return responses;
     }
 
+    // The console's answer, without the link latency, for consoles that simulate the link themselves
+    Response read(String path) {
+        callCount.incrementAndGet();
+        Object value = consoleState.get(path);
+        return new Response(path, value, "SUCCESS");
+    }
+
+    Response write(ApiCall apiCall) {
+        callCount.incrementAndGet();
+        capturedApiCalls.add(apiCall);
+        consoleState.put(apiCall.path(), apiCall.value());
+        stateVersion.incrementAndGet();
+        return new Response(apiCall.path(), apiCall.value(), "SUCCESS");
+    }
+
+    private static void awaitConsole() {
+        try {
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     // Test helpers
     public int getTotalCallCount() {
         return callCount.get();
@@ -70,10 +76,25 @@ public class MockMixingConsoleService {
         return new ArrayList<>(capturedApiCalls);
     }
 
+    public @Nullable Object getValue(String path) {
+        return consoleState.get(path);
+    }
+
+    /** Every parameter set so far, ordered by path. */
+    public SortedMap<String, Object> snapshot() {
+        return new TreeMap<>(consoleState);
+    }
+
+    /** Changes whenever a parameter is set or the console is reset. */
+    public long getStateVersion() {
+        return stateVersion.get();
+    }
+
     public void reset() {
         callCount.set(0);
         capturedApiCalls.clear();
         consoleState.clear();
+        stateVersion.incrementAndGet();
     }
 
     // Response record for tool results
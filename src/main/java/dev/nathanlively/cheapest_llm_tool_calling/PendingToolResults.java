@@ -0,0 +1,73 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * The results of async tools started on one thread and not yet awaited. While a collector is active, the
+ * {@link AsyncToolResultConverter} hands each tool call back as a placeholder instead of waiting for it, so all
+ * the tool calls of a model response are on the wire before anyone waits; {@link #resolve} swaps the
+ * placeholders for the results afterwards.
+ */
+final class PendingToolResults {
+    private static final ThreadLocal<@Nullable PendingToolResults> current = new ThreadLocal<>();
+
+    private final String placeholderPrefix = "pending-tool-result:" + UUID.randomUUID() + ":";
+    private final List<CompletableFuture<String>> results = new ArrayList<>();
+
+    /** The collector of the calling thread, or {@code null} when results must be awaited where they are made. */
+    static @Nullable PendingToolResults current() {
+        return current.get();
+    }
+
+    /** Runs {@code action} with this collector active on the calling thread. */
+    <T> T collect(Supplier<T> action) {
+        PendingToolResults previous = current.get();
+        current.set(this);
+        try {
+            return action.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    /** Keeps {@code result} and returns the placeholder that stands in for it. */
+    String defer(CompletableFuture<String> result) {
+        results.add(result);
+        return placeholderPrefix + (results.size() - 1);
+    }
+
+    boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    /** Waits for every deferred result at once. */
+    void await() {
+        join(CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)));
+    }
+
+    /** The result a placeholder stands for, or {@code data} itself when it is not one of this collector's. */
+    String resolve(String data) {
+        if (!data.startsWith(placeholderPrefix)) {
+            return data;
+        }
+        return join(results.get(Integer.parseInt(data.substring(placeholderPrefix.length()))));
+    }
+
+    static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
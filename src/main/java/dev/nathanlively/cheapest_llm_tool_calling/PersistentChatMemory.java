@@ -0,0 +1,433 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link ChatMemory} that survives restarts, stored in two files in a local directory. Conversations are served
+ * from a {@link CompactChatMemory}; every change is also queued for a single writer thread, which appends
+ * changes to a journal in batches with one fsync per batch. The request path never waits for the disk unless
+ * the queue is full.
+ * <p>
+ * Recovery time is bounded: once the journal passes {@code snapshotThresholdBytes}, the writer saves every
+ * conversation's current window to a snapshot and starts a new journal. A restart loads at most one snapshot,
+ * which holds at most {@code maxMessages} messages per conversation, and replays one journal no larger than
+ * about the threshold. Changes still queued when the process dies are lost; a journal record cut short by the
+ * crash fails its checksum, and replay stops there.
+ * <p>
+ * A failed write fails the {@link #flush()} calls waiting for it. Since the journal may now end in a torn
+ * record, the writer saves a snapshot before it acknowledges anything again; the changes stay in memory, so the
+ * snapshot holds them once the disk comes back.
+ */
+public class PersistentChatMemory implements ChatMemory, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PersistentChatMemory.class);
+    private static final long DEFAULT_SNAPSHOT_THRESHOLD_BYTES = 8L * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 100_000;
+    private static final int MAX_BATCH = 1_000;
+    private static final int LOCK_STRIPES = 64;
+    private static final byte ADD = 0;
+    private static final byte CLEAR = 1;
+
+    /** A change to persist, or with {@code written} set, a marker completed once everything before it is. */
+    private record Change(long sequence, byte operation, String conversationId, List<byte[]> records,
+                          @Nullable CompletableFuture<Void> written) {
+    }
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final long snapshotThresholdBytes;
+    private final CompactChatMemory memory;
+    private final Set<String> conversationIds = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Change> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong lastSequence = new AtomicLong();
+    // Changes to one conversation are applied and queued in sequence order
+    private final Object[] conversationLocks = new Object[LOCK_STRIPES];
+    // Held shared while applying a change, exclusively while a snapshot reads the windows
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Duration recoveryTime;
+    private long validJournalBytes;
+    private final FileChannel journal;
+    private final Thread writer;
+    private volatile boolean closed;
+    // Only read and written by the writer thread
+    private boolean snapshotPending;
+
+    public PersistentChatMemory(Path directory, int maxMessages) {
+        this(directory, maxMessages, DEFAULT_SNAPSHOT_THRESHOLD_BYTES);
+    }
+
+    public PersistentChatMemory(Path directory, int maxMessages, long snapshotThresholdBytes) {
+        this(directory, maxMessages, snapshotThresholdBytes, UnaryOperator.identity());
+    }
+
+    /** With the opened journal passed through {@code journalChannel}, so tests can make the disk fail. */
+    PersistentChatMemory(Path directory, int maxMessages, long snapshotThresholdBytes,
+                         UnaryOperator<FileChannel> journalChannel) {
+        this.journalPath = directory.resolve("chat-memory.journal");
+        this.snapshotPath = directory.resolve("chat-memory.snapshot");
+        this.snapshotThresholdBytes = snapshotThresholdBytes;
+        this.memory = new CompactChatMemory(maxMessages);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            conversationLocks[i] = new Object();
+        }
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            long snapshotSequence = loadSnapshot();
+            lastSequence.set(Math.max(snapshotSequence, replayJournal(snapshotSequence)));
+            journal = journalChannel.apply(FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+            // New records must follow the last good one, not a torn tail that would stop the next replay
+            journal.truncate(validJournalBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open chat memory in " + directory, e);
+        }
+        recoveryTime = Duration.ofNanos(System.nanoTime() - start);
+        logger.info("Recovered {} conversations from {} in {}ms", conversationIds.size(), directory,
+                recoveryTime.toMillis());
+        writer = Thread.ofPlatform().name("chat-memory-writer").daemon().start(this::writeLoop);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<byte[]> records = messages.stream().map(MessageCodec::encode).toList();
+        change(ADD, conversationId, records, () -> {
+            memory.addEncoded(conversationId, records);
+            conversationIds.add(conversationId);
+        });
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return memory.get(conversationId);
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        change(CLEAR, conversationId, List.of(), () -> {
+            memory.clear(conversationId);
+            conversationIds.remove(conversationId);
+        });
+    }
+
+    private void change(byte operation, String conversationId, List<byte[]> records, Runnable apply) {
+        if (closed) {
+            throw new IllegalStateException("Chat memory is closed");
+        }
+        synchronized (conversationLocks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)]) {
+            Change change;
+            snapshotLock.readLock().lock();
+            try {
+                apply.run();
+                change = new Change(lastSequence.incrementAndGet(), operation, conversationId, records, null);
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            put(change);
+        }
+    }
+
+    /**
+     * Blocks until every change made before the call is on disk.
+     *
+     * @throws UncheckedIOException if they could not be written; a later flush retries
+     */
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        put(new Change(0, ADD, "", List.of(), written));
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException failure ? failure : e;
+        }
+    }
+
+    private void put(Change change) {
+        try {
+            queue.put(change);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing chat memory change", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            logger.warn("Closing chat memory with unsaved changes: {}", e.getCause().getMessage());
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Could not close chat memory journal: {}", e.getMessage());
+        }
+    }
+
+    public Duration getRecoveryTime() {
+        return recoveryTime;
+    }
+
+    public int getConversationCount() {
+        return conversationIds.size();
+    }
+
+    private void writeLoop() {
+        List<Change> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            @Nullable IOException failure = null;
+            try {
+                Change first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                writeBatch(batch);
+                // After a failed write, records appended behind a torn one would not be replayed
+                if (snapshotPending || journal.size() > snapshotThresholdBytes) {
+                    snapshot();
+                    snapshotPending = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                // Changes stay in memory and are in the next snapshot if the disk comes back
+                logger.error("Could not persist chat memory: {}", e.getMessage());
+                failure = e;
+                snapshotPending = true;
+            } finally {
+                for (Change change : batch) {
+                    if (change.written() == null) {
+                        continue;
+                    }
+                    if (failure == null) {
+                        change.written().complete(null);
+                    } else {
+                        change.written().completeExceptionally(
+                                new UncheckedIOException("Could not persist chat memory", failure));
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Change> batch) throws IOException {
+        ByteBuffer[] buffers = batch.stream()
+                .filter(change -> change.written() == null)
+                .map(PersistentChatMemory::encode)
+                .toArray(ByteBuffer[]::new);
+        if (buffers.length == 0) {
+            return;
+        }
+        for (long written = 0, total = totalRemaining(buffers); written < total; ) {
+            written += journal.write(buffers);
+        }
+        journal.force(false);
+    }
+
+    /**
+     * Saves every conversation's window and starts an empty journal. Changes wait only while the windows are
+     * read, not while the files are written.
+     */
+    private void snapshot() throws IOException {
+        long sequence;
+        Map<String, List<byte[]>> windows = new LinkedHashMap<>();
+        snapshotLock.writeLock().lock();
+        try {
+            sequence = lastSequence.get();
+            for (String conversationId : conversationIds) {
+                windows.put(conversationId, memory.getEncoded(conversationId));
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(Long.BYTES + Integer.BYTES).putLong(sequence).putInt(windows.size()).flip());
+            for (var window : windows.entrySet()) {
+                ByteBuffer buffer = encodeWindow(window.getKey(), window.getValue());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Everything written so far is at or below the snapshot's sequence; changes still queued are above it
+        // or are skipped on replay
+        journal.truncate(0);
+        journal.force(true);
+        logger.debug("Snapshot of {} conversations at sequence {}", windows.size(), sequence);
+    }
+
+    private long loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        long sequence = in.getLong();
+        int conversations = in.getInt();
+        for (int i = 0; i < conversations; i++) {
+            String conversationId = readString(in);
+            memory.addEncoded(conversationId, readRecords(in));
+            conversationIds.add(conversationId);
+        }
+        return sequence;
+    }
+
+    /**
+     * Applies the journal's changes newer than the snapshot. Changes to different conversations may reach
+     * the journal out of sequence order, so they are sorted first.
+     */
+    private long replayJournal(long snapshotSequence) throws IOException {
+        if (!Files.exists(journalPath)) {
+            return 0;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+        List<ByteBuffer> records = new ArrayList<>();
+        while (in.remaining() >= Integer.BYTES + Long.BYTES) {
+            int length = in.getInt();
+            long checksum = in.getLong();
+            if (length < 0 || length > in.remaining() || checksum(in.slice(in.position(), length)) != checksum) {
+                logger.warn("Ignoring {} bytes of incomplete chat memory journal", in.remaining());
+                break;
+            }
+            records.add(in.slice(in.position(), length));
+            in.position(in.position() + length);
+            validJournalBytes = in.position();
+        }
+        records.sort(Comparator.comparingLong(record -> record.getLong(0)));
+
+        long last = 0;
+        for (ByteBuffer record : records) {
+            long sequence = record.getLong();
+            byte operation = record.get();
+            String conversationId = readString(record);
+            last = sequence;
+            if (sequence <= snapshotSequence) {
+                continue;
+            }
+            if (operation == CLEAR) {
+                memory.clear(conversationId);
+                conversationIds.remove(conversationId);
+            } else {
+                memory.addEncoded(conversationId, readRecords(record));
+                conversationIds.add(conversationId);
+            }
+        }
+        logger.debug("Replayed {} journal records after snapshot sequence {}", records.size(), snapshotSequence);
+        return last;
+    }
+
+    /** A journal record: body length, CRC32 of the body, then sequence, operation, conversation and messages. */
+    private static ByteBuffer encode(Change change) {
+        byte[] id = change.conversationId().getBytes(StandardCharsets.UTF_8);
+        int bodyLength = Long.BYTES + 1 + Integer.BYTES + id.length + Integer.BYTES;
+        for (byte[] record : change.records()) {
+            bodyLength += Integer.BYTES + record.length;
+        }
+        int headerLength = Integer.BYTES + Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + bodyLength);
+        buffer.position(headerLength);
+        buffer.putLong(change.sequence()).put(change.operation()).putInt(id.length).put(id);
+        putMessages(buffer, change.records());
+        buffer.putInt(0, bodyLength);
+        buffer.putLong(Integer.BYTES, checksum(buffer.slice(headerLength, bodyLength)));
+        return buffer.flip();
+    }
+
+    private static ByteBuffer encodeWindow(String conversationId, List<byte[]> records) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        int length = Integer.BYTES + id.length + Integer.BYTES;
+        for (byte[] record : records) {
+            length += Integer.BYTES + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).putInt(id.length).put(id);
+        putMessages(buffer, records);
+        return buffer.flip();
+    }
+
+    private static void putMessages(ByteBuffer buffer, List<byte[]> records) {
+        buffer.putInt(records.size());
+        for (byte[] record : records) {
+            buffer.putInt(record.length).put(record);
+        }
+    }
+
+    private static List<byte[]> readRecords(ByteBuffer in) {
+        int count = in.getInt();
+        List<byte[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[in.getInt()];
+            in.get(record);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long checksum(ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    private static long totalRemaining(ByteBuffer[] buffers) {
+        long total = 0;
+        for (ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,56 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Stands in for the network link to a console without holding a thread per request: each round trip is a
+ * timer that completes a future after the link latency, the way a non-blocking socket completes on readiness.
+ * One timer thread carries any number of requests in flight.
+ */
+public class SimulatedConsoleTransport {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "console-transport");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration latency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    public SimulatedConsoleTransport(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Applies {@code request} once the latency has passed and completes with its result.
+     */
+    public <T> CompletableFuture<T> roundTrip(Supplier<T> request) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        CompletableFuture<T> response = new CompletableFuture<>();
+        timer.schedule(() -> {
+            inFlight.decrementAndGet();
+            try {
+                response.complete(request.get());
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }, latency.toNanos(), TimeUnit.NANOSECONDS);
+        return response;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+
+    /** Most requests that were waiting on the link at the same time. */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+}
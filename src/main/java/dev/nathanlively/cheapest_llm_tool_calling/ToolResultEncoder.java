@@ -0,0 +1,135 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How console tool results are written into the conversation the model sees on its next call. The console
+ * tools return {@link MockMixingConsoleService.Response} objects, serialized as
+ * {@code {"path":"ch.0.cfg.name","value":"Kick","status":"SUCCESS"}}; every later call in the turn pays for
+ * that JSON again. Results that are not console responses, such as weather reports, are left as they are.
+ */
+public enum ToolResultEncoder {
+    /** The tool's JSON, unchanged. */
+    JSON,
+    /** One {@code path=value ✓} line per response, {@code ✗ status} for anything but success. */
+    COMPACT,
+    /**
+     * {@link #COMPACT} lines, thinned for writes: when one result writes a path more than once only the last
+     * write is listed, and successful writes of a value an earlier result already reported for that path are
+     * left out and summed up in a single {@code N unchanged ✓} line. Failed writes are always listed, and reads
+     * are encoded exactly as {@code COMPACT}, since the model asked for the value.
+     */
+    DELTA;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final String SUCCESS = "SUCCESS";
+    private static final String OK = " ✓";
+    private static final Set<String> WRITE_TOOLS = Set.of("setSingleParameter", "setMultipleParameters");
+
+    private record Entry(String path, String value, String status) {
+    }
+
+    /**
+     * Encodes one result of the named tool. {@code earlierResults} are the results already in the conversation,
+     * in any of the encodings; only {@link #DELTA} reads them, and only for writes.
+     */
+    public String encode(String toolName, String result, List<String> earlierResults) {
+        if (this == JSON) {
+            return result;
+        }
+        List<Entry> entries = parseJson(result);
+        if (entries == null || entries.isEmpty()) {
+            return result;
+        }
+        if (this == COMPACT || !WRITE_TOOLS.contains(toolName)) {
+            return String.join("\n", entries.stream().map(ToolResultEncoder::line).toList());
+        }
+
+        Map<String, String> known = new HashMap<>();
+        for (String earlier : earlierResults) {
+            known.putAll(knownValues(earlier));
+        }
+        Map<String, Entry> latest = new LinkedHashMap<>();
+        entries.forEach(entry -> {
+            latest.remove(entry.path());
+            latest.put(entry.path(), entry);
+        });
+        List<String> lines = new ArrayList<>();
+        int unchanged = 0;
+        for (Entry entry : latest.values()) {
+            if (SUCCESS.equals(entry.status()) && entry.value().equals(known.get(entry.path()))) {
+                unchanged++;
+            } else {
+                lines.add(line(entry));
+            }
+        }
+        if (unchanged > 0) {
+            lines.add(unchanged + " unchanged" + OK);
+        }
+        return String.join("\n", lines);
+    }
+
+    private static String line(Entry entry) {
+        String line = entry.path() + "=" + entry.value();
+        return SUCCESS.equals(entry.status()) ? line + OK : line + " ✗ " + entry.status();
+    }
+
+    /** Successful path values in a result encoded as JSON or as {@code path=value ✓} lines. */
+    private static Map<String, String> knownValues(String result) {
+        Map<String, String> values = new HashMap<>();
+        List<Entry> entries = parseJson(result);
+        if (entries != null) {
+            entries.stream()
+                    .filter(entry -> SUCCESS.equals(entry.status()))
+                    .forEach(entry -> values.put(entry.path(), entry.value()));
+            return values;
+        }
+        for (String line : result.split("\n")) {
+            int equals = line.indexOf('=');
+            if (equals > 0 && line.endsWith(OK)) {
+                values.put(line.substring(0, equals), line.substring(equals + 1, line.length() - OK.length()));
+            }
+        }
+        return values;
+    }
+
+    /** The console responses in a JSON result, or {@code null} if it is not one or a list of them. */
+    private static @Nullable List<Entry> parseJson(String result) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(result);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+        if (root == null) {
+            return null;
+        }
+        List<JsonNode> nodes = new ArrayList<>();
+        if (root.isArray()) {
+            root.forEach(nodes::add);
+        } else {
+            nodes.add(root);
+        }
+        List<Entry> entries = new ArrayList<>(nodes.size());
+        for (JsonNode node : nodes) {
+            if (!node.isObject() || !node.hasNonNull("path") || !node.has("status")) {
+                return null;
+            }
+            JsonNode value = node.get("value");
+            entries.add(new Entry(node.get("path").asText(),
+                    value == null || value.isNull() ? "null" : value.isValueNode() ? value.asText() : value.toString(),
+                    node.get("status").asText()));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,65 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * How many iterations {@link BenchmarkRunner} spends on each model.
+ * <p>
+ * A fixed policy runs exactly {@code maxIterations}. An adaptive policy runs at least {@code minIterations},
+ * then keeps sampling until the confidence intervals on success rate and latency are tight enough, the model
+ * is clearly dominated by the current leader, or {@code maxIterations} is reached.
+ *
+ * @param minIterations            runs before any stopping rule is checked
+ * @param maxIterations            hard cap on runs per model
+ * @param confidenceZ              z-score of the confidence level (1.96 = 95%)
+ * @param successRateHalfWidth     target half-width of the Wilson interval on success rate
+ * @param latencyRelativeHalfWidth target half-width of the latency interval, relative to the mean
+ */
+public record AdaptiveSampling(int minIterations,
+                               int maxIterations,
+                               double confidenceZ,
+                               double successRateHalfWidth,
+                               double latencyRelativeHalfWidth) {
+
+    public AdaptiveSampling {
+        if (minIterations < 1 || maxIterations < minIterations) {
+            throw new IllegalArgumentException(
+                    "Expected 1 <= minIterations <= maxIterations but got " + minIterations + ".." + maxIterations);
+        }
+    }
+
+    public static AdaptiveSampling fixed(int iterations) {
+        return new AdaptiveSampling(iterations, iterations, 1.96, 0, 0);
+    }
+
+    public static AdaptiveSampling adaptive(int minIterations, int maxIterations) {
+        return new AdaptiveSampling(minIterations, maxIterations, 1.96, 0.15, 0.10);
+    }
+
+    public boolean isFixed() {
+        return minIterations == maxIterations;
+    }
+
+    /**
+     * Decides whether this policy has seen enough of a model. Returns the reason to stop, or {@code null} to
+     * keep sampling. Fixed sampling never stops early.
+     */
+    @Nullable String stopReason(TestResults results, @Nullable TestResults leader) {
+        if (isFixed() || results.runs.size() < minIterations) {
+            return null;
+        }
+        if (leader != null && results.isDominatedBy(leader, confidenceZ)) {
+            return "dominated by " + leader.modelName;
+        }
+
+        boolean successConverged = results.getSuccessRateInterval(confidenceZ).halfWidth() <= successRateHalfWidth;
+        TestResults.Interval latency = results.getLatencyInterval(confidenceZ);
+        // Undefined until two runs have completed, which never converges
+        boolean latencyConverged = Double.isFinite(latency.center()) && latency.center() > 0
+                && latency.halfWidth() / latency.center() <= latencyRelativeHalfWidth;
+        if (successConverged && latencyConverged) {
+            return "confidence intervals converged";
+        }
+        return null;
+    }
+}
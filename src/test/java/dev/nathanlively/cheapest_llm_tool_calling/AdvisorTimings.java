@@ -0,0 +1,196 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures what each advisor of a chat client costs. {@link #wrap} puts every call advisor behind a timer that
+ * records the advisor's own time, from entering it to returning, minus the time spent further down the chain,
+ * and the bytes of message text it added to the request it passed on. Counting the bytes is not charged to
+ * any advisor.
+ * <p>
+ * Totals cover every call since creation. The samples of the current turn are kept per thread, since a call's
+ * advisors all run on the calling thread, so conversations on different threads can share one instance;
+ * {@link #takeTurn()} returns and clears them. Streaming calls pass through untimed.
+ */
+public class AdvisorTimings {
+    private static final Logger logger = LoggerFactory.getLogger(AdvisorTimings.class);
+
+    /** One advisor's cost over some number of calls. */
+    public record Sample(int calls, long selfNanos, long addedBytes) {
+        Sample plus(Sample other) {
+            return new Sample(calls + other.calls, selfNanos + other.selfNanos, addedBytes + other.addedBytes);
+        }
+
+        public double selfMs() {
+            return selfNanos / 1e6;
+        }
+    }
+
+    private static final Sample NONE = new Sample(0, 0, 0);
+
+    private static final class Total {
+        final LongAdder calls = new LongAdder();
+        final LongAdder selfNanos = new LongAdder();
+        final LongAdder addedBytes = new LongAdder();
+    }
+
+    private final Map<String, Total> totals = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<String, Sample>> turn = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    /** The advisors with every call advisor timed, in the same order. */
+    public List<Advisor> wrap(Advisor... advisors) {
+        List<Advisor> wrapped = new ArrayList<>(advisors.length);
+        for (Advisor advisor : advisors) {
+            wrapped.add(advisor instanceof CallAdvisor callAdvisor && !(advisor instanceof TimedAdvisor)
+                    ? new TimedAdvisor(callAdvisor) : advisor);
+        }
+        return wrapped;
+    }
+
+    /** The calling thread's samples since its last turn, by advisor in chain order, and starts a new turn. */
+    public Map<String, Sample> takeTurn() {
+        Map<String, Sample> samples = turn.get();
+        turn.remove();
+        return samples;
+    }
+
+    public Map<String, Sample> getTotals() {
+        Map<String, Sample> samples = new LinkedHashMap<>();
+        totals.forEach((name, total) -> samples.put(name,
+                new Sample(total.calls.intValue(), total.selfNanos.sum(), total.addedBytes.sum())));
+        return samples;
+    }
+
+    public void printReport() {
+        logger.info("\n=== ADVISOR OVERHEAD ===");
+        logger.info(String.format("%-32s %8s %12s %12s %14s", "Advisor", "Calls", "Avg ms", "Total ms",
+                "Avg bytes added"));
+        getTotals().forEach((name, sample) -> logger.info(String.format("%-32s %8d %12.3f %12.1f %14.0f", name,
+                sample.calls(), sample.calls() > 0 ? sample.selfMs() / sample.calls() : 0, sample.selfMs(),
+                sample.calls() > 0 ? (double) sample.addedBytes() / sample.calls() : 0)));
+    }
+
+    private void record(String advisor, long selfNanos, long addedBytes) {
+        Total total = totals.computeIfAbsent(advisor, name -> new Total());
+        total.calls.increment();
+        total.selfNanos.add(selfNanos);
+        total.addedBytes.add(addedBytes);
+        turn.get().merge(advisor, new Sample(1, selfNanos, addedBytes), Sample::plus);
+    }
+
+    /** UTF-8 length of the text of the request's messages, counted without encoding them. */
+    static long messageBytes(ChatClientRequest request) {
+        long bytes = 0;
+        for (Message message : request.prompt().getInstructions()) {
+            String text = message.getText();
+            if (text == null) {
+                continue;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    bytes += 4;
+                    i++;
+                } else {
+                    bytes += 3;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private final class TimedAdvisor implements CallAdvisor, StreamAdvisor {
+        private final CallAdvisor delegate;
+
+        TimedAdvisor(CallAdvisor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public int getOrder() {
+            return delegate.getOrder();
+        }
+
+        @Override
+        public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+            long receivedBytes = messageBytes(request);
+            // Samples are recorded innermost first; claiming the slot on the way in keeps chain order
+            turn.get().putIfAbsent(getName(), NONE);
+            TimingChain timingChain = new TimingChain(chain);
+            long start = System.nanoTime();
+            try {
+                return delegate.adviseCall(request, timingChain);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                long added = timingChain.forwardedBytes < 0 ? 0 : timingChain.forwardedBytes - receivedBytes;
+                record(getName(), elapsed - timingChain.downstreamNanos, added);
+            }
+        }
+
+        @Override
+        public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+            return delegate instanceof StreamAdvisor streamAdvisor
+                    ? streamAdvisor.adviseStream(request, chain)
+                    : chain.nextStream(request);
+        }
+    }
+
+    /** Charges the rest of the chain, and counting what is passed to it, to the caller's downstream time. */
+    private static final class TimingChain implements CallAdvisorChain {
+        private final CallAdvisorChain delegate;
+        long downstreamNanos;
+        long forwardedBytes = -1;
+
+        TimingChain(CallAdvisorChain delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ChatClientResponse nextCall(ChatClientRequest request) {
+            long start = System.nanoTime();
+            try {
+                forwardedBytes = messageBytes(request);
+                return delegate.nextCall(request);
+            } finally {
+                downstreamNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public List<CallAdvisor> getCallAdvisors() {
+            return delegate.getCallAdvisors();
+        }
+
+        @Override
+        public ObservationRegistry getObservationRegistry() {
+            return delegate.getObservationRegistry();
+        }
+    }
+}
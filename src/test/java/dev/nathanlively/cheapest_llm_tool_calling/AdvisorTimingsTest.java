@@ -0,0 +1,83 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdvisorTimingsTest {
+
+    private final AdvisorTimings timings = new AdvisorTimings();
+    private final ChatModel model = prompt -> {
+        sleep(100);
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("Done"))));
+    };
+
+    @Test
+    void chargesEachAdvisorItsOwnTimeAndBytes() {
+        ChatClient chatClient = ChatClient.builder(model)
+                .defaultAdvisors(timings.wrap(new Advisor("History", 1, 0, "Earlier: renamed channel 1 to Kick"),
+                        new Advisor("Slow", 2, 30, "")))
+                .build();
+
+        chatClient.prompt().user("Rename channel 2 to Snare").call().content();
+        Map<String, AdvisorTimings.Sample> turn = timings.takeTurn();
+
+        assertThat(turn.keySet()).containsExactly("History", "Slow");
+        assertThat(turn.get("History").selfMs()).isLessThan(30);
+        assertThat(turn.get("History").addedBytes()).isEqualTo(34);
+        assertThat(turn.get("Slow").selfMs()).isBetween(30.0, 90.0);
+        assertThat(turn.get("Slow").addedBytes()).isZero();
+        assertThat(timings.takeTurn()).isEmpty();
+        assertThat(timings.getTotals().get("Slow").calls()).isEqualTo(1);
+    }
+
+    /** Sleeps, then prepends {@code history} as a user message if it is not empty. */
+    private record Advisor(String name, int order, long sleepMs, String history) implements CallAdvisor {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+
+        @Override
+        public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+            sleep(sleepMs);
+            if (history.isEmpty()) {
+                return chain.nextCall(request);
+            }
+            List<Message> messages = new ArrayList<>();
+            messages.add(new UserMessage(history));
+            messages.addAll(request.prompt().getInstructions());
+            return chain.nextCall(request.mutate()
+                    .prompt(request.prompt().mutate().messages(messages).build())
+                    .build());
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
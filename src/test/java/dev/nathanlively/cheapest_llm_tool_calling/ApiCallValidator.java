@@ -0,0 +1,121 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap structural check of the tool calls a model proposes for the mixing console, run before anything
+ * touches the console. A proposal is rejected when it calls an unknown tool, sends arguments that are not
+ * JSON, uses a path outside the console's {@code ch.{N}.cfg.name} grammar or channel range, writes an empty
+ * value, writes two different values to one path, or repeats a write already made in the same turn (a model
+ * stuck in a loop).
+ */
+class ApiCallValidator {
+    private static final Pattern PATH = Pattern.compile("ch\\.(\\d+)\\.cfg\\.name");
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    record Verdict(boolean valid, @Nullable String reason) {
+        static final Verdict VALID = new Verdict(true, null);
+
+        static Verdict reject(String reason) {
+            return new Verdict(false, reason);
+        }
+    }
+
+    private final int channelCount;
+
+    ApiCallValidator(int channelCount) {
+        this.channelCount = channelCount;
+    }
+
+    /**
+     * @param toolNames  tools the prompt offered
+     * @param turnWrites path to value of the writes already accepted this turn; a valid proposal's writes are
+     *                   added to it
+     */
+    Verdict validate(List<AssistantMessage.ToolCall> toolCalls, Set<String> toolNames, Map<String, String> turnWrites) {
+        Map<String, String> proposedWrites = new HashMap<>();
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            if (!toolNames.contains(toolCall.name())) {
+                return Verdict.reject("unknown tool " + toolCall.name());
+            }
+            JsonNode arguments;
+            try {
+                arguments = objectMapper.readTree(toolCall.arguments());
+            } catch (JsonProcessingException e) {
+                return Verdict.reject("arguments of " + toolCall.name() + " are not JSON");
+            }
+            Verdict verdict = validateNode(arguments, proposedWrites, turnWrites);
+            if (!verdict.valid()) {
+                return verdict;
+            }
+        }
+        turnWrites.putAll(proposedWrites);
+        return Verdict.VALID;
+    }
+
+    private Verdict validateNode(JsonNode node, Map<String, String> proposedWrites, Map<String, String> turnWrites) {
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                Verdict verdict = validateNode(element, proposedWrites, turnWrites);
+                if (!verdict.valid()) {
+                    return verdict;
+                }
+            }
+            return Verdict.VALID;
+        }
+        if (!node.isObject()) {
+            return Verdict.VALID;
+        }
+        JsonNode path = node.get("path");
+        if (path == null) {
+            // Wrapper such as {"apiCall": {...}} or {"apiCalls": [...]}
+            for (JsonNode child : node) {
+                Verdict verdict = validateNode(child, proposedWrites, turnWrites);
+                if (!verdict.valid()) {
+                    return verdict;
+                }
+            }
+            return Verdict.VALID;
+        }
+        Verdict pathVerdict = validatePath(path.asText());
+        if (!pathVerdict.valid() || !node.has("value")) {
+            return pathVerdict;
+        }
+        JsonNode value = node.get("value");
+        if (value.isNull() || value.asText().isBlank()) {
+            return Verdict.reject("empty value for " + path.asText());
+        }
+        String text = value.asText();
+        String previous = proposedWrites.put(path.asText(), text);
+        if (previous != null && !previous.equals(text)) {
+            return Verdict.reject("conflicting values for " + path.asText());
+        }
+        if (text.equals(turnWrites.get(path.asText()))) {
+            return Verdict.reject("repeats write of " + path.asText());
+        }
+        return Verdict.VALID;
+    }
+
+    private Verdict validatePath(String path) {
+        Matcher matcher = PATH.matcher(path);
+        if (!matcher.matches() || matcher.group(1).length() > 3) {
+            return Verdict.reject("path " + path + " does not match ch.{N}.cfg.name");
+        }
+        int channel = Integer.parseInt(matcher.group(1));
+        if (channel >= channelCount) {
+            return Verdict.reject("channel " + channel + " is out of range 0-" + (channelCount - 1));
+        }
+        return Verdict.VALID;
+    }
+}
@@ -0,0 +1,59 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ApiCallValidatorTest {
+    private static final Set<String> TOOLS = Set.of("getParameter", "setSingleParameter", "setMultipleParameters");
+
+    private final ApiCallValidator validator = new ApiCallValidator(32);
+    private final Map<String, String> turnWrites = new HashMap<>();
+
+    @Test
+    void acceptsBatchOfWrites() {
+        var verdict = validate("setMultipleParameters",
+                "{\"apiCalls\": [{\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"},"
+                + " {\"path\": \"ch.1.cfg.name\", \"value\": \"Snare\"}]}");
+
+        assertThat(verdict.valid()).isTrue();
+        assertThat(turnWrites).containsEntry("ch.1.cfg.name", "Snare");
+    }
+
+    @Test
+    void rejectsChannelOutOfRange() {
+        var verdict = validate("getParameter", "{\"path\": \"ch.32.cfg.name\"}");
+
+        assertThat(verdict.valid()).isFalse();
+        assertThat(verdict.reason()).contains("out of range");
+    }
+
+    @Test
+    void rejectsConflictingWrites() {
+        var verdict = validate("setMultipleParameters",
+                "{\"apiCalls\": [{\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"},"
+                + " {\"path\": \"ch.0.cfg.name\", \"value\": \"Snare\"}]}");
+
+        assertThat(verdict.valid()).isFalse();
+        assertThat(turnWrites).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownToolAndMalformedArguments() {
+        assertThat(validate("deleteChannel", "{}").valid()).isFalse();
+        assertThat(validate("getParameter", "{path: ch.0").valid()).isFalse();
+        assertThat(validate("setSingleParameter", "{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \" \"}}")
+                .valid()).isFalse();
+    }
+
+    private ApiCallValidator.Verdict validate(String tool, String arguments) {
+        return validator.validate(List.of(new AssistantMessage.ToolCall("1", "function", tool, arguments)),
+                TOOLS, turnWrites);
+    }
+}
@@ -0,0 +1,138 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncMixingConsoleServiceTest {
+
+    private static final int SESSIONS = 16;
+    private static final int THREADS = 2;
+
+    private final SimulatedConsoleTransport transport = new SimulatedConsoleTransport(Duration.ofMillis(100));
+    private final AsyncMixingConsoleService console = new AsyncMixingConsoleService(transport);
+
+    @Test
+    void toolCallbackAnswersWithCompletedResult() {
+        String result = tool(ToolCallbacks.from(console), "setSingleParameter")
+                .call("{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}");
+
+        assertThat(result).contains("\"status\":\"SUCCESS\"");
+        assertThat(console.getValue("ch.0.cfg.name")).isEqualTo("Kick");
+    }
+
+    @Test
+    void reactiveWeatherToolAnswersWithCompletedResult() {
+        AsyncWeatherService weather = new AsyncWeatherService(Duration.ofMillis(50));
+
+        String result = tool(ToolCallbacks.from(weather), "getWeather")
+                .call("{\"location\": \"Tokyo\", \"unit\": \"C\"}");
+
+        assertThat(result).contains("\"temp\":10.0");
+        assertThat(weather.getTotalCallCount()).isEqualTo(1);
+    }
+
+    @Test
+    void toolCallsOfOneResponseWaitForTheConsoleTogether() {
+        ToolCallingManager manager = new AsyncToolCallingManager(ToolCallingManager.builder().build());
+        Prompt prompt = new Prompt("Name channels 1-3",
+                ToolCallingChatOptions.builder().toolCallbacks(ToolCallbacks.from(console)).build());
+        List<AssistantMessage.ToolCall> calls = new ArrayList<>();
+        for (int channel = 0; channel < 3; channel++) {
+            calls.add(new AssistantMessage.ToolCall("call-" + channel, "function", "setSingleParameter",
+                    "{\"apiCall\": {\"path\": \"" + path(channel) + "\", \"value\": \"Drum" + channel + "\"}}"));
+        }
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), calls))));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, response);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        ToolResponseMessage toolResponses = (ToolResponseMessage) result.conversationHistory().getLast();
+        assertThat(toolResponses.getResponses()).hasSize(3);
+        for (ToolResponseMessage.ToolResponse toolResponse : toolResponses.getResponses()) {
+            assertThat(toolResponse.responseData()).contains("\"status\":\"SUCCESS\"");
+        }
+        assertThat(console.getValue(path(2))).isEqualTo("Drum2");
+        // Three round trips of 100ms, overlapped
+        assertThat(elapsedMs).isLessThan(250);
+    }
+
+    @Test
+    void nonBlockingSessionsDoNotQueueForThreads() {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(THREADS);
+        try {
+            long blockingMs = time(() -> {
+                List<CompletableFuture<?>> sessions = new ArrayList<>();
+                for (int i = 0; i < SESSIONS; i++) {
+                    int channel = i;
+                    // Each tool call holds its request thread for the whole round trip
+                    sessions.add(CompletableFuture.runAsync(() -> {
+                        console.setSingleParameter(rename(channel, "Blocking")).join();
+                        console.getParameter(path(channel)).join();
+                    }, requestThreads));
+                }
+                return sessions;
+            });
+            long nonBlockingMs = time(() -> {
+                List<CompletableFuture<?>> sessions = new ArrayList<>();
+                for (int i = 0; i < SESSIONS; i++) {
+                    int channel = i;
+                    sessions.add(CompletableFuture
+                            .supplyAsync(() -> console.setSingleParameter(rename(channel, "Async")), requestThreads)
+                            .thenCompose(Function.identity())
+                            .thenCompose(written -> console.getParameter(path(channel))));
+                }
+                return sessions;
+            });
+
+            assertThat(console.getValue(path(SESSIONS - 1))).isEqualTo("Async" + (SESSIONS - 1));
+            assertThat(transport.getMaxInFlight()).isGreaterThanOrEqualTo(SESSIONS);
+            assertThat(nonBlockingMs * 3).isLessThan(blockingMs);
+        } finally {
+            requestThreads.shutdownNow();
+        }
+    }
+
+    private static long time(Supplier<List<CompletableFuture<?>>> sessions) {
+        long start = System.nanoTime();
+        CompletableFuture.allOf(sessions.get().toArray(CompletableFuture[]::new)).join();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static ApiCall rename(int channel, String name) {
+        return new ApiCall(path(channel), name + channel);
+    }
+
+    private static String path(int channel) {
+        return "ch." + channel + ".cfg.name";
+    }
+
+    private static ToolCallback tool(ToolCallback[] callbacks, String name) {
+        return Arrays.stream(callbacks)
+                .filter(callback -> callback.getToolDefinition().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
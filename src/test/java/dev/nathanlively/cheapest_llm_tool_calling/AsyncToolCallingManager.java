@@ -0,0 +1,57 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Overlaps the async tool calls of one model response (see {@link AsyncToolResultConverter}): the wrapped
+ * manager starts them in the order the model emitted them without waiting for any, and their results are
+ * awaited together before they are added to the conversation. A response with N console round trips waits for
+ * about one round trip instead of N. The calling thread still waits for that one, as it does for the model.
+ * <p>
+ * Results are collected on the calling thread, so wrap a manager that runs tools there, not a
+ * {@link ParallelToolCallingManager}; tools that return plain values are unaffected.
+ */
+public class AsyncToolCallingManager implements ToolCallingManager {
+    private final ToolCallingManager delegate;
+
+    public AsyncToolCallingManager(ToolCallingManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        PendingToolResults pending = new PendingToolResults();
+        ToolExecutionResult result = pending.collect(() -> delegate.executeToolCalls(prompt, chatResponse));
+        List<Message> history = new ArrayList<>(result.conversationHistory());
+        if (pending.isEmpty() || history.isEmpty() || !(history.getLast() instanceof ToolResponseMessage toolResponses)) {
+            return result;
+        }
+
+        pending.await();
+        List<ToolResponseMessage.ToolResponse> resolved = new ArrayList<>();
+        for (ToolResponseMessage.ToolResponse response : toolResponses.getResponses()) {
+            resolved.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(),
+                    pending.resolve(response.responseData())));
+        }
+        history.set(history.size() - 1, new ToolResponseMessage(resolved, toolResponses.getMetadata()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(history)
+                .returnDirect(result.returnDirect())
+                .build();
+    }
+}
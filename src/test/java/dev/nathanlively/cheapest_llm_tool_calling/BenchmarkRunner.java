@@ -1,43 +1,108 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.util.StopWatch;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 
 public class BenchmarkRunner {
     private static final Logger logger = LoggerFactory.getLogger(BenchmarkRunner.class);
+    /** Advisor context entry holding the full name of the model under test. */
+    public static final String MODEL_CONTEXT_KEY = "benchmark.model";
     private static final long RATE_LIMIT_DELAY_MS = 10_000;
     private static final int MAX_RETRIES = 3;
+    // A reset further out than this (e.g. a daily token cap) is not worth waiting for
+    private static final Duration MAX_RETRY_WAIT = Duration.ofMinutes(2);
     private static final String HEADER_MESSAGE =
             String.format("%-35s %10s %10s %10s %12s %10s %10s",
                     "Provider/Model", "Avg Time", "Success", "Accuracy", "Avg Cost", "Tokens", "Calls");
+    // Leader = most reliable, then most accurate, then fastest
+    static final Comparator<TestResults> LEADER_ORDER =
+            Comparator.comparingDouble(TestResults::getSuccessRate)
+                    .thenComparingDouble(TestResults::getAverageAccuracy)
+                    .thenComparing(Comparator.comparingDouble(TestResults::getAverageTime).reversed());
 
     private final List<LlmProvider> providers;
-    private final int iterations;
+    private final AdaptiveSampling sampling;
 
     private final int timeoutSeconds;
+    private final Map<String, ProviderCircuitBreaker> providerBreakers = new HashMap<>();
+    private final Map<String, ProviderCircuitBreaker> modelBreakers = new HashMap<>();
+    private final List<Advisor> advisors = new ArrayList<>();
+    private int breakerFailureThreshold = 2;
+    private int modelBreakerFailureThreshold;
+    private Duration breakerOpenDuration = Duration.ofMinutes(5);
 
     public BenchmarkRunner(List<LlmProvider> providers, int iterations, int timeoutSeconds) {
+        this(providers, AdaptiveSampling.fixed(iterations), timeoutSeconds);
+    }
+
+    public BenchmarkRunner(List<LlmProvider> providers, AdaptiveSampling sampling, int timeoutSeconds) {
         this.providers = providers;
-        this.iterations = iterations;
+        this.sampling = sampling;
         this.timeoutSeconds = timeoutSeconds;
     }
 
+    /**
+     * Opens a provider's circuit after {@code failureThreshold} consecutive failed runs across its models, so a
+     * dead endpoint or a bad API key stops the whole provider instead of failing every model in turn. Runs are
+     * skipped until {@code openDuration} has passed and a half-open probe succeeds.
+     */
+    public BenchmarkRunner withCircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.breakerFailureThreshold = failureThreshold;
+        this.breakerOpenDuration = openDuration;
+        providerBreakers.clear();
+        modelBreakers.clear();
+        return this;
+    }
+
+    /**
+     * Adds a breaker per model on top of the provider's, opening after {@code failureThreshold} consecutive
+     * failed runs of that model. With a threshold below the provider's, a retired or failing model is skipped
+     * before its failures open the circuit for the provider's other models.
+     */
+    public BenchmarkRunner withModelCircuitBreakers(int failureThreshold) {
+        this.modelBreakerFailureThreshold = failureThreshold;
+        modelBreakers.clear();
+        return this;
+    }
+
+    /**
+     * Adds advisors to every provider's chat client, e.g. a {@link RecordReplayAdvisor}.
+     */
+    public BenchmarkRunner withAdvisors(Advisor... advisors) {
+        this.advisors.addAll(List.of(advisors));
+        return this;
+    }
+
     public BenchmarkResults runBenchmark(TestScenario scenario) {
-        logger.info("\n=== BENCHMARK: {} ===", scenario.getName());
+        return runBenchmarks(scenario).getFirst();
+    }
 
-        BenchmarkResults results = new BenchmarkResults(scenario.getName());
+    /**
+     * Runs every scenario on a model before moving on to the next model, so a local model is loaded once
+     * for the whole sweep instead of once per scenario. Each model is warmed up first and its load time is
+     * reported as cold start, separate from the latency of its runs.
+     */
+    public List<BenchmarkResults> runBenchmarks(TestScenario... scenarios) {
+        List<BenchmarkResults> results = new ArrayList<>();
+        for (TestScenario scenario : scenarios) {
+            logger.info("\n=== BENCHMARK: {} ===", scenario.getName());
+            results.add(new BenchmarkResults(scenario.getName()));
+        }
+        TestResults[] leaders = new TestResults[scenarios.length];
 
         for (LlmProvider provider : providers) {
             if (!provider.isAvailable()) {
@@ -45,6 +110,12 @@ public class BenchmarkRunner {
                         provider.getName(), "Set " + provider.apiKeyEnvVar);
                 continue;
             }
+            try {
+                provider.prepare();
+            } catch (Exception e) {
+                logger.error("Skipping {} - preparation failed: {}", provider.getName(), e.getMessage());
+                continue;
+            }
 
             for (String model : provider.getSupportedModels()) {
                 String fullModelName = provider.getFullModelName(model);
@@ -59,20 +130,49 @@ public class BenchmarkRunner {
                     continue;
                 }
 
-                TestResults modelResults = runTestIterations(provider, model, scenario);
-                results.addResult(fullModelName, modelResults);
+                Duration coldStart = warmUp(provider, model);
+                for (int s = 0; s < scenarios.length; s++) {
+                    TestResults modelResults = runTestIterations(provider, model, scenarios[s], leaders[s]);
+                    modelResults.coldStart = coldStart;
+                    results.get(s).addResult(fullModelName, modelResults);
+                    if (modelResults.getSuccessRate() > 0
+                        && (leaders[s] == null || LEADER_ORDER.compare(modelResults, leaders[s]) > 0)) {
+                        leaders[s] = modelResults;
+                    }
+                }
             }
         }
 
         return results;
     }
 
-    private TestResults runTestIterations(LlmProvider provider, String model, TestScenario scenario) {
+    private @Nullable Duration warmUp(LlmProvider provider, String model) {
+        try {
+            Duration coldStart = provider.warmUp(model);
+            return coldStart.isZero() ? null : coldStart;
+        } catch (Exception e) {
+            // The first run will pay the load time instead
+            logger.warn("Warm-up failed for {}: {}", provider.getFullModelName(model), e.getMessage());
+            return null;
+        }
+    }
+
+    private TestResults runTestIterations(LlmProvider provider, String model, TestScenario scenario,
+                                          @Nullable TestResults leader) {
         String fullModelName = provider.getFullModelName(model);
         logger.info("Testing: {}", fullModelName);
         TestResults results = new TestResults(fullModelName);
+        int iterations = sampling.maxIterations();
+        List<ProviderCircuitBreaker> breakers = circuitBreakers(provider, fullModelName);
 
         for (int i = 0; i < iterations; i++) {
+            // Skip only this run: a later one in the cell may be the half-open probe
+            String refusal = refusal(breakers);
+            if (refusal != null) {
+                logger.warn("  {} - {}", fullModelName, refusal);
+                results.skip(refusal);
+                continue;
+            }
             logger.info("  Iteration {}/{}", i + 1, iterations);
 
             TestRun run = null;
@@ -80,14 +180,19 @@ public class BenchmarkRunner {
 
             for (int retry = 0; retry < MAX_RETRIES; retry++) {
                 try {
+                    provider.getRateLimits().clear();
                     run = executeSingleTest(provider, model, scenario);
-                    if (run.success || !isRateLimitError(run.error)) {
+                    if (run.success || !isRateLimited(provider, run)) {
                         break;
                     }
 
+                    Duration wait = retryWait(provider.getRateLimits().last(), Duration.ofMillis(backoffMs));
+                    if (wait == null) {
+                        break;
+                    }
                     logger.warn("Rate limit hit, waiting {} seconds before retry {}/{}",
-                            backoffMs / 1000.0, retry + 1, MAX_RETRIES);
-                    Thread.sleep(backoffMs);
+                            wait.toMillis() / 1000.0, retry + 1, MAX_RETRIES);
+                    Thread.sleep(wait.toMillis());
                     backoffMs *= 2;
 
                 } catch (InterruptedException e) {
@@ -97,23 +202,90 @@ public class BenchmarkRunner {
             }
 
             results.addRun(run);
+            recordOutcome(breakers, provider, run);
 
             // Reset tool service state if it has a reset method
             resetToolService(scenario.getToolService());
 
+            String stopReason = sampling.stopReason(results, leader);
+            if (stopReason != null) {
+                logger.info("  Stopping {} after {} runs: {}", fullModelName, results.runs.size(), stopReason);
+                results.stopReason = stopReason;
+                break;
+            }
+
             if (i < iterations - 1) {
                 try {
-                    logger.info("  Waiting {} seconds before next iteration...", RATE_LIMIT_DELAY_MS / 1000);
-                    Thread.sleep(RATE_LIMIT_DELAY_MS);
+                    Duration pause = RateLimitInfo.retryDelay(provider.getRateLimits().last(),
+                            Duration.ofMillis(RATE_LIMIT_DELAY_MS));
+                    if (pause.compareTo(MAX_RETRY_WAIT) > 0) {
+                        pause = MAX_RETRY_WAIT;
+                    }
+                    if (pause.isPositive()) {
+                        logger.info("  Waiting {} seconds before next iteration...", pause.toMillis() / 1000.0);
+                        Thread.sleep(pause.toMillis());
+                    }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 }
             }
         }
 
+        if (results.stopReason == null && !sampling.isFixed()) {
+            results.stopReason = "reached max iterations";
+        }
         return results;
     }
 
+    /**
+     * How long to wait before retrying a rate-limited run: the provider's hint, else {@code backoff}. Returns
+     * {@code null} when the limit resets further out than {@link #MAX_RETRY_WAIT}, so the caller gives up.
+     */
+    static @Nullable Duration retryWait(@Nullable RateLimitInfo rateLimit, Duration backoff) {
+        Duration wait = RateLimitInfo.retryDelay(rateLimit, backoff);
+        if (wait.compareTo(MAX_RETRY_WAIT) > 0) {
+            logger.warn("Rate limit resets in {} seconds, not retrying", wait.toSeconds());
+            return null;
+        }
+        return wait;
+    }
+
+    /** The model's breaker, when per-model breakers are on, then its provider's. */
+    private List<ProviderCircuitBreaker> circuitBreakers(LlmProvider provider, String fullModelName) {
+        List<ProviderCircuitBreaker> breakers = new ArrayList<>(2);
+        if (modelBreakerFailureThreshold > 0) {
+            breakers.add(modelBreakers.computeIfAbsent(fullModelName,
+                    name -> new ProviderCircuitBreaker(name, modelBreakerFailureThreshold, breakerOpenDuration)));
+        }
+        breakers.add(providerBreakers.computeIfAbsent(provider.getName(),
+                name -> new ProviderCircuitBreaker(name, breakerFailureThreshold, breakerOpenDuration)));
+        return breakers;
+    }
+
+    /** Why the next run may not be sent, or {@code null} when every breaker lets it through. */
+    private static @Nullable String refusal(List<ProviderCircuitBreaker> breakers) {
+        for (ProviderCircuitBreaker breaker : breakers) {
+            if (!breaker.allowRequest()) {
+                return breaker.skipReason();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Only errors count against the endpoint: a run that completes with a wrong answer says nothing about
+     * whether it is healthy, and rate limits are already handled by the retry loop.
+     */
+    private void recordOutcome(List<ProviderCircuitBreaker> breakers, LlmProvider provider, TestRun run) {
+        for (ProviderCircuitBreaker breaker : breakers) {
+            if (run.error == null) {
+                breaker.recordSuccess();
+            } else if (!isRateLimited(provider, run)) {
+                breaker.recordFailure(run.error);
+            }
+        }
+    }
+
     private TestRun executeSingleTest(LlmProvider provider, String model, TestScenario scenario) {
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<TestRun> future = executor.submit(() -> {
@@ -121,12 +293,20 @@ public class BenchmarkRunner {
 
             try {
                 ChatClient chatClient = provider.createChatClient(model, scenario);
+                AdvisorTimings advisorTimings = provider.getAdvisorTimings();
+                if (!advisors.isEmpty()) {
+                    chatClient = chatClient.mutate()
+                            .defaultAdvisors(advisorTimings != null
+                                    ? advisorTimings.wrap(advisors.toArray(Advisor[]::new)) : advisors)
+                            .build();
+                }
+                String fullModelName = provider.getFullModelName(model);
 
                 StopWatch stopWatch = new StopWatch();
                 stopWatch.start();
 
                 // Remove async for debugging
-                ChatClientResponse lastResponse = null;
+                List<ChatResponse> turns = new ArrayList<>();
                 for (int i = 0; i < scenario.getPrompts().size(); i++) {
                     String prompt = scenario.getPrompts().get(i);
                     logger.info("    Sending prompt {}/{}: {}",
@@ -134,14 +314,22 @@ public class BenchmarkRunner {
                             prompt.substring(0, Math.min(50, prompt.length())));
 
                     try {
-                        lastResponse = chatClient.prompt()
+                        ChatClientResponse response = chatClient.prompt()
                                 .system(scenario.getSystemPrompt())
                                 .user(prompt)
                                 .tools(scenario.getToolService())
+                                .advisors(spec -> spec.param(MODEL_CONTEXT_KEY, fullModelName))
                                 .call()
                                 .chatClientResponse();
+                        if (response.chatResponse() != null) {
+                            turns.add(response.chatResponse());
+                        }
+                        if (advisorTimings != null) {
+                            run.advisorTurns.add(advisorTimings.takeTurn());
+                        }
 
                         logger.info("    Received response for prompt {}", i + 1);
+                        flushToolService(scenario.getToolService());
 
                         // Log tool calls made
                         int callsMade = getToolCallCount(scenario.getToolService());
@@ -155,21 +343,18 @@ public class BenchmarkRunner {
 
                 stopWatch.stop();
                 run.executionTimeMs = stopWatch.getTotalTimeMillis();
-
-                ChatResponse chatResponse = Objects.requireNonNull(lastResponse).chatResponse();
-
-                if (chatResponse != null && chatResponse.getMetadata().getUsage() != null) {
-                    var usage = chatResponse.getMetadata().getUsage();
-                    run.promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
-                    run.completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
-
-                    var pricing = provider.getPricing(model);
-                    run.cost = pricing.calculateCost(run.promptTokens, run.completionTokens);
+                try {
+                    provider.recordRunMetrics(model, run, turns);
+                } catch (Exception e) {
+                    logger.warn("    Could not record run metrics: {}", e.getMessage());
                 }
 
+                addUsageAndCost(run, provider, model, turns);
+
                 run.accuracyScore = scenario.getValidation().validate();
                 run.success = run.accuracyScore > 0;
                 run.toolCallsMade = getToolCallCount(scenario.getToolService());
+                run.toolCallsSaved = getSavedCallCount(scenario.getToolService());
 
             } catch (Exception e) {
                 logger.error("Error in test run: {}", e.getMessage());
@@ -199,7 +384,40 @@ public class BenchmarkRunner {
         }
     }
 
-    private boolean isRateLimitError(String error) {
+    /**
+     * Sums every turn's usage into the run, pricing each turn by the model that served it: a multi-turn run of
+     * a routing or local-first provider can be served by different tiers from one turn to the next.
+     */
+    private static void addUsageAndCost(TestRun run, LlmProvider provider, String model, List<ChatResponse> turns) {
+        for (ChatResponse turn : turns) {
+            var usage = turn.getMetadata().getUsage();
+            if (usage == null) {
+                continue;
+            }
+            int promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+            int completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+            run.promptTokens += promptTokens;
+            run.completionTokens += completionTokens;
+            var pricing = provider.getPricing(model, turn);
+            if (pricing != null) {
+                run.cost += pricing.calculateCost(promptTokens, completionTokens);
+            }
+        }
+    }
+
+    /**
+     * Trusts the HTTP status captured from the provider's last response; falls back to searching the error
+     * message for providers whose client we cannot intercept.
+     */
+    private boolean isRateLimited(LlmProvider provider, TestRun run) {
+        RateLimitInfo rateLimit = provider.getRateLimits().last();
+        if (rateLimit != null) {
+            return rateLimit.isRateLimited();
+        }
+        return isRateLimitError(run.error);
+    }
+
+    private boolean isRateLimitError(@Nullable String error) {
         return error != null && (
                 error.contains("rate_limit_exceeded") ||
                 error.contains("429") ||
@@ -216,6 +434,30 @@ public class BenchmarkRunner {
         }
     }
 
+    /**
+     * Sends writes a buffering tool service is still holding, so the turn's effects are on the console before
+     * the next prompt or the validation looks at it.
+     */
+    private void flushToolService(Object toolService) {
+        try {
+            var flushMethod = toolService.getClass().getMethod("flush");
+            flushMethod.invoke(toolService);
+        } catch (NoSuchMethodException e) {
+            // Tool service writes through, nothing to flush
+        } catch (Exception e) {
+            logger.warn("    Could not flush tool service: {}", e.getMessage());
+        }
+    }
+
+    private int getSavedCallCount(Object toolService) {
+        try {
+            var method = toolService.getClass().getMethod("getSavedCallCount");
+            return (int) method.invoke(toolService);
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
     private int getToolCallCount(Object toolService) {
         try {
             var method = toolService.getClass().getMethod("getTotalCallCount");
@@ -257,65 +499,64 @@ public class BenchmarkRunner {
                         String.format("%10.0f", tr.getAverageToolCalls())
                 );
 
+                if (tr.coldStart != null) {
+                    logger.info("    Cold start: {}ms (excluded from latency)", tr.coldStart.toMillis());
+                }
+                double diskBytes = tr.getAverageMeasured(r -> r.diskSizeBytes);
+                double evalRate = tr.getAverageMeasured(r -> r.evalTokensPerSecond);
+                if (diskBytes > 0 || evalRate > 0) {
+                    logger.info("    Local: {} GB disk, {} GB resident ({} GB VRAM), prompt eval {} tok/s, eval {} tok/s, "
+                                + "load {}ms",
+                            String.format("%.1f", diskBytes / 1e9),
+                            String.format("%.1f", tr.getAverageMeasured(r -> r.residentMemoryBytes) / 1e9),
+                            String.format("%.1f", tr.getAverageMeasured(r -> r.vramBytes) / 1e9),
+                            String.format("%.0f", tr.getAverageMeasured(r -> r.promptEvalTokensPerSecond)),
+                            String.format("%.0f", evalRate),
+                            String.format("%.0f", tr.getAverageMeasured(r -> r.loadDurationMs)));
+                }
+                double saved = tr.getAverageMeasured(r -> r.toolCallsSaved);
+                if (saved > 0) {
+                    logger.info("    Coalescing: {} tool calls per run kept off the console",
+                            String.format("%.1f", saved));
+                }
+                TestResults.TimingBreakdown timing = tr.getTimingBreakdown();
+                if (!timing.isEmpty()) {
+                    logger.info("    Timing: queue {}, load {}, prompt {}, generation {}, client {} (ms per run)",
+                            String.format("%.0f", timing.queueMs()),
+                            String.format("%.0f", timing.loadMs()),
+                            String.format("%.0f", timing.promptEvalMs()),
+                            String.format("%.0f", timing.evalMs()),
+                            String.format("%.0f", timing.clientMs()));
+                }
+                if (tr.stopReason != null) {
+                    logger.info("    Sampling: {} runs ({})", tr.runs.size(), tr.stopReason);
+                }
                 if (!tr.errors.isEmpty()) {
                     logger.info("    Errors: {}", String.join(", ", tr.errors));
                 }
             }
         }
 
-        public void determineWinner() {
-            logger.info("\n=== WINNER DETERMINATION ===");
-
-            Map<String, TestResults> viableModels = results.entrySet().stream()
-                    .filter(entry -> entry.getValue().getSuccessRate() > 0)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-            if (viableModels.isEmpty()) {
-                logger.info("\n❌ NO WINNER: All models failed completely");
-                return;
-            }
-
-            Map<String, Double> scores = new HashMap<>();
-            Map<String, String> scoreBreakdowns = new HashMap<>();
-
-            for (var entry : viableModels.entrySet()) {
-                String model = entry.getKey();
-                TestResults tr = entry.getValue();
-
-                double reliabilityScore = tr.getSuccessRate() * 50;
-                double accuracyScore = tr.getAverageAccuracy() * 30;
-                double speedScore = tr.getAverageTime() > 0 ?
-                        Math.min(15.0, 15000.0 / tr.getAverageTime()) : 0;
-                double costScore = tr.getAverageCost() > 0 ?
-                        Math.min(5.0, 0.05 / tr.getAverageCost()) : 5.0;
-
-                double totalScore = reliabilityScore + accuracyScore + speedScore + costScore;
-                scores.put(model, totalScore);
-
-                scoreBreakdowns.put(model, String.format(
-                        "reliability=%.1f, accuracy=%.1f, speed=%.1f, cost=%.1f",
-                        reliabilityScore, accuracyScore, speedScore, costScore));
-            }
-
-            String winner = scores.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse("No winner");
-
-            logger.info("\n🏆 WINNER: {}", winner);
-            logger.info("\nFinal Scores (max 100):");
-            scores.entrySet().stream()
-                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                    .forEach(e -> logger.info("  {}: {} ({})",
-                            e.getKey(), String.format("%.2f", e.getValue()), scoreBreakdowns.get(e.getKey())));
+        public ParetoRanking.Ranking determineWinner() {
+            return determineWinner(ServiceLevelObjective.ANY_RELIABLE);
+        }
 
-            Set<String> disqualified = results.keySet().stream()
-                    .filter(model -> !viableModels.containsKey(model))
-                    .collect(Collectors.toSet());
+        public ParetoRanking.Ranking determineWinner(ServiceLevelObjective slo) {
+            logger.info("\n=== WINNER DETERMINATION ===");
+            ParetoRanking.Ranking ranking = ParetoRanking.rank(getMetrics().values(), slo);
+            ranking.printReport();
+            return ranking;
+        }
 
-            if (!disqualified.isEmpty()) {
-                logger.info("\n❌ Disqualified (0% success): {}", String.join(", ", disqualified));
-            }
+        public Map<String, ModelMetrics> getMetrics() {
+            Map<String, ModelMetrics> metrics = new LinkedHashMap<>();
+            results.forEach((model, testResults) -> {
+                // Models skipped by an open circuit were never measured, so they have nothing to rank
+                if (!testResults.runs.isEmpty()) {
+                    metrics.put(model, ModelMetrics.from(testResults));
+                }
+            });
+            return metrics;
         }
 
         public Map<String, TestResults> getResults() {
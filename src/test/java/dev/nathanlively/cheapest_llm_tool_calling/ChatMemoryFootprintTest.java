@@ -0,0 +1,107 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Heap and GC cost of holding many conversations: the in-heap {@link MessageWindowChatMemory} every provider
+ * uses against the off-heap {@link CompactChatMemory}. Each conversation is filled with band-setup turns,
+ * including tool calls and their JSON results, then every conversation is read back once as the memory advisor
+ * would on the next turn.
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+public class ChatMemoryFootprintTest {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMemoryFootprintTest.class);
+    private static final int CONVERSATIONS = 20_000;
+    private static final int TURNS = 8;
+    private static final int WINDOW = 10;
+
+    @Test
+    void compactMemoryUsesLessHeap() {
+        logger.info(String.format("%-28s %12s %12s %10s %12s %10s",
+                "Memory", "Heap MB", "Off-heap MB", "GC count", "GC time ms", "Read ms"));
+        long windowHeap = measure("MessageWindowChatMemory",
+                () -> MessageWindowChatMemory.builder().maxMessages(WINDOW).build());
+        long compactHeap = measure("CompactChatMemory", () -> new CompactChatMemory(WINDOW));
+
+        assertThat(compactHeap).isLessThan(windowHeap);
+    }
+
+    private long measure(String name, Supplier<ChatMemory> factory) {
+        long baseline = usedHeapAfterGc();
+        long[] gcBefore = gcTotals();
+
+        ChatMemory memory = factory.get();
+        for (int turn = 0; turn < TURNS; turn++) {
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                memory.add("operator-" + c, turn(turn));
+            }
+        }
+        long readStart = System.nanoTime();
+        long messages = 0;
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            messages += memory.get("operator-" + c).size();
+        }
+        long readMs = (System.nanoTime() - readStart) / 1_000_000;
+
+        long[] gcAfter = gcTotals();
+        long heap = usedHeapAfterGc() - baseline;
+        long offHeap = memory instanceof CompactChatMemory compact ? compact.getOffHeapBytes() : 0;
+        logger.info(String.format("%-28s %12.1f %12.1f %10d %12d %10d",
+                name, heap / 1e6, offHeap / 1e6, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], readMs));
+        assertThat(messages).isEqualTo((long) CONVERSATIONS * WINDOW);
+
+        // Keep the memory reachable until the heap has been measured
+        assertThat(memory.get("operator-0")).isNotEmpty();
+        return heap;
+    }
+
+    /** One band-setup turn: the request, a tool call, the console's answer and the model's reply. */
+    private static List<Message> turn(int turn) {
+        String path = "ch." + turn + ".cfg.name";
+        String arguments = "{\"apiCall\": {\"path\": \"" + path + "\", \"value\": \"Channel " + turn + "\"}}";
+        return List.of(
+                new UserMessage("Rename channel " + (turn + 1) + " to Channel " + turn),
+                new AssistantMessage("", Map.of(), List.of(
+                        new AssistantMessage.ToolCall("call-" + turn, "function", "setSingleParameter", arguments))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-" + turn,
+                        "setSingleParameter",
+                        "{\"path\":\"" + path + "\",\"value\":\"Channel " + turn + "\",\"status\":\"SUCCESS\"}")),
+                        Map.of()),
+                new AssistantMessage("Renamed channel " + (turn + 1) + " to Channel " + turn + "."));
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long timeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            timeMs += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, timeMs};
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,95 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoalescingConsoleServiceTest {
+
+    private final MockMixingConsoleService console = new MockMixingConsoleService();
+
+    @Test
+    void onlyLastWriteOfEachPathIsSent() {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMinutes(1));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        coalescing.setMultipleParameters(List.of(
+                new ApiCall("ch.0.cfg.name", "Kick In"),
+                new ApiCall("ch.1.cfg.name", "Snare")));
+        assertThat(console.getTotalCallCount()).isZero();
+
+        coalescing.flush();
+
+        assertThat(console.getCapturedApiCalls()).containsExactly(
+                new ApiCall("ch.0.cfg.name", "Kick In"), new ApiCall("ch.1.cfg.name", "Snare"));
+        assertThat(coalescing.getSavedCallCount()).isEqualTo(2);
+    }
+
+    @Test
+    void valueAlreadyOnConsoleIsNotResent() {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMinutes(1));
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        coalescing.flush();
+
+        assertThat(console.getTotalCallCount()).isEqualTo(1);
+        assertThat(coalescing.getSavedCallCount()).isEqualTo(1);
+    }
+
+    @Test
+    void writeSupersededBackToConsoleValueIsDropped() {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMinutes(1));
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Snare"));
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        coalescing.flush();
+
+        assertThat(console.getTotalCallCount()).isEqualTo(1);
+        assertThat(coalescing.getSavedCallCount()).isEqualTo(2);
+    }
+
+    @Test
+    void writeBackToPreviousValueDuringFlushIsNotLost() throws InterruptedException {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMinutes(1));
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Snare"));
+        CompletableFuture<Void> sending = CompletableFuture.runAsync(coalescing::flush);
+        // The console still reads Kick while the batch setting Snare is on the wire
+        Thread.sleep(100);
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        sending.join();
+        coalescing.flush();
+
+        assertThat(console.getValue("ch.0.cfg.name")).isEqualTo("Kick");
+    }
+
+    @Test
+    void readSeesPendingWrite() {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMinutes(1));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+
+        assertThat(coalescing.getParameter("ch.0.cfg.name").value()).isEqualTo("Kick");
+    }
+
+    @Test
+    void writesAreSentWhenWindowCloses() throws InterruptedException {
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(console, Duration.ofMillis(50));
+
+        coalescing.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (console.getTotalCallCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(console.getCapturedApiCalls()).containsExactly(new ApiCall("ch.0.cfg.name", "Kick"));
+    }
+}
@@ -0,0 +1,98 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactChatMemoryTest {
+
+    @Test
+    void messagesSurviveTheRoundTrip() {
+        CompactChatMemory memory = new CompactChatMemory(10);
+        AssistantMessage.ToolCall call = new AssistantMessage.ToolCall("call-1", "function", "setSingleParameter",
+                "{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}");
+        ToolResponseMessage.ToolResponse response = new ToolResponseMessage.ToolResponse("call-1",
+                "setSingleParameter", "{\"path\":\"ch.0.cfg.name\",\"value\":\"Kick\",\"status\":\"SUCCESS\"}");
+
+        memory.add("a", List.of(
+                new UserMessage("Rename channel 1 to Kick"),
+                new AssistantMessage("", Map.of(), List.of(call)),
+                new ToolResponseMessage(List.of(response), Map.of()),
+                new AssistantMessage("Renamed channel 1 to Kick")));
+
+        List<Message> messages = memory.get("a");
+        assertThat(messages).hasSize(4);
+        assertThat(messages.get(0).getText()).isEqualTo("Rename channel 1 to Kick");
+        assertThat(((AssistantMessage) messages.get(1)).getToolCalls()).containsExactly(call);
+        assertThat(((ToolResponseMessage) messages.get(2)).getResponses()).containsExactly(response);
+        assertThat(messages.get(3).getText()).isEqualTo("Renamed channel 1 to Kick");
+    }
+
+    @Test
+    void keepsWindowAndLatestSystemMessage() {
+        CompactChatMemory memory = new CompactChatMemory(3);
+
+        memory.add("a", List.of(new SystemMessage("old rules"), new UserMessage("1"), new UserMessage("2")));
+        memory.add("a", List.of(new SystemMessage("new rules"), new UserMessage("3"), new UserMessage("4"),
+                new UserMessage("5")));
+
+        assertThat(memory.get("a").stream().map(Message::getText).toList())
+                .containsExactly("new rules", "4", "5");
+    }
+
+    @Test
+    void systemMessageCountsTowardTheWindowLikeMessageWindowChatMemory() {
+        CompactChatMemory memory = new CompactChatMemory(3);
+        MessageWindowChatMemory upstream = MessageWindowChatMemory.builder().maxMessages(3).build();
+        List<List<Message>> batches = List.of(
+                List.of(new UserMessage("1"), new UserMessage("2"), new UserMessage("3")),
+                List.of(new SystemMessage("rules")),
+                List.of(new UserMessage("4"), new UserMessage("5")));
+
+        for (List<Message> batch : batches) {
+            memory.add("a", batch);
+            upstream.add("a", batch);
+        }
+
+        assertThat(memory.get("a")).hasSize(3);
+        assertThat(memory.get("a").stream().map(Message::getText).toList())
+                .containsExactlyElementsOf(upstream.get("a").stream().map(Message::getText).toList());
+    }
+
+    @Test
+    void wrapsAndGrowsWithoutCorruptingMessages() {
+        CompactChatMemory memory = new CompactChatMemory(4);
+        List<String> texts = IntStream.range(0, 50)
+                .mapToObj(i -> String.valueOf((char) ('a' + i % 26)).repeat(100 + (i * 37) % 900))
+                .toList();
+
+        texts.forEach(text -> memory.add("a", List.of(new UserMessage(text))));
+
+        assertThat(memory.get("a").stream().map(Message::getText).toList())
+                .containsExactlyElementsOf(texts.subList(46, 50));
+    }
+
+    @Test
+    void clearReleasesOffHeapMemory() {
+        CompactChatMemory memory = new CompactChatMemory(10);
+        memory.add("a", List.of(new UserMessage("Rename channel 1 to Kick")));
+        memory.add("b", List.of(new UserMessage("Rename channel 2 to Snare")));
+        assertThat(memory.getOffHeapBytes()).isPositive();
+
+        memory.clear("a");
+        memory.clear("b");
+
+        assertThat(memory.getOffHeapBytes()).isZero();
+        assertThat(memory.get("a")).isEmpty();
+    }
+}
@@ -0,0 +1,180 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Load-test mode: N operators hold conversations against one endpoint at the same time. Each operator runs
+ * conversations back to back (closed loop), so throughput is what the server sustains at that concurrency.
+ * Every conversation gets a fresh scenario from the supplier, and with it its own console state.
+ * <p>
+ * By default every operator has a platform thread of its own. {@link #withRequestThreads} runs the operators'
+ * requests on fewer platform threads, so a tool that blocks its thread holds back the operators waiting for
+ * one; {@link #withVirtualThreads} runs them on virtual threads, bounded by the JVM's carrier threads.
+ */
+public class ConcurrentLoadRunner {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentLoadRunner.class);
+    private static final String HEADER_MESSAGE =
+            String.format("%-12s %4s %10s %10s %10s %10s %10s %10s %8s",
+                    "NUM_PARALLEL", "N", "Conv/min", "Tokens/s", "Turn p50", "Turn p95", "Conv p50", "Conv p95", "Success");
+
+    private final LlmProvider provider;
+    private final String model;
+    private final int timeoutSeconds;
+    private final IntFunction<ExecutorService> requestPool;
+
+    public ConcurrentLoadRunner(LlmProvider provider, String model, int timeoutSeconds) {
+        this(provider, model, timeoutSeconds, Executors::newFixedThreadPool);
+    }
+
+    private ConcurrentLoadRunner(LlmProvider provider, String model, int timeoutSeconds,
+                                 IntFunction<ExecutorService> requestPool) {
+        this.provider = provider;
+        this.model = model;
+        this.timeoutSeconds = timeoutSeconds;
+        this.requestPool = requestPool;
+    }
+
+    /** This runner with all operators' requests sharing a pool of {@code threads} platform threads. */
+    public ConcurrentLoadRunner withRequestThreads(int threads) {
+        return new ConcurrentLoadRunner(provider, model, timeoutSeconds,
+                concurrency -> Executors.newFixedThreadPool(threads));
+    }
+
+    /** This runner with every operator's requests on a virtual thread. */
+    public ConcurrentLoadRunner withVirtualThreads() {
+        return new ConcurrentLoadRunner(provider, model, timeoutSeconds,
+                concurrency -> Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public LoadResult run(int concurrency, int conversationsPerOperator, Supplier<TestScenario> scenarios) {
+        logger.info("Load test: {} concurrent operators x {} conversations on {}",
+                concurrency, conversationsPerOperator, provider.getFullModelName(model));
+        Queue<TestRun> runs = new ConcurrentLinkedQueue<>();
+        Queue<Long> turnLatenciesMs = new ConcurrentLinkedQueue<>();
+
+        long start = System.nanoTime();
+        ExecutorService operators = requestPool.apply(concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int operator = 0; operator < concurrency; operator++) {
+                futures.add(operators.submit(() -> {
+                    for (int i = 0; i < conversationsPerOperator && !Thread.currentThread().isInterrupted(); i++) {
+                        runs.add(runConversation(scenarios.get(), turnLatenciesMs));
+                    }
+                }));
+            }
+            awaitAll(futures);
+        } finally {
+            operators.shutdownNow();
+        }
+        Duration wallTime = Duration.ofNanos(System.nanoTime() - start);
+
+        TestResults results = new TestResults(provider.getFullModelName(model) + " x" + concurrency);
+        runs.forEach(results::addRun);
+        long[] turns = turnLatenciesMs.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new LoadResult(concurrency, wallTime, results, turns);
+    }
+
+    private void awaitAll(List<Future<?>> futures) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        for (Future<?> future : futures) {
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (Exception e) {
+                logger.error("Load test operator did not finish: {}", e.getMessage());
+                futures.forEach(f -> f.cancel(true));
+                return;
+            }
+        }
+    }
+
+    private TestRun runConversation(TestScenario scenario, Queue<Long> turnLatenciesMs) {
+        TestRun run = new TestRun();
+        long start = System.nanoTime();
+        try {
+            ChatClient chatClient = provider.createChatClient(model, scenario);
+            for (String prompt : scenario.getPrompts()) {
+                long turnStart = System.nanoTime();
+                ChatResponse response = chatClient.prompt()
+                        .system(scenario.getSystemPrompt())
+                        .user(prompt)
+                        .tools(scenario.getToolService())
+                        .call()
+                        .chatResponse();
+                turnLatenciesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - turnStart));
+
+                Usage usage = response != null ? response.getMetadata().getUsage() : null;
+                if (usage != null) {
+                    run.promptTokens += usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+                    run.completionTokens += usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+                }
+            }
+            run.executionTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            run.accuracyScore = scenario.getValidation().validate();
+            run.success = run.accuracyScore > 0;
+        } catch (Exception e) {
+            logger.error("Conversation failed: {}", e.getMessage());
+            run.success = false;
+            run.error = e.getMessage();
+        }
+        return run;
+    }
+
+    public static void printHeader() {
+        logger.info(HEADER_MESSAGE);
+        logger.info("{}", "-".repeat(HEADER_MESSAGE.length()));
+    }
+
+    /**
+     * One point of the sweep. Conversation latency percentiles come from {@link TestResults}; turn latency
+     * is what an operator waits after each request.
+     */
+    public record LoadResult(int concurrency, Duration wallTime, TestResults conversations, long[] turnLatenciesMs) {
+
+        public double conversationsPerMinute() {
+            long completed = conversations.runs.stream().filter(r -> r.error == null).count();
+            return completed / (wallTime.toMillis() / 60_000.0);
+        }
+
+        /** Generated tokens per second across all operators. */
+        public double tokensPerSecond() {
+            long tokens = conversations.runs.stream().mapToLong(r -> r.completionTokens).sum();
+            return tokens / (wallTime.toMillis() / 1_000.0);
+        }
+
+        public double turnLatencyPercentile(double percentile) {
+            if (turnLatenciesMs.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * turnLatenciesMs.length);
+            return turnLatenciesMs[Math.clamp(rank - 1, 0, turnLatenciesMs.length - 1)];
+        }
+
+        public void printRow(String numParallel) {
+            logger.info(String.format("%-12s %4d %10.1f %10.1f %8.0fms %8.0fms %8.0fms %8.0fms %7.0f%%",
+                    numParallel, concurrency, conversationsPerMinute(), tokensPerSecond(),
+                    turnLatencyPercentile(50), turnLatencyPercentile(95),
+                    conversations.getLatencyPercentile(50), conversations.getLatencyPercentile(95),
+                    conversations.getSuccessRate() * 100));
+            if (!conversations.errors.isEmpty()) {
+                logger.info("    Errors: {}", String.join(", ", conversations.errors));
+            }
+        }
+    }
+}
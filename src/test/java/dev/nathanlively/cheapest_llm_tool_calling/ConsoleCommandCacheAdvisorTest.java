@@ -0,0 +1,99 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsoleCommandCacheAdvisorTest {
+
+    private final MockMixingConsoleService console = new MockMixingConsoleService();
+    private final ToolRunningChatModel model = new ToolRunningChatModel();
+    private final ConsoleCommandCacheAdvisor cache = new ConsoleCommandCacheAdvisor(console, 100);
+    private final ChatClient chatClient = ChatClient.builder(model).defaultAdvisors(cache).build();
+
+    @Test
+    void repeatedCommandSkipsModel() {
+        model.runs("setSingleParameter", "{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}");
+
+        send("Rename channel 1 to Kick");
+        String answer = send("  rename channel 1 to   kick.");
+
+        assertThat(model.calls.get()).isEqualTo(1);
+        assertThat(answer).isEqualTo("Done");
+        assertThat(console.getCapturedApiCalls()).hasSize(2);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void commandDependingOnConversationIsNotCached() {
+        model.runs("setSingleParameter", "{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}");
+
+        send("Rename the first channel you renamed to Kick");
+        send("Rename the first channel you renamed to Kick");
+
+        assertThat(model.calls.get()).isEqualTo(2);
+        assertThat(cache.getHits()).isZero();
+    }
+
+    @Test
+    void planIsInvalidatedWhenParameterItReadChanges() {
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        model.runs("getParameter", "{\"path\": \"ch.0.cfg.name\"}");
+        model.runs("setSingleParameter", "{\"apiCall\": {\"path\": \"ch.2.cfg.name\", \"value\": \"Backup-Kick\"}}");
+
+        send("Rename channel 3 to channel 1 with a Backup- prefix");
+        send("Rename channel 3 to channel 1 with a Backup- prefix");
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Snare"));
+        send("Rename channel 3 to channel 1 with a Backup- prefix");
+
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(model.calls.get()).isEqualTo(2);
+    }
+
+    private String send(String prompt) {
+        return chatClient.prompt().user(prompt).tools(console).call().content();
+    }
+
+    /**
+     * Runs the scripted tool calls, as a model with internal tool execution would, then answers.
+     */
+    private static class ToolRunningChatModel implements ChatModel {
+        private final Map<String, String> script = new LinkedHashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        void runs(String tool, String input) {
+            script.put(tool, input);
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ToolCallingChatOptions.builder().build();
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            List<ToolCallback> tools = ((ToolCallingChatOptions) prompt.getOptions()).getToolCallbacks();
+            script.forEach((name, input) -> tools.stream()
+                    .filter(tool -> tool.getToolDefinition().name().equals(name))
+                    .findFirst()
+                    .orElseThrow()
+                    .call(input));
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("Done"))));
+        }
+    }
+}
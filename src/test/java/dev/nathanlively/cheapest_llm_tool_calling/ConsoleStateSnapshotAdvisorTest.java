@@ -0,0 +1,93 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsoleStateSnapshotAdvisorTest {
+    private static final String CONVERSATION = "operator";
+
+    private final MockMixingConsoleService console = new MockMixingConsoleService();
+    private final ChatMemory memory = MessageWindowChatMemory.builder().maxMessages(20).build();
+    private final ConsoleStateSnapshotAdvisor snapshot = new ConsoleStateSnapshotAdvisor(console, 2);
+    private final List<Prompt> prompts = new ArrayList<>();
+    private final ChatModel model = prompt -> {
+        prompts.add(prompt);
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("Done"))));
+    };
+    private final ChatClient chatClient = ChatClient.builder(model)
+            .defaultSystem("You control a mixing console.")
+            .defaultAdvisors(MessageChatMemoryAdvisor.builder(memory).conversationId(CONVERSATION).build(), snapshot)
+            .build();
+
+    @Test
+    void stateReplacesOlderHistory() {
+        console.setSingleParameter(new ApiCall("ch.0.cfg.name", "Kick"));
+        send("Rename channel 1 to Kick");
+        send("Rename channel 2 to Snare");
+        send("What did you name channel 1?");
+
+        List<Message> messages = prompts.getLast().getInstructions();
+        assertThat(messages.getFirst()).isInstanceOf(SystemMessage.class);
+        assertThat(messages.getFirst().getText())
+                .startsWith("You control a mixing console.")
+                .contains("ch.0.cfg.name=Kick");
+        assertThat(messages.subList(1, messages.size()).stream().map(Message::getText).toList())
+                .containsExactly("Rename channel 2 to Snare", "Done", "What did you name channel 1?");
+        assertThat(snapshot.getTrimmedMessages()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsToolCallsAndResults() {
+        memory.add(CONVERSATION, List.of(
+                new UserMessage("Rename channel 1 to Kick"),
+                new AssistantMessage("", Map.of(), List.of(new AssistantMessage.ToolCall("call-1", "function",
+                        "setSingleParameter", "{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}"))),
+                new ToolResponseMessage(List.of(new ToolResponseMessage.ToolResponse("call-1", "setSingleParameter",
+                        "{\"path\":\"ch.0.cfg.name\",\"value\":\"Kick\",\"status\":\"SUCCESS\"}")), Map.of()),
+                new AssistantMessage("Renamed channel 1 to Kick")));
+
+        send("What did you name channel 1?");
+
+        assertThat(prompts.getLast().getInstructions())
+                .noneMatch(ToolResponseMessage.class::isInstance)
+                .noneMatch(message -> message instanceof AssistantMessage assistant && assistant.hasToolCalls());
+    }
+
+    @Test
+    void rebuildsStateOnlyAfterWrites() {
+        send("What is on channel 1?");
+        send("And on channel 2?");
+        assertThat(snapshot.getRenders()).isEqualTo(1);
+        assertThat(prompts.getLast().getInstructions().getFirst().getText()).contains("nothing set yet");
+
+        console.setMultipleParameters(List.of(new ApiCall("ch.0.cfg.name", "Kick"),
+                new ApiCall("ch.1.cfg.name", "Snare")));
+        send("And now?");
+
+        assertThat(snapshot.getRenders()).isEqualTo(2);
+        assertThat(prompts.getLast().getInstructions().getFirst().getText())
+                .contains("ch.0.cfg.name=Kick\nch.1.cfg.name=Snare");
+    }
+
+    private void send(String prompt) {
+        chatClient.prompt().user(prompt).call().content();
+    }
+}
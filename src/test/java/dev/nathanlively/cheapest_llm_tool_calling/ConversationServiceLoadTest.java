@@ -0,0 +1,102 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sizes one node of the {@link ConversationService}: thousands of operators hold conversations at once against
+ * a stub model with a realistic response time, so what is measured is the service itself. Reports turn latency
+ * under load, the heap each open session keeps, and how many sessions the heap would hold.
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+public class ConversationServiceLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationServiceLoadTest.class);
+    private static final int[] SESSIONS = {1_000, 5_000, 10_000};
+    private static final int TURNS_PER_SESSION = 5;
+    private static final Duration MODEL_LATENCY = Duration.ofMillis(300);
+    // Heap kept free for request processing when working out how many sessions fit
+    private static final double HEAP_HEADROOM = 0.3;
+
+    private static final String[] PROMPTS = {
+            "Name channels 1-7: Kick, Snare, Hi-hat, Tom 1, Tom 2, Overheads L, Overheads R",
+            "Add bass on channel 8 and guitar on channel 9",
+            "What's on channel 6? Now swap it with what's on channel 9",
+            "Add lead vocal on channel 12, backing vocals on 13-14",
+            "Rename the Kick channel specifically to 'DR-Kick-In'"
+    };
+
+    @Test
+    void thousandsOfConcurrentSessions() {
+        logger.info(String.format("%8s %10s %10s %10s %10s %12s %14s",
+                "Sessions", "Turns/s", "Turn p50", "Turn p95", "Failed", "KB/session", "Max sessions"));
+        for (int sessions : SESSIONS) {
+            long baseline = usedHeapAfterGc();
+            StubChatModel model = new StubChatModel("stub", MODEL_LATENCY);
+            MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder().maxMessages(10).build();
+            try (ConversationService service = new ConversationService(model, chatMemory, "You control a mixing console.")) {
+                ConcurrentLinkedQueue<Long> turnLatenciesMs = new ConcurrentLinkedQueue<>();
+                long start = System.nanoTime();
+                List<CompletableFuture<?>> conversations = new ArrayList<>();
+                for (int i = 0; i < sessions; i++) {
+                    conversations.add(converse(service, "operator-" + i, 0, turnLatenciesMs));
+                }
+                CompletableFuture.allOf(conversations.toArray(CompletableFuture[]::new))
+                        .orTimeout(10, TimeUnit.MINUTES)
+                        .join();
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                // All sessions are still open, holding their history and console state
+                long perSession = Math.max(1, (usedHeapAfterGc() - baseline) / sessions);
+                long maxSessions = (long) (Runtime.getRuntime().maxMemory() * (1 - HEAP_HEADROOM)) / perSession;
+                long[] latencies = turnLatenciesMs.stream().mapToLong(Long::longValue).sorted().toArray();
+                logger.info(String.format("%8d %10.0f %8dms %8dms %10d %12.1f %14d",
+                        sessions, service.getTurns() / seconds, percentile(latencies, 50), percentile(latencies, 95),
+                        service.getFailedTurns(), perSession / 1024.0, maxSessions));
+
+                assertThat(service.getTurns()).isEqualTo(sessions * TURNS_PER_SESSION);
+                assertThat(service.getSessionCount()).isEqualTo(sessions);
+            }
+        }
+    }
+
+    /** One operator's conversation: each prompt is sent once the answer to the previous one has arrived. */
+    private static CompletableFuture<?> converse(ConversationService service, String conversationId, int turn,
+                                                 ConcurrentLinkedQueue<Long> turnLatenciesMs) {
+        if (turn == TURNS_PER_SESSION) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        return service.send(conversationId, PROMPTS[turn % PROMPTS.length]).thenCompose(answer -> {
+            turnLatenciesMs.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return converse(service, conversationId, turn + 1, turnLatenciesMs);
+        });
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.clamp(rank - 1, 0, sorted.length - 1)];
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConversationServiceTest {
+
+    private final MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder().maxMessages(10).build();
+    private final ConversationService service = new ConversationService(new CountingChatModel(), chatMemory,
+            "You control a mixing console.");
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void sessionsKeepSeparateHistories() {
+        service.send("a", "Rename channel 1 to Kick").join();
+        String secondTurn = service.send("a", "Rename channel 2 to Snare").join();
+        String otherSession = service.send("b", "Rename channel 1 to Bass").join();
+
+        assertThat(secondTurn).isEqualTo("2 user messages");
+        assertThat(otherSession).isEqualTo("1 user messages");
+        assertThat(service.getConsole("a")).isNotSameAs(service.getConsole("b"));
+    }
+
+    @Test
+    void turnsOfOneSessionRunInOrder() {
+        List<CompletableFuture<String>> answers = List.of(
+                service.send("a", "one"), service.send("a", "two"), service.send("a", "three"));
+
+        assertThat(answers.stream().map(CompletableFuture::join).toList())
+                .containsExactly("1 user messages", "2 user messages", "3 user messages");
+    }
+
+    @Test
+    void idleSessionsAreClosedAndForgotten() throws InterruptedException {
+        service.send("a", "Rename channel 1 to Kick").join();
+        Thread.sleep(20);
+
+        assertThat(service.closeIdleSessions(Duration.ofMillis(10))).isEqualTo(1);
+        assertThat(service.getSessionCount()).isZero();
+        assertThat(chatMemory.get("a")).isEmpty();
+    }
+
+    @Test
+    void closeWaitsForTheTurnInFlight() throws InterruptedException {
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        try (var gated = new ConversationService(prompt -> {
+            called.countDown();
+            try {
+                answer.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new CountingChatModel().call(prompt);
+        }, chatMemory, "You control a mixing console.")) {
+            CompletableFuture<String> turn = gated.send("a", "Rename channel 1 to Kick");
+            called.await();
+            CompletableFuture<Void> closing = CompletableFuture.runAsync(() -> gated.close("a"));
+            Thread.sleep(50);
+            assertThat(closing.isDone()).isFalse();
+
+            answer.countDown();
+            closing.join();
+
+            assertThat(turn.join()).isEqualTo("1 user messages");
+            assertThat(gated.getSessionCount()).isZero();
+            assertThat(chatMemory.get("a")).isEmpty();
+        }
+    }
+
+    @Test
+    void sendAfterCloseOpensAFreshSession() {
+        service.send("a", "Rename channel 1 to Kick").join();
+        MockMixingConsoleService firstConsole = service.getConsole("a");
+        service.close("a");
+
+        assertThat(service.send("a", "Rename channel 2 to Snare").join()).isEqualTo("1 user messages");
+        assertThat(service.getConsole("a")).isNotSameAs(firstConsole);
+    }
+
+    @Test
+    void sessionsBeyondTheLimitAreRefusedUntilOneCloses() {
+        try (var limited = new ConversationService(ChatClient.builder(new CountingChatModel()).build(), chatMemory,
+                MockMixingConsoleService::new, 2)) {
+            limited.send("a", "Rename channel 1 to Kick").join();
+            limited.send("b", "Rename channel 1 to Bass").join();
+
+            assertThat(limited.send("c", "Mute channel 2").isCompletedExceptionally()).isTrue();
+            assertThat(limited.send("a", "Rename channel 2 to Snare").join()).isEqualTo("2 user messages");
+
+            limited.close("b");
+            assertThat(limited.send("c", "Mute channel 2").join()).isEqualTo("1 user messages");
+            assertThat(limited.getSessionCount()).isEqualTo(2);
+        }
+    }
+
+    /**
+     * Answers with how many user messages it was sent, which is how much of the conversation it remembers.
+     */
+    private static class CountingChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            long userMessages = prompt.getInstructions().stream()
+                    .filter(message -> message.getMessageType() == MessageType.USER)
+                    .count();
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(userMessages + " user messages"))));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.deepseek.DeepSeekChatModel;
 import org.springframework.ai.deepseek.DeepSeekChatOptions;
 import org.springframework.ai.deepseek.api.DeepSeekApi;
@@ -19,27 +20,29 @@ public class DeepseekNativeProvider extends LlmProvider {
     }
 
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        String apiKey = System.getenv(apiKeyEnvVar);
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
-        }
-
-        DeepSeekApi deepSeekApi = DeepSeekApi.builder().apiKey(apiKey).build();
+    public ChatModel createChatModel(String model) {
+        DeepSeekApi deepSeekApi = DeepSeekApi.builder()
+                .apiKey(requireApiKey())
+                .restClientBuilder(rateLimits.restClientBuilder())
+                .build();
         DeepSeekChatOptions chatOptions = DeepSeekChatOptions.builder()
-                .model(chatValue)
+                .model(model)
                 .temperature(0.1)
                 .build();
 
-        DeepSeekChatModel chatModel = DeepSeekChatModel.builder()
+        return DeepSeekChatModel.builder()
                 .deepSeekApi(deepSeekApi)
                 .defaultOptions(chatOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
 
-        ChatClient.Builder builder = ChatClient.builder(chatModel);
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        ChatClient.Builder builder = ChatClient.builder(createChatModel(model));
 
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder().build();
-        builder.defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor());
+        builder.defaultAdvisors(timed(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor()));
 
         return builder.build();
     }
@@ -0,0 +1,46 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Hands a prompt built by {@code ChatClient} to another {@code ChatModel}. Messages and tool options are kept;
+ * everything model specific (model name, temperature) is dropped so the delegate uses its own defaults.
+ */
+final class DelegatePrompts {
+
+    private DelegatePrompts() {
+    }
+
+    static Prompt forDelegate(Prompt prompt) {
+        return forDelegate(prompt, UnaryOperator.identity());
+    }
+
+    static Prompt forDelegate(Prompt prompt, UnaryOperator<ToolCallback> toolWrapper) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)) {
+            return new Prompt(prompt.getInstructions());
+        }
+        ToolCallingChatOptions delegateOptions = ToolCallingChatOptions.builder()
+                .toolCallbacks(options.getToolCallbacks().stream().map(toolWrapper).toList())
+                .toolNames(options.getToolNames())
+                .toolContext(options.getToolContext())
+                .internalToolExecutionEnabled(options.getInternalToolExecutionEnabled())
+                .build();
+        return new Prompt(prompt.getInstructions(), delegateOptions);
+    }
+
+    /**
+     * Like {@link #forDelegate(Prompt)} but with internal tool execution off, so the delegate returns its tool
+     * calls for the caller to inspect and run.
+     */
+    static Prompt forManualToolExecution(Prompt prompt) {
+        Prompt delegate = forDelegate(prompt);
+        if (delegate.getOptions() instanceof ToolCallingChatOptions options) {
+            options.setInternalToolExecutionEnabled(false);
+        }
+        return delegate;
+    }
+}
@@ -7,14 +7,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.api.*;
-import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 public class EmptyMessageFilterAdvisor implements CallAdvisor, StreamAdvisor {
     private static final Logger logger = LoggerFactory.getLogger(EmptyMessageFilterAdvisor.class);
@@ -33,49 +32,57 @@ public class EmptyMessageFilterAdvisor implements CallAdvisor, StreamAdvisor {
     @NotNull
     @Override
     public ChatClientResponse adviseCall(@NotNull ChatClientRequest request, CallAdvisorChain chain) {
-        // Process the request normally
-        ChatClientResponse response = chain.nextCall(request);
-
-        // Filter out empty assistant messages from the response
-        List<Generation> filteredResults = Objects.requireNonNull(response.chatResponse()).getResults().stream()
-                .filter(generation -> {
-                    AssistantMessage assistantMessage = generation.getOutput();
-                    String text = assistantMessage.getText();
-                    boolean isEmpty = text == null || text.trim().isEmpty();
-                    if (isEmpty) {
-                        logger.debug("Filtering out empty assistant message");
-                    }
-                    return !isEmpty;
-                })
-                .collect(Collectors.toList());
-
-        // If we filtered out results, create a new response with only valid results
-        if (filteredResults.size() != response.chatResponse().getResults().size()) {
-            ChatResponse filteredChatResponse = new ChatResponse(
-                    filteredResults,
-                    response.chatResponse().getMetadata()
-            );
-            return ChatClientResponse.builder()
-                    .chatResponse(filteredChatResponse)
-                    .build();
-        }
-
-        return response;
+        return filter(chain.nextCall(request));
     }
 
     @NotNull
     @Override
     public Flux<ChatClientResponse> adviseStream(@NotNull ChatClientRequest request, StreamAdvisorChain chain) {
         // For streaming, filter empty messages as they come
-        return chain.nextStream(request)
-                .filter(response -> {
-                    if (response.chatResponse() != null) {
-                        response.chatResponse().getResult();
-                        AssistantMessage assistantMessage = response.chatResponse().getResult().getOutput();
-                        String text = assistantMessage.getText();
-                        return text != null && !text.trim().isEmpty();
-                    }
-                    return true;
-                });
+        return chain.nextStream(request).filter(EmptyMessageFilterAdvisor::hasText);
+    }
+
+    /**
+     * Removes generations without text. Runs on every turn and almost never finds one, so it scans with an
+     * indexed loop and returns the response untouched unless something has to go.
+     */
+    static ChatClientResponse filter(ChatClientResponse response) {
+        ChatResponse chatResponse = Objects.requireNonNull(response.chatResponse());
+        List<Generation> results = chatResponse.getResults();
+        int firstEmpty = 0;
+        while (firstEmpty < results.size() && !isEmpty(results.get(firstEmpty))) {
+            firstEmpty++;
+        }
+        if (firstEmpty == results.size()) {
+            return response;
+        }
+
+        List<Generation> filteredResults = new ArrayList<>(results.size() - 1);
+        filteredResults.addAll(results.subList(0, firstEmpty));
+        for (int i = firstEmpty + 1; i < results.size(); i++) {
+            if (!isEmpty(results.get(i))) {
+                filteredResults.add(results.get(i));
+            }
+        }
+        logger.debug("Filtering out {} empty assistant messages", results.size() - filteredResults.size());
+        return response.mutate()
+                .chatResponse(new ChatResponse(filteredResults, chatResponse.getMetadata()))
+                .build();
+    }
+
+    /** Whether a streamed chunk carries text. Chunks without a chat response are passed on. */
+    static boolean hasText(ChatClientResponse chunk) {
+        ChatResponse chatResponse = chunk.chatResponse();
+        if (chatResponse == null) {
+            return true;
+        }
+        Generation result = chatResponse.getResult();
+        return result == null || !isEmpty(result);
+    }
+
+    private static boolean isEmpty(Generation generation) {
+        String text = generation.getOutput().getText();
+        // isBlank scans in place, where trim() may copy
+        return text == null || text.isBlank();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-call and per-chunk cost of {@link EmptyMessageFilterAdvisor} against the stream-and-collect version it
+ * replaced, measured with JMH in a forked JVM. Both inputs are the common case, a turn or a streamed token with
+ * text, where nothing is filtered. Time is reported in ns/op and allocation in bytes/op.
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmptyMessageFilterAdvisorBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(EmptyMessageFilterAdvisorBenchmarkTest.class);
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private ChatClientResponse turn;
+    private ChatClientResponse chunk;
+
+    @Setup
+    public void setUp() {
+        turn = response("  Renamed channels 1-7 to Kick, Snare, Hi-hat, Tom 1, Tom 2, Overheads L and Overheads R.  ");
+        chunk = response(" Snare");
+    }
+
+    @Benchmark
+    public ChatClientResponse callBefore() {
+        return StreamFilter.filter(turn);
+    }
+
+    @Benchmark
+    public ChatClientResponse callAfter() {
+        return EmptyMessageFilterAdvisor.filter(turn);
+    }
+
+    @Benchmark
+    public boolean chunkBefore() {
+        return StreamFilter.hasText(chunk);
+    }
+
+    @Benchmark
+    public boolean chunkAfter() {
+        return EmptyMessageFilterAdvisor.hasText(chunk);
+    }
+
+    @Test
+    void fastPathCostsLessPerCallAndChunk() throws RunnerException {
+        Collection<RunResult> runs = new Runner(new OptionsBuilder()
+                .include(EmptyMessageFilterAdvisorBenchmarkTest.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+
+        Map<String, double[]> results = new HashMap<>();
+        for (RunResult run : runs) {
+            String benchmark = run.getParams().getBenchmark();
+            Result<?> allocation = run.getSecondaryResults().get(ALLOCATION);
+            results.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), new double[]{
+                    run.getPrimaryResult().getScore(), allocation != null ? allocation.getScore() : Double.NaN});
+        }
+        logger.info(String.format("%-6s %14s %14s %14s %14s", "", "before ns/op", "after ns/op",
+                "before B/op", "after B/op"));
+        for (String kind : List.of("call", "chunk")) {
+            double[] before = results.get(kind + "Before");
+            double[] after = results.get(kind + "After");
+            assertThat(before).isNotNull();
+            assertThat(after).isNotNull();
+            logger.info(String.format("%-6s %14.1f %14.1f %14.1f %14.1f", kind, before[0], after[0], before[1],
+                    after[1]));
+            assertThat(after[1]).isLessThanOrEqualTo(before[1]);
+        }
+    }
+
+    private static ChatClientResponse response(String text) {
+        return ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(text)))))
+                .build();
+    }
+
+    /** The advisor's filtering as it was before the fast path, kept as the baseline. */
+    private static final class StreamFilter {
+        static ChatClientResponse filter(ChatClientResponse response) {
+            List<Generation> filteredResults = Objects.requireNonNull(response.chatResponse()).getResults().stream()
+                    .filter(generation -> {
+                        String text = generation.getOutput().getText();
+                        return !(text == null || text.trim().isEmpty());
+                    })
+                    .collect(Collectors.toList());
+            if (filteredResults.size() != response.chatResponse().getResults().size()) {
+                return ChatClientResponse.builder()
+                        .chatResponse(new ChatResponse(filteredResults, response.chatResponse().getMetadata()))
+                        .build();
+            }
+            return response;
+        }
+
+        static boolean hasText(ChatClientResponse response) {
+            if (response.chatResponse() != null) {
+                response.chatResponse().getResult();
+                String text = response.chatResponse().getResult().getOutput().getText();
+                return text != null && !text.trim().isEmpty();
+            }
+            return true;
+        }
+    }
+}
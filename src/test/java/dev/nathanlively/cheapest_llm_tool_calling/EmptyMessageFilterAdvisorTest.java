@@ -0,0 +1,51 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EmptyMessageFilterAdvisorTest {
+
+    @Test
+    void responseWithoutEmptyGenerationsIsReturnedAsIs() {
+        ChatClientResponse response = response("Renamed channel 1 to Kick", "Renamed channel 2 to Snare");
+
+        assertThat(EmptyMessageFilterAdvisor.filter(response)).isSameAs(response);
+    }
+
+    @Test
+    void emptyAndBlankGenerationsAreRemoved() {
+        ChatClientResponse response = response("", "Renamed channel 1 to Kick", " \n\t", "Done");
+
+        ChatClientResponse filtered = EmptyMessageFilterAdvisor.filter(response);
+
+        assertThat(filtered.chatResponse().getResults().stream().map(g -> g.getOutput().getText()).toList())
+                .containsExactly("Renamed channel 1 to Kick", "Done");
+        assertThat(filtered.context()).isEqualTo(response.context());
+    }
+
+    @Test
+    void blankStreamedChunksAreDropped() {
+        assertThat(EmptyMessageFilterAdvisor.hasText(response("Kick"))).isTrue();
+        assertThat(EmptyMessageFilterAdvisor.hasText(response("  "))).isFalse();
+        assertThat(EmptyMessageFilterAdvisor.hasText(ChatClientResponse.builder().build())).isTrue();
+    }
+
+    private static ChatClientResponse response(String... texts) {
+        List<Generation> generations = Arrays.stream(texts)
+                .map(text -> new Generation(new AssistantMessage(text)))
+                .toList();
+        return ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(generations))
+                .context(Map.of(BenchmarkRunner.MODEL_CONTEXT_KEY, "groq/llama-3.1-8b-instant"))
+                .build();
+    }
+}
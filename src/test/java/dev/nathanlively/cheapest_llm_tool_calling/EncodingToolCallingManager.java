@@ -0,0 +1,85 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewrites the results of each round of tool calls with a {@link ToolResultEncoder} before they are added to
+ * the conversation, so every later model call in the turn carries the shorter form. Tool execution itself is
+ * left to the wrapped manager.
+ */
+public class EncodingToolCallingManager implements ToolCallingManager {
+    private final ToolCallingManager delegate;
+    private final ToolResultEncoder encoder;
+    private final AtomicLong originalChars = new AtomicLong();
+    private final AtomicLong encodedChars = new AtomicLong();
+
+    public EncodingToolCallingManager(ToolCallingManager delegate, ToolResultEncoder encoder) {
+        this.delegate = delegate;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        ToolExecutionResult result = delegate.executeToolCalls(prompt, chatResponse);
+        List<Message> history = new ArrayList<>(result.conversationHistory());
+        if (history.isEmpty() || !(history.getLast() instanceof ToolResponseMessage toolResponses)) {
+            return result;
+        }
+
+        List<String> earlierResults = new ArrayList<>();
+        history.subList(0, history.size() - 1).stream()
+                .filter(ToolResponseMessage.class::isInstance)
+                .flatMap(message -> ((ToolResponseMessage) message).getResponses().stream())
+                .forEach(response -> earlierResults.add(response.responseData()));
+        List<ToolResponseMessage.ToolResponse> encoded = new ArrayList<>();
+        for (ToolResponseMessage.ToolResponse response : toolResponses.getResponses()) {
+            String data = encoder.encode(response.name(), response.responseData(), earlierResults);
+            earlierResults.add(data);
+            originalChars.addAndGet(response.responseData().length());
+            encodedChars.addAndGet(data.length());
+            encoded.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(), data));
+        }
+        history.set(history.size() - 1, new ToolResponseMessage(encoded, toolResponses.getMetadata()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(history)
+                .returnDirect(result.returnDirect())
+                .build();
+    }
+
+    public ToolResultEncoder getEncoder() {
+        return encoder;
+    }
+
+    /** Characters of tool results as the tools returned them. */
+    public long getOriginalChars() {
+        return originalChars.get();
+    }
+
+    /** Characters of the same results after encoding. */
+    public long getEncodedChars() {
+        return encodedChars.get();
+    }
+
+    @Override
+    public String toString() {
+        long original = originalChars.get();
+        return String.format("%s: %d -> %d result chars (%.1f%% saved)", encoder, original, encodedChars.get(),
+                original == 0 ? 0.0 : 100.0 * (original - encodedChars.get()) / original);
+    }
+}
@@ -0,0 +1,67 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FastPathParserTest {
+
+    private final FastPathParser parser = new FastPathParser(32);
+
+    @Test
+    void renamesTranslateToZeroBasedPaths() {
+        assertThat(parser.parse("Rename channel 1 to Kick and channel 2 to Snare")).contains(List.of(
+                new ApiCall("ch.0.cfg.name", "Kick"),
+                new ApiCall("ch.1.cfg.name", "Snare")));
+    }
+
+    @Test
+    void rangeTakesOneNamePerChannel() {
+        var calls = parser.parse("Name channels 1-7: Kick, Snare, Hi-hat, Tom 1, Tom 2, Overheads L, Overheads R");
+
+        assertThat(calls.orElseThrow()).hasSize(7);
+        assertThat(calls.orElseThrow().get(6)).isEqualTo(new ApiCall("ch.6.cfg.name", "Overheads R"));
+        assertThat(parser.parse("Name channels 1-3: Kick, Snare")).isEmpty();
+    }
+
+    @Test
+    void leavesParameterChangesToTheModel() {
+        assertThat(parser.parse("Set channel 4 to mute")).isEmpty();
+        assertThat(parser.parse("Set channel 2 to -6 dB")).isEmpty();
+        assertThat(parser.parse("Call channel 5 Bass")).isEmpty();
+        assertThat(parser.parse("Add reverb on channel 3")).isEmpty();
+        assertThat(parser.parse("Put a high-pass on channel 2")).isEmpty();
+        assertThat(parser.parse("Add bass on channel 8 and guitar on channel 9")).isEmpty();
+    }
+
+    @Test
+    void labelAndNameAsAreExplicitNaming() {
+        assertThat(parser.parse("Label channel 9 as Guitar")).contains(List.of(new ApiCall("ch.8.cfg.name", "Guitar")));
+    }
+
+    @Test
+    void fastPathAnswerDescribesWhatWasWritten() {
+        assertThat(FastPathAdvisor.describe(List.of(new ApiCall("ch.0.cfg.name", "Kick"),
+                new ApiCall("ch.1.cfg.name", "Snare"))))
+                .isEqualTo("Set channel 1 name to Kick, channel 2 name to Snare.");
+    }
+
+    @Test
+    void leavesAmbiguousPromptsToTheModel() {
+        assertThat(parser.parse("What did you just name channel 1?")).isEmpty();
+        assertThat(parser.parse("Now change the first channel you renamed to Kick-In and the second to Snare-Top"))
+                .isEmpty();
+        assertThat(parser.parse("Rename channel 3 to the same as channel 1 but with 'Backup-' prefix")).isEmpty();
+        assertThat(parser.parse("Change all drum channels (the first 7 you set up) to have 'DR-' prefix")).isEmpty();
+        assertThat(parser.parse("Rename the Kick channel specifically to 'DR-Kick-In'")).isEmpty();
+    }
+
+    @Test
+    void rejectsChannelsOutsideConsoleOrNamedTwice() {
+        assertThat(parser.parse("Rename channel 33 to Kick")).isEmpty();
+        assertThat(parser.parse("Rename channel 0 to Kick")).isEmpty();
+        assertThat(parser.parse("Rename channel 1 to Kick and channel 1 to Snare")).isEmpty();
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.google.genai.GoogleGenAiChatModel;
 import org.springframework.ai.google.genai.GoogleGenAiChatOptions;
 
@@ -21,30 +22,29 @@ public class GoogleNativeProvider extends LlmProvider {
     }
 
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        String apiKey = System.getenv(apiKeyEnvVar);
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
-        }
-
+    public ChatModel createChatModel(String model) {
         Client genAiClient = Client.builder()
-                .apiKey(System.getenv("GEMINI_API_KEY"))
+                .apiKey(requireApiKey())
                 .build();
         final GoogleGenAiChatOptions chatOptions = GoogleGenAiChatOptions.builder()
                 .model(model)
                 .temperature(0.1)
                 .candidateCount(1)  // The number of generated response messages to return. This value must be between [1, 8], inclusive. Defaults to 1.
                 .build();
-        GoogleGenAiChatModel chatModel = GoogleGenAiChatModel.builder()
+        return GoogleGenAiChatModel.builder()
                 .genAiClient(genAiClient)
                 .defaultOptions(chatOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
 
-        return ChatClient.builder(chatModel)
-                .defaultAdvisors(
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        return ChatClient.builder(createChatModel(model))
+                .defaultAdvisors(timed(
                         new EmptyMessageFilterAdvisor(),
                         MessageChatMemoryAdvisor.builder(MessageWindowChatMemory.builder().build()).build(),
-                        new SimpleLoggerAdvisor())
+                        new SimpleLoggerAdvisor()))
                 .build();
     }
 
@@ -1,5 +1,6 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
@@ -16,8 +17,8 @@ import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.util.StopWatch;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -32,8 +33,9 @@ public class GroqTest {
             "llama-3.1-8b-instant",
             "llama-3.3-70b-versatile"
     };
-    private static final int TEST_ITERATIONS = 1;
+    private static final AdaptiveSampling SAMPLING = AdaptiveSampling.adaptive(3, 10);
     private MockMixingConsoleService mockConsoleService;
+    private final RateLimitInterceptor rateLimits = new RateLimitInterceptor();
     private static final String SYSTEM_PROMPT = """
             You are controlling a mixing console API that uses 0-based indexing.
             When users refer to "channel 1", you must use index 0 in the API (ch.0).
@@ -83,13 +85,16 @@ public class GroqTest {
         String prompt1 = "Rename channel 1 to Kick and channel 2 to Snare";
         String prompt2 = "Now rename channel 3 to Hat and channel 4 to Tom";
         Map<String, TestResults> results = new HashMap<>();
+        TestResults leader = null;
         for (String model : TEST_MODELS) {
             TestResults modelResults = runTestIterations(
                     model,
                     List.of(prompt1, prompt2),
-                    this::validateSimpleChannelRenaming
+                    this::validateSimpleChannelRenaming,
+                    leader
             );
             results.put(model, modelResults);
+            leader = pickLeader(modelResults, leader);
         }
 
         printComparisonReport("Simple Channel Renaming", results);
@@ -145,6 +150,7 @@ public class GroqTest {
         );
 
         Map<String, TestResults> results = new HashMap<>();
+        TestResults leader = null;
 
         for (String model : TEST_MODELS) {
             if (LlmPricing.getPricing(model) == null) {
@@ -152,8 +158,9 @@ public class GroqTest {
                 continue;
             }
 
-            TestResults modelResults = runTestIterations(model, prompts, this::validateComplexBandSetup);
+            TestResults modelResults = runTestIterations(model, prompts, this::validateComplexBandSetup, leader);
             results.put(model, modelResults);
+            leader = pickLeader(modelResults, leader);
         }
 
         printComparisonReport("Complex Band Setup", results);
@@ -163,25 +170,42 @@ public class GroqTest {
     private static final long RATE_LIMIT_DELAY_MS = 10_000; // 10 seconds between tests
     private static final int MAX_RETRIES = 3;
 
-    private TestResults runTestIterations(String model, List<String> prompts, ValidationCallback validation) {
+    private static @Nullable TestResults pickLeader(TestResults candidate, @Nullable TestResults leader) {
+        if (candidate.getSuccessRate() > 0
+            && (leader == null || BenchmarkRunner.LEADER_ORDER.compare(candidate, leader) > 0)) {
+            return candidate;
+        }
+        return leader;
+    }
+
+    private TestResults runTestIterations(String model, List<String> prompts, ValidationCallback validation,
+                                          @Nullable TestResults leader) {
         logger.info("Testing model: {}", model);
         TestResults results = new TestResults(model);
+        int iterations = SAMPLING.maxIterations();
 
-        for (int i = 0; i < TEST_ITERATIONS; i++) {
-            logger.info("  Iteration {}/{}", i + 1, TEST_ITERATIONS);
+        for (int i = 0; i < iterations; i++) {
+            logger.info("  Iteration {}/{}", i + 1, iterations);
 
             TestRun run = null;
             int backoffMs = 1000;
             for (int retry = 0; retry < MAX_RETRIES; retry++) {
                 try {
+                    rateLimits.clear();
                     run = executeSingleTest(model, prompts, validation);
-                    if (run.success || !isRateLimitError(run.error)) {
+                    RateLimitInfo rateLimit = rateLimits.last();
+                    boolean rateLimited = rateLimit != null ? rateLimit.isRateLimited() : isRateLimitError(run.error);
+                    if (run.success || !rateLimited) {
                         break;
                     }
 
+                    Duration wait = BenchmarkRunner.retryWait(rateLimit, Duration.ofMillis(backoffMs));
+                    if (wait == null) {
+                        break;
+                    }
                     logger.warn("Rate limit hit, waiting {} seconds before retry {}/{}",
-                            backoffMs / 1000.0, retry + 1, MAX_RETRIES);
-                    Thread.sleep(backoffMs);
+                            wait.toMillis() / 1000.0, retry + 1, MAX_RETRIES);
+                    Thread.sleep(wait.toMillis());
                     backoffMs *= 2;
 
                 } catch (InterruptedException e) {
@@ -193,6 +217,12 @@ public class GroqTest {
             results.addRun(run);
 
             mockConsoleService.reset();
+            String stopReason = SAMPLING.stopReason(results, leader);
+            if (stopReason != null) {
+                logger.info("  Stopping {} after {} runs: {}", model, results.runs.size(), stopReason);
+                results.stopReason = stopReason;
+                break;
+            }
             try {
                 logger.info("  Waiting {} seconds before next iteration...", RATE_LIMIT_DELAY_MS / 1000);
                 Thread.sleep(RATE_LIMIT_DELAY_MS);
@@ -201,6 +231,9 @@ public class GroqTest {
             }
         }
 
+        if (results.stopReason == null) {
+            results.stopReason = "reached max iterations";
+        }
         return results;
     }
 
@@ -212,6 +245,7 @@ public class GroqTest {
                     .openAiApi(OpenAiApi.builder()
                             .baseUrl(GROQ_BASE_URL)
                             .apiKey(System.getenv("GROQ_API_KEY"))
+                            .restClientBuilder(rateLimits.restClientBuilder())
                             .build())
                     .defaultOptions(OpenAiChatOptions.builder()
                             .model(model)
@@ -353,82 +387,17 @@ public class GroqTest {
             if (!tr.errors.isEmpty()) {
                 logger.info("    Errors: {}", String.join(", ", tr.errors));
             }
+            logger.info("    Sampling: {} runs ({})", tr.runs.size(), tr.stopReason);
         }
     }
 
     private void determineWinner(Map<String, TestResults> results) {
         logger.info("\n=== WINNER DETERMINATION ===");
 
-        // Filter out models with a 0% success rate - they cannot win
-        Map<String, TestResults> viableModels = results.entrySet().stream()
-                .filter(entry -> entry.getValue().getSuccessRate() > 0)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        if (viableModels.isEmpty()) {
-            logger.info("\n❌ NO WINNER: All models failed completely");
-            logger.info("\nAll models had 0% success rate. Showing failure analysis:");
-            results.entrySet().stream()
-                    .sorted(Map.Entry.comparingByValue(
-                            Comparator.comparingDouble(TestResults::getAverageTime)))
-                    .forEach(e -> {
-                        TestResults tr = e.getValue();
-                        logger.info("  {}: 0% success, {} errors, avg time: {}ms",
-                                e.getKey(), tr.errors.size(), String.format("%.0f", tr.getAverageTime()));
-                    });
-            return;
-        }
-
-        // Score each viable model on different criteria
-        Map<String, Double> scores = new HashMap<>();
-        Map<String, String> scoreBreakdowns = new HashMap<>();
-
-        for (var entry : viableModels.entrySet()) {
-            String model = entry.getKey();
-            TestResults tr = entry.getValue();
-
-            // RELIABILITY FIRST (50% weight) - most important for tool calling
-            double reliabilityScore = tr.getSuccessRate() * 50;
-
-            // ACCURACY (30% weight) - quality of successful calls
-            double accuracyScore = tr.getAverageAccuracy() * 30;
-
-            // SPEED (15% weight) - performance bonus, normalized to reasonable range
-            double speedScore = tr.getAverageTime() > 0 ?
-                    Math.min(15.0, 15000.0 / tr.getAverageTime()) : 0;
-
-            // COST EFFICIENCY (5% weight) - minor factor, capped to prevent dominance
-            double costScore = tr.getAverageCost() > 0 ?
-                    Math.min(5.0, 0.05 / tr.getAverageCost()) : 5.0;
-
-            double totalScore = reliabilityScore + accuracyScore + speedScore + costScore;
-            scores.put(model, totalScore);
-
-            // Create a breakdown for debugging
-            scoreBreakdowns.put(model, String.format(
-                    "reliability=%.1f, accuracy=%.1f, speed=%.1f, cost=%.1f",
-                    reliabilityScore, accuracyScore, speedScore, costScore));
-        }
-
-        // Find winner
-        String winner = scores.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("No winner");
-
-        logger.info("\n🏆 WINNER: {}", winner);
-        logger.info("\nFinal Scores (max 100):");
-        scores.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .forEach(e -> logger.info("  {}: {} ({})",
-                        e.getKey(), String.format("%.2f", e.getValue()), scoreBreakdowns.get(e.getKey())));
-
-        // Show models that were disqualified
-        Set<String> disqualified = results.keySet().stream()
-                .filter(model -> !viableModels.containsKey(model))
-                .collect(Collectors.toSet());
-        if (!disqualified.isEmpty()) {
-            logger.info("\n❌ Disqualified (0% success): {}", String.join(", ", disqualified));
-        }
+        List<ModelMetrics> metrics = results.values().stream()
+                .map(ModelMetrics::from)
+                .toList();
+        ParetoRanking.rank(metrics, ServiceLevelObjective.ANY_RELIABLE).printReport();
     }
 
     @FunctionalInterface
@@ -0,0 +1,120 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs a primary model hedged by a backup model from another provider (see {@link HedgingChatModel}).
+ * The hedging model is kept across chat clients so its latency window and statistics cover a whole sweep.
+ */
+public class HedgedLlmProvider extends LlmProvider implements AutoCloseable {
+    private final LlmProvider primary;
+    private final String primaryModel;
+    private final LlmProvider backup;
+    private final String backupModel;
+    private final Duration initialDeadline;
+    @Nullable
+    private HedgingChatModel hedgingModel;
+
+    public HedgedLlmProvider(LlmProvider primary, String primaryModel,
+                             LlmProvider backup, String backupModel, Duration initialDeadline) {
+        super("Hedged", primary.apiKeyEnvVar, List.of(primaryModel));
+        this.primary = primary;
+        this.primaryModel = primaryModel;
+        this.backup = backup;
+        this.backupModel = backupModel;
+        this.initialDeadline = initialDeadline;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return primary.isAvailable() && backup.isAvailable();
+    }
+
+    @Override
+    public RateLimitInterceptor getRateLimits() {
+        return primary.getRateLimits();
+    }
+
+    @Override
+    public synchronized ChatModel createChatModel(String model) {
+        if (hedgingModel == null) {
+            hedgingModel = new HedgingChatModel(PricedChatModel.of(primary, primaryModel),
+                    PricedChatModel.of(backup, backupModel), initialDeadline);
+        }
+        return hedgingModel;
+    }
+
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .maxMessages(10)
+                .build();
+        return ChatClient.builder(createChatModel(model))
+                .defaultAdvisors(timed(
+                        new EmptyMessageFilterAdvisor(),
+                        MessageChatMemoryAdvisor.builder(chatMemory)
+                                .conversationId("test-" + System.currentTimeMillis())
+                                .build(),
+                        new SimpleLoggerAdvisor()))
+                .build();
+    }
+
+    @Override
+    public String getFullModelName(String model) {
+        return "hedged/" + primary.getFullModelName(primaryModel) + "+" + backup.getFullModelName(backupModel);
+    }
+
+    /**
+     * Priced as the leg that served the response. For a hedged turn the cancelled leg's prompt is added to the
+     * input rate, scaled to the response's prompt tokens, so the run's cost includes what the hedge spent.
+     */
+    @Override
+    public LlmPricing.@Nullable ModelPricing getPricing(String model, ChatResponse response) {
+        LlmPricing.ModelPricing winner = pricingOf(PricedChatModel.servedBy(response));
+        String cancelledLeg = HedgingChatModel.cancelledLeg(response);
+        LlmPricing.ModelPricing loser = cancelledLeg != null ? pricingOf(cancelledLeg) : null;
+        Usage usage = response.getMetadata().getUsage();
+        int promptTokens = usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        if (winner == null || loser == null || promptTokens == 0) {
+            return winner;
+        }
+        double cancelledShare = (double) HedgingChatModel.cancelledPromptTokens(response) / promptTokens;
+        return new LlmPricing.ModelPricing(
+                winner.inputPricePerMillion() + loser.inputPricePerMillion() * cancelledShare,
+                winner.outputPricePerMillion(), winner.supportsToolCalling(), winner.tokensPerSecond());
+    }
+
+    /**
+     * Priced as the primary, for checks made before any turn has been served.
+     */
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model) {
+        return primary.getPricing(primaryModel);
+    }
+
+    private LlmPricing.@Nullable ModelPricing pricingOf(@Nullable String leg) {
+        return backup.getFullModelName(backupModel).equals(leg)
+                ? backup.getPricing(backupModel) : primary.getPricing(primaryModel);
+    }
+
+    public synchronized HedgingChatModel.Stats getStats() {
+        return hedgingModel != null ? hedgingModel.getStats() : new HedgingChatModel.Stats();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (hedgingModel != null) {
+            hedgingModel.close();
+        }
+    }
+}
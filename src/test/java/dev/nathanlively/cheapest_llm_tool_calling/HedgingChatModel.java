@@ -0,0 +1,256 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Hedges slow completions: each prompt goes to the primary model, and if no response arrives within the
+ * primary's recent p95 latency the same prompt is sent to a backup model. The first response wins and the
+ * other leg is cancelled.
+ * <p>
+ * Both legs see the caller's tools through a {@link ToolGate}, so console writes happen exactly once: the
+ * first leg to call a tool owns the turn and the other leg can neither run tools nor return an answer. For
+ * the same reason no backup is fired once the primary has started calling tools.
+ * <p>
+ * Responses are stamped with the leg that served them (see {@link PricedChatModel#stamp}) and, for hedged turns,
+ * with the cancelled leg and the prompt tokens it was billed for, so the turn can be priced as what it cost.
+ */
+public class HedgingChatModel implements ChatModel, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(HedgingChatModel.class);
+    private static final double HEDGE_PERCENTILE = 95;
+    // Until the window holds this many samples the configured initial deadline is used
+    private static final int MIN_SAMPLES = 5;
+    private static final int WINDOW_SIZE = 50;
+    /** Response metadata entry naming the leg that lost a hedged turn. */
+    static final String CANCELLED_LEG_METADATA_KEY = "hedge-cancelled-leg";
+    /** Response metadata entry with the prompt tokens the losing leg was billed for; its output is unknown. */
+    static final String CANCELLED_PROMPT_TOKENS_METADATA_KEY = "hedge-cancelled-prompt-tokens";
+
+    private record LegResult(PricedChatModel leg, ChatResponse response) {
+    }
+
+    private final PricedChatModel primary;
+    private final PricedChatModel backup;
+    private final Duration initialDeadline;
+    private final LatencyWindow primaryLatencies = new LatencyWindow(WINDOW_SIZE);
+    private final Stats stats = new Stats();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HedgingChatModel(PricedChatModel primary, PricedChatModel backup, Duration initialDeadline) {
+        this.primary = primary;
+        this.backup = backup;
+        this.initialDeadline = initialDeadline;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // ChatClient only attaches tools when the model's default options support tool calling
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        stats.turns.incrementAndGet();
+        ToolGate gate = new ToolGate();
+        CompletionService<LegResult> legs = new ExecutorCompletionService<>(executor);
+        long start = System.nanoTime();
+        Future<LegResult> primaryLeg = legs.submit(() -> runLeg(primary, prompt, gate));
+        Future<LegResult> backupLeg = null;
+        LegResult winner = null;
+        try {
+            Duration deadline = hedgeDeadline();
+            Future<LegResult> done = legs.poll(deadline.toMillis(), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                if (gate.owner() == null) {
+                    logger.info("No response from {} within {}ms, hedging with {}",
+                            primary.name(), deadline.toMillis(), backup.name());
+                    stats.hedges.incrementAndGet();
+                    backupLeg = legs.submit(() -> runLeg(backup, prompt, gate));
+                } else {
+                    logger.debug("{} is past its deadline but already ran tools, not hedging", primary.name());
+                }
+                done = legs.take();
+            }
+
+            int pending = backupLeg == null ? 1 : 2;
+            while (true) {
+                pending--;
+                try {
+                    winner = done.get();
+                    return stamp(winner, backupLeg != null);
+                } catch (ExecutionException e) {
+                    if (pending == 0) {
+                        throw propagate(e.getCause());
+                    }
+                    logger.warn("Hedged leg failed, waiting for the other: {}", e.getCause().getMessage());
+                    done = legs.take();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + primary.name(), e);
+        } finally {
+            if (winner != null && winner.leg() == backup && lostTheTurn(primaryLeg)) {
+                // Its latency is at least this long; leaving it out would pull the deadline down
+                primaryLatencies.record(Duration.ofNanos(System.nanoTime() - start));
+            }
+            primaryLeg.cancel(true);
+            if (backupLeg != null) {
+                backupLeg.cancel(true);
+            }
+            if (winner != null) {
+                account(winner, backupLeg != null);
+            }
+        }
+    }
+
+    private LegResult runLeg(PricedChatModel leg, Prompt prompt, ToolGate gate) {
+        long start = System.nanoTime();
+        ChatResponse response = leg.model().call(
+                DelegatePrompts.forDelegate(prompt, callback -> gate.guard(leg.name(), callback)));
+        // An answer without tool calls must still win the turn before it can be returned
+        gate.claim(leg.name());
+        // A primary that wins records its latency here; one that loses is recorded by call() as a lower bound.
+        // Fast failures are left out, since they would bias the deadline low
+        if (leg == primary) {
+            primaryLatencies.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+        return new LegResult(leg, response);
+    }
+
+    /** Whether the primary was still running, or finished only to find the backup had taken the turn. */
+    private static boolean lostTheTurn(Future<LegResult> primaryLeg) {
+        return switch (primaryLeg.state()) {
+            case RUNNING -> true;
+            case FAILED -> primaryLeg.exceptionNow() instanceof CancellationException;
+            default -> false;
+        };
+    }
+
+    Duration hedgeDeadline() {
+        if (primaryLatencies.size() < MIN_SAMPLES) {
+            return initialDeadline;
+        }
+        return primaryLatencies.percentile(HEDGE_PERCENTILE);
+    }
+
+    private ChatResponse stamp(LegResult winner, boolean hedged) {
+        ChatResponse response = winner.leg().stamp(winner.response());
+        if (!hedged) {
+            return response;
+        }
+        return ChatResponse.builder().from(response)
+                .metadata(CANCELLED_LEG_METADATA_KEY, loser(winner).name())
+                .metadata(CANCELLED_PROMPT_TOKENS_METADATA_KEY, promptTokens(winner.response()))
+                .build();
+    }
+
+    private void account(LegResult winner, boolean hedged) {
+        Usage usage = winner.response().getMetadata().getUsage();
+        int completionTokens = usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        stats.cost.add(winner.leg().cost(promptTokens(winner.response()), completionTokens));
+        if (!hedged) {
+            return;
+        }
+        if (winner.leg() == backup) {
+            stats.backupWins.incrementAndGet();
+        }
+        stats.extraCost.add(loser(winner).cost(promptTokens(winner.response()), 0));
+    }
+
+    private PricedChatModel loser(LegResult winner) {
+        return winner.leg() == primary ? backup : primary;
+    }
+
+    // The cancelled leg's usage is never reported; it was at least billed for reading the same prompt
+    private static int promptTokens(ChatResponse response) {
+        Usage usage = response.getMetadata().getUsage();
+        return usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+    }
+
+    /** The leg that lost the turn, or {@code null} when the response was not hedged. */
+    static @Nullable String cancelledLeg(ChatResponse response) {
+        return response.getMetadata().get(CANCELLED_LEG_METADATA_KEY);
+    }
+
+    static int cancelledPromptTokens(ChatResponse response) {
+        Integer tokens = response.getMetadata().get(CANCELLED_PROMPT_TOKENS_METADATA_KEY);
+        return tokens != null ? tokens : 0;
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Stops the legs still running, such as a primary that lost its hedge.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public static class Stats {
+        private final AtomicInteger turns = new AtomicInteger();
+        private final AtomicInteger hedges = new AtomicInteger();
+        private final AtomicInteger backupWins = new AtomicInteger();
+        private final DoubleAdder cost = new DoubleAdder();
+        private final DoubleAdder extraCost = new DoubleAdder();
+
+        public int getTurns() {
+            return turns.get();
+        }
+
+        public int getHedges() {
+            return hedges.get();
+        }
+
+        public int getBackupWins() {
+            return backupWins.get();
+        }
+
+        public double getCost() {
+            return cost.sum();
+        }
+
+        /**
+         * Estimated cost of the legs that lost a hedge, i.e. what hedging paid on top of a single request.
+         */
+        public double getExtraCost() {
+            return extraCost.sum();
+        }
+
+        public double getHedgeRate() {
+            return turns.get() > 0 ? (double) hedges.get() / turns.get() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d turns, %d hedged (%.1f%%), %d won by backup, extra cost $%.6f of $%.6f",
+                    getTurns(), getHedges(), getHedgeRate() * 100, getBackupWins(), getExtraCost(), getCost());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class HedgingChatModelTest {
+    private static final Duration DEADLINE = Duration.ofMillis(100);
+
+    private final AtomicInteger consoleWrites = new AtomicInteger();
+
+    @Test
+    void fastPrimaryIsNotHedged() {
+        var hedging = new HedgingChatModel(leg("primary", answer("primary", 0)), leg("backup", answer("backup", 0)),
+                DEADLINE);
+
+        ChatResponse response = hedging.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("primary");
+        assertThat(hedging.getStats().getHedges()).isZero();
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndBackupWins() {
+        var hedging = new HedgingChatModel(leg("primary", answer("primary", 5_000)), leg("backup", answer("backup", 0)),
+                DEADLINE);
+
+        ChatResponse response = hedging.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("backup");
+        assertThat(hedging.getStats().getHedges()).isEqualTo(1);
+        assertThat(hedging.getStats().getBackupWins()).isEqualTo(1);
+    }
+
+    @Test
+    void toolSideEffectsHappenOnceAcrossLegs() throws InterruptedException {
+        // The primary stalls before calling its tool; the backup calls it first and owns the turn
+        var hedging = new HedgingChatModel(leg("primary", callTool("primary", 300)), leg("backup", callTool("backup", 0)),
+                DEADLINE);
+
+        ChatResponse response = hedging.call(prompt());
+        Thread.sleep(500);
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("backup");
+        assertThat(consoleWrites).hasValue(1);
+    }
+
+    @Test
+    void noHedgeOncePrimaryHasRunTools() {
+        var hedging = new HedgingChatModel(leg("primary", callToolThenWait("primary", 300)),
+                leg("backup", callTool("backup", 0)), DEADLINE);
+
+        ChatResponse response = hedging.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("primary");
+        assertThat(hedging.getStats().getHedges()).isZero();
+        assertThat(consoleWrites).hasValue(1);
+    }
+
+    @Test
+    void failedPrimaryTurnsDoNotShortenDeadline() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel failsFiveTimes = prompt -> {
+            if (calls.incrementAndGet() <= 5) {
+                throw new IllegalStateException("503 Service Unavailable");
+            }
+            sleep(50);
+            return response("primary");
+        };
+        try (var hedging = new HedgingChatModel(leg("primary", failsFiveTimes), leg("backup", answer("backup", 0)),
+                DEADLINE)) {
+            for (int i = 0; i < 5; i++) {
+                assertThatThrownBy(() -> hedging.call(prompt())).hasMessageContaining("503");
+            }
+
+            ChatResponse response = hedging.call(prompt());
+
+            assertThat(response.getResult().getOutput().getText()).isEqualTo("primary");
+            assertThat(hedging.getStats().getHedges()).isZero();
+        }
+    }
+
+    @Test
+    void cancelledPrimaryLegsKeepTheDeadlineFromDrifting() {
+        AtomicInteger calls = new AtomicInteger();
+        // Fast for the first five turns, then stuck behind a backup that answers in 150ms
+        ChatModel slowsDown = prompt -> {
+            sleep(calls.incrementAndGet() <= 5 ? 0 : 5_000);
+            return response("primary");
+        };
+        try (var hedging = new HedgingChatModel(leg("primary", slowsDown), leg("backup", answer("backup", 150)),
+                DEADLINE)) {
+            for (int i = 0; i < 8; i++) {
+                hedging.call(prompt());
+            }
+
+            assertThat(hedging.getStats().getBackupWins()).isEqualTo(3);
+            assertThat(hedging.hedgeDeadline()).isGreaterThanOrEqualTo(Duration.ofMillis(150));
+        }
+    }
+
+    @Test
+    void hedgedTurnIsPricedAsTheWinnerPlusTheCancelledPrompt() {
+        ChatModel slow = prompt -> {
+            sleep(5_000);
+            return response("primary");
+        };
+        ChatModel fast = prompt -> new ChatResponse(List.of(new Generation(new AssistantMessage("backup"))),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(1_000, 100)).build());
+        try (var hedged = new HedgedLlmProvider(provider("Primary", slow, new LlmPricing.ModelPricing(1.0, 2.0, true, 0)),
+                "model", provider("Backup", fast, new LlmPricing.ModelPricing(10.0, 20.0, true, 0)), "model",
+                DEADLINE)) {
+            ChatResponse response = hedged.createChatModel("model").call(prompt());
+
+            assertThat(PricedChatModel.servedBy(response)).isEqualTo("backup/model");
+            assertThat(HedgingChatModel.cancelledLeg(response)).isEqualTo("primary/model");
+            // Backup's 1000 prompt and 100 completion tokens, plus the primary reading the same prompt
+            assertThat(hedged.getPricing("model", response).calculateCost(1_000, 100))
+                    .isCloseTo(0.010 + 0.002 + 0.001, within(1e-12));
+        }
+    }
+
+    private static LlmProvider provider(String name, ChatModel model, LlmPricing.ModelPricing pricing) {
+        return new LlmProvider(name, "UNUSED_API_KEY", List.of("model")) {
+            @Override
+            public ChatClient createChatClient(String model, TestScenario scenario) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ChatModel createChatModel(String modelName) {
+                return model;
+            }
+
+            @Override
+            public LlmPricing.ModelPricing getPricing(String modelName) {
+                return pricing;
+            }
+        };
+    }
+
+    private Prompt prompt() {
+        ToolCallback setParameter = new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return ToolDefinition.builder().name("setSingleParameter").description("Set").inputSchema("{}").build();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                consoleWrites.incrementAndGet();
+                return "OK";
+            }
+        };
+        return new Prompt("Rename channel 1 to Kick", ToolCallingChatOptions.builder().toolCallbacks(setParameter).build());
+    }
+
+    private static PricedChatModel leg(String name, ChatModel model) {
+        return new PricedChatModel(name, model, null);
+    }
+
+    private static ChatModel answer(String text, long delayMs) {
+        return prompt -> {
+            sleep(delayMs);
+            return response(text);
+        };
+    }
+
+    private static ChatModel callTool(String text, long delayMs) {
+        return prompt -> {
+            sleep(delayMs);
+            tool(prompt).call("{}");
+            return response(text);
+        };
+    }
+
+    private static ChatModel callToolThenWait(String text, long delayMs) {
+        return prompt -> {
+            tool(prompt).call("{}");
+            sleep(delayMs);
+            return response(text);
+        };
+    }
+
+    private static ToolCallback tool(Prompt prompt) {
+        return ((ToolCallingChatOptions) prompt.getOptions()).getToolCallbacks().getFirst();
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
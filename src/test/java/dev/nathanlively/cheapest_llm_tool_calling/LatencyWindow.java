@@ -0,0 +1,46 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The last {@code capacity} latencies of a model, so that deadlines follow its recent behaviour rather
+ * than the whole run.
+ */
+public class LatencyWindow {
+    private final int capacity;
+    private final Deque<Long> samplesMs = new ArrayDeque<>();
+
+    public LatencyWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public synchronized void record(Duration latency) {
+        if (samplesMs.size() == capacity) {
+            samplesMs.removeFirst();
+        }
+        samplesMs.addLast(latency.toMillis());
+    }
+
+    public synchronized int size() {
+        return samplesMs.size();
+    }
+
+    /**
+     * Nearest-rank percentile of the window, or zero when it is empty.
+     */
+    public synchronized Duration percentile(double percentile) {
+        if (samplesMs.isEmpty()) {
+            return Duration.ZERO;
+        }
+        long[] sorted = samplesMs.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return Duration.ofMillis(sorted[Math.clamp(rank - 1, 0, sorted.length - 1)]);
+    }
+}
@@ -1,13 +1,22 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.jspecify.annotations.Nullable;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.model.tool.ToolCallingManager;
 
+import java.time.Duration;
 import java.util.List;
 
 public abstract class LlmProvider {
     protected final String name;
     protected final String apiKeyEnvVar;
     protected final List<String> supportedModels;
+    protected final RateLimitInterceptor rateLimits = new RateLimitInterceptor();
+    protected ToolCallingManager toolCallingManager = ToolCallingManager.builder().build();
+    protected @Nullable AdvisorTimings advisorTimings;
 
     protected LlmProvider(String name, String apiKeyEnvVar, List<String> supportedModels) {
         this.name = name;
@@ -19,6 +28,53 @@ public abstract class LlmProvider {
         return name;
     }
 
+    /**
+     * Runs the independent tool calls of one model response concurrently (see {@link ParallelToolCallingManager})
+     * in the chat models created from now on.
+     */
+    public LlmProvider withParallelToolCalls() {
+        this.toolCallingManager = new ParallelToolCallingManager();
+        return this;
+    }
+
+    /**
+     * Awaits the async tool results of each model response together instead of one by one (see
+     * {@link AsyncToolCallingManager}), in the chat models created from now on. Wraps the tool calling manager
+     * chosen so far, which must run tools on the calling thread, so do not combine it with
+     * {@link #withParallelToolCalls()}.
+     */
+    public LlmProvider withAsyncToolResults() {
+        this.toolCallingManager = new AsyncToolCallingManager(toolCallingManager);
+        return this;
+    }
+
+    /**
+     * Encodes tool results with {@code encoder} before they go back to the model, in the chat models created
+     * from now on. Wraps the tool calling manager chosen so far, so call it after {@link #withParallelToolCalls()}.
+     */
+    public LlmProvider withToolResultEncoder(ToolResultEncoder encoder) {
+        this.toolCallingManager = new EncodingToolCallingManager(toolCallingManager, encoder);
+        return this;
+    }
+
+    /**
+     * Times every advisor of the chat clients created from now on (see {@link AdvisorTimings}). The benchmark
+     * runner records the samples of each turn in its {@link TestRun}.
+     */
+    public LlmProvider withAdvisorTimings(AdvisorTimings advisorTimings) {
+        this.advisorTimings = advisorTimings;
+        return this;
+    }
+
+    public @Nullable AdvisorTimings getAdvisorTimings() {
+        return advisorTimings;
+    }
+
+    /** The advisors for a chat client, timed if {@link #withAdvisorTimings} was called. */
+    protected List<Advisor> timed(Advisor... advisors) {
+        return advisorTimings != null ? advisorTimings.wrap(advisors) : List.of(advisors);
+    }
+
     public List<String> getSupportedModels() {
         return supportedModels;
     }
@@ -32,8 +88,60 @@ public abstract class LlmProvider {
         return apiKey != null && !apiKey.isBlank();
     }
 
+    /**
+     * Status and rate-limit headers of the provider's last HTTP response. Only populated by providers that
+     * build their API client with {@link RateLimitInterceptor#restClientBuilder()}.
+     */
+    public RateLimitInterceptor getRateLimits() {
+        return rateLimits;
+    }
+
     public abstract ChatClient createChatClient(String model, TestScenario scenario);
 
+    /**
+     * The bare chat model behind {@link #createChatClient}, without memory or advisors, so that wrappers
+     * such as {@link HedgedLlmProvider} can compose models from different providers.
+     */
+    public abstract ChatModel createChatModel(String model);
+
+    /**
+     * Called once before any of the provider's models is benchmarked, for slow setup such as pulling local
+     * models. Nothing done here is timed.
+     */
+    public void prepare() {
+    }
+
+    /**
+     * Called once per model before its timed runs. Local providers load the model here so that load time
+     * is reported as cold start instead of being counted in the first run. Returns the cold-start time.
+     */
+    public Duration warmUp(String model) {
+        return Duration.ZERO;
+    }
+
+    /**
+     * Called after each completed run with the final response of every turn. Local providers fill in the
+     * measured footprint and throughput fields of the run here.
+     */
+    public void recordRunMetrics(String model, TestRun run, List<ChatResponse> turns) {
+    }
+
+    protected String requireApiKey() {
+        String apiKey = System.getenv(apiKeyEnvVar);
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
+        }
+        return apiKey;
+    }
+
+    /**
+     * Pricing of the model that produced {@code response}. Providers that serve a run from more than one model
+     * override this to price each response by the model that answered it.
+     */
+    public LlmPricing.ModelPricing getPricing(String model, ChatResponse response) {
+        return getPricing(model);
+    }
+
     public LlmPricing.ModelPricing getPricing(String model) {
         String fullModelName = getFullModelName(model);
         var pricing = LlmPricing.getPricing(fullModelName);
@@ -1,13 +1,17 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -22,8 +26,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 @EnabledIfEnvironmentVariable(named = "GEMINI_API_KEY", matches = ".+")
 public class LlmToolCallingBenchmarkTest {
     private static final Logger logger = LoggerFactory.getLogger(LlmToolCallingBenchmarkTest.class);
-    private static final int TEST_ITERATIONS = 1;
+    private static final AdaptiveSampling SAMPLING = AdaptiveSampling.adaptive(3, 10);
     private static final int TIMEOUT_SECONDS = 60 * 5;
+    // Whole multi-turn conversations, so latency bounds are per conversation rather than per turn
+    private static final ServiceLevelObjective PRODUCTION_SLO =
+            ServiceLevelObjective.parse("p95 < 30s, accuracy >= 0.9, reliability >= 0.95, cheapest");
 
     private static final String MIXING_CONSOLE_SYSTEM_PROMPT = """
             - API uses 0-based indexing (ch.0, ch.1, ch.2...)
@@ -36,6 +43,8 @@ public class LlmToolCallingBenchmarkTest {
     private MockWeatherService mockWeatherService;
     private BenchmarkRunner benchmarkRunner;
     private static OllamaDirectProvider ollamaDirectProvider;
+    // LLM_CACHE_MODE=RECORD_MISSING records paid responses once, REPLAY re-runs the harness offline
+    private static RecordReplayAdvisor recordReplay;
 
     static Stream<String> apiKeyProvider() {
         return Stream.of(
@@ -47,6 +56,11 @@ public class LlmToolCallingBenchmarkTest {
         );
     }
 
+    @BeforeAll
+    static void setUpCache() {
+        recordReplay = RecordReplayAdvisor.fromEnvironment();
+    }
+
     @BeforeEach
     void setUp() {
         mockConsoleService = new MockMixingConsoleService();
@@ -62,13 +76,19 @@ public class LlmToolCallingBenchmarkTest {
                 ollamaDirectProvider
         );
 
-        benchmarkRunner = new BenchmarkRunner(providers, TEST_ITERATIONS, TIMEOUT_SECONDS);
+        benchmarkRunner = new BenchmarkRunner(providers, SAMPLING, TIMEOUT_SECONDS);
+        if (recordReplay.getMode() != RecordReplayAdvisor.Mode.OFF) {
+            benchmarkRunner.withAdvisors(recordReplay);
+        }
     }
 
     @AfterAll
     static void tearDown() {
         OllamaTestContainerProvider.cleanup();
         ollamaDirectProvider.cleanup();
+        if (recordReplay != null && recordReplay.getMode() != RecordReplayAdvisor.Mode.OFF) {
+            logger.info("Response cache: {}", recordReplay);
+        }
     }
 
     @ParameterizedTest
@@ -117,20 +137,15 @@ public class LlmToolCallingBenchmarkTest {
                 createComplexScenario()
         };
 
-        HashMap<String, Double> allResults = new HashMap<>();
+        Map<String, ModelMetrics> allResults = new HashMap<>();
 
-        for (TestScenario scenario : scenarios) {
-            var results = benchmarkRunner.runBenchmark(scenario);
+        // Model-major, so each local model is loaded once for both scenarios
+        for (var results : benchmarkRunner.runBenchmarks(scenarios)) {
             results.printReport();
+            results.determineWinner(PRODUCTION_SLO);
 
-            // Aggregate scores
-            for (var entry : results.getResults().entrySet()) {
-                String model = entry.getKey();
-                TestResults tr = entry.getValue();
-
-                double score = calculateOverallScore(tr);
-                allResults.merge(model, score, Double::sum);
-            }
+            // A model's overall metrics are its worst case across scenarios, with costs summed
+            results.getMetrics().forEach((model, metrics) -> allResults.merge(model, metrics, ModelMetrics::combine));
         }
 
         // Print overall winner across all scenarios
@@ -138,16 +153,265 @@ public class LlmToolCallingBenchmarkTest {
         logger.info("OVERALL WINNER ACROSS ALL SCENARIOS");
         logger.info("=".repeat(60));
 
-        allResults.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .forEach(e -> logger.info("{}: {}", e.getKey(), String.format("%.2f", e.getValue())));
+        ParetoRanking.Ranking overall = ParetoRanking.rank(allResults.values(), PRODUCTION_SLO);
+        overall.printReport();
+
+        logger.info("\n🏆🏆🏆 OVERALL CHEAPEST RELIABLE LLM: {} 🏆🏆🏆",
+                overall.winner().map(ModelMetrics::model).orElse("No winner"));
+    }
+
+    @Test
+    void hedgedRequestsTrimTailLatency() {
+        String primaryModel = "llama-3.1-8b-instant";
+        LlmProvider groq = groqOnly(primaryModel);
+        try (HedgedLlmProvider hedged = new HedgedLlmProvider(new GroqProxyProvider(), primaryModel,
+                new GoogleNativeProvider(), "gemini-2.0-flash", Duration.ofSeconds(5))) {
+            // Fixed sampling so both arms get the same number of runs to compare tails on
+            var runner = new BenchmarkRunner(List.of(groq, hedged), AdaptiveSampling.fixed(10), TIMEOUT_SECONDS);
+
+            var results = runner.runBenchmark(createSimpleScenario());
+            results.printReport();
 
-        String overallWinner = allResults.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("No winner");
+            TestResults single = results.getResults().get(groq.getFullModelName(primaryModel));
+            TestResults hedgedResults = results.getResults().get(hedged.getFullModelName(primaryModel));
+            assertThat(single).isNotNull();
+            assertThat(hedgedResults).isNotNull();
 
-        logger.info("\n🏆🏆🏆 OVERALL CHEAPEST RELIABLE LLM: {} 🏆🏆🏆", overallWinner);
+            logger.info("\n=== HEDGING: TAIL LATENCY VS COST ===");
+            for (TestResults arm : List.of(single, hedgedResults)) {
+                logger.info(String.format("%-70s p50 %6.0fms  p95 %6.0fms  p99 %6.0fms  $%.6f/run",
+                        arm.modelName, arm.getLatencyPercentile(50), arm.getLatencyPercentile(95),
+                        arm.getLatencyPercentile(99), arm.getAverageCost()));
+            }
+            logger.info("p99 saved: {}ms, hedging: {}",
+                    Math.round(single.getLatencyPercentile(99) - hedgedResults.getLatencyPercentile(99)),
+                    hedged.getStats());
+
+            assertThat(hedgedResults.getSuccessRate()).isGreaterThan(0);
+        }
+    }
+
+    @Test
+    void commandCacheServesRepeatedIntents() {
+        String model = "llama-3.1-8b-instant";
+        LlmProvider groq = groqOnly(model);
+        ConsoleCommandCacheAdvisor commandCache = new ConsoleCommandCacheAdvisor(mockConsoleService, 256);
+        var uncached = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(5), TIMEOUT_SECONDS)
+                .runBenchmark(createSimpleScenario());
+        var cached = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(5), TIMEOUT_SECONDS)
+                .withAdvisors(commandCache)
+                .runBenchmark(createSimpleScenario());
+
+        TestResults before = uncached.getResults().get(groq.getFullModelName(model));
+        TestResults after = cached.getResults().get(groq.getFullModelName(model));
+        assertThat(before).isNotNull();
+        assertThat(after).isNotNull();
+
+        logger.info("\n=== COMMAND CACHE ===");
+        logger.info("Command cache: {}", commandCache);
+        logger.info(String.format("Avg run %6.0fms -> %6.0fms, accuracy %5.1f%% -> %5.1f%%, $%.6f -> $%.6f per run",
+                before.getAverageTime(), after.getAverageTime(),
+                before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100,
+                before.getAverageCost(), after.getAverageCost()));
+
+        assertThat(commandCache.getHits()).isGreaterThan(0);
+    }
+
+    @Test
+    void fastPathBypassesModelForSimpleCommands() {
+        String model = "llama-3.1-8b-instant";
+        LlmProvider groq = groqOnly(model);
+        FastPathAdvisor fastPath = new FastPathAdvisor(mockConsoleService, 32);
+        var baseline = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                .runBenchmarks(createSimpleScenario(), createComplexScenario());
+        var withFastPath = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                .withAdvisors(fastPath)
+                .runBenchmarks(createSimpleScenario(), createComplexScenario());
+
+        logger.info("\n=== FAST PATH ===");
+        logger.info("Fast path: {}", fastPath);
+        for (int i = 0; i < baseline.size(); i++) {
+            TestResults before = baseline.get(i).getResults().get(groq.getFullModelName(model));
+            TestResults after = withFastPath.get(i).getResults().get(groq.getFullModelName(model));
+            assertThat(before).isNotNull();
+            assertThat(after).isNotNull();
+            logger.info(String.format("Scenario %d: avg run %6.0fms -> %6.0fms, accuracy %5.1f%% -> %5.1f%%, "
+                                      + "$%.6f -> $%.6f per run", i + 1,
+                    before.getAverageTime(), after.getAverageTime(),
+                    before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100,
+                    before.getAverageCost(), after.getAverageCost()));
+        }
+
+        assertThat(fastPath.getHandled()).isGreaterThan(0);
+    }
+
+    @Test
+    void coalescingDropsRedundantConsoleWrites() {
+        LlmProvider groq = groqOnly("llama-3.1-8b-instant", "llama-3.3-70b-versatile");
+        CoalescingConsoleService coalescing = new CoalescingConsoleService(mockConsoleService, Duration.ofMillis(250));
+        var runner = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS);
+
+        var direct = runner.runBenchmark(createComplexScenario());
+        var coalesced = runner.runBenchmark(createComplexScenario(coalescing));
+        coalesced.printReport();
+
+        logger.info("\n=== WRITE COALESCING ===");
+        double directCalls = 0;
+        double coalescedCalls = 0;
+        double saved = 0;
+        for (String model : groq.getSupportedModels()) {
+            TestResults before = direct.getResults().get(groq.getFullModelName(model));
+            TestResults after = coalesced.getResults().get(groq.getFullModelName(model));
+            assertThat(before).isNotNull();
+            assertThat(after).isNotNull();
+            logger.info(String.format("%-40s console calls %5.1f -> %5.1f (%.1f saved), avg run %6.0fms -> %6.0fms, "
+                                      + "accuracy %5.1f%% -> %5.1f%%", model,
+                    before.getAverageToolCalls(), after.getAverageToolCalls(),
+                    after.getAverageMeasured(r -> r.toolCallsSaved),
+                    before.getAverageTime(), after.getAverageTime(),
+                    before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100));
+            assertThat(before.getAverageMeasured(r -> r.toolCallsSaved)).isZero();
+            directCalls += before.getAverageToolCalls();
+            coalescedCalls += after.getAverageToolCalls();
+            saved += after.getAverageMeasured(r -> r.toolCallsSaved);
+        }
+        // Summed over the models, so one model's run-to-run variance does not decide the outcome
+        assertThat(saved).isPositive();
+        assertThat(coalescedCalls).isLessThan(directCalls);
+    }
+
+    @Test
+    void parallelToolCallsShortenToolPhase() {
+        String model = "llama-3.3-70b-versatile";
+        LlmProvider sequential = groqOnly(model);
+        LlmProvider parallel = groqOnly(model).withParallelToolCalls();
+        var before = new BenchmarkRunner(List.of(sequential), AdaptiveSampling.fixed(5), TIMEOUT_SECONDS)
+                .runBenchmark(createComplexScenario()).getResults().get(sequential.getFullModelName(model));
+        var after = new BenchmarkRunner(List.of(parallel), AdaptiveSampling.fixed(5), TIMEOUT_SECONDS)
+                .runBenchmark(createComplexScenario()).getResults().get(parallel.getFullModelName(model));
+        assertThat(before).isNotNull();
+        assertThat(after).isNotNull();
+
+        logger.info("\n=== PARALLEL TOOL CALLS ===");
+        logger.info(String.format("Complex scenario: avg run %6.0fms -> %6.0fms, p95 %6.0fms -> %6.0fms, "
+                                  + "accuracy %5.1f%% -> %5.1f%%",
+                before.getAverageTime(), after.getAverageTime(),
+                before.getLatencyPercentile(95), after.getLatencyPercentile(95),
+                before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100));
+
+        assertThat(after.getAverageAccuracy()).isGreaterThanOrEqualTo(before.getAverageAccuracy() - 0.1);
+    }
+
+    @Test
+    void compactToolResultsSaveTokens() {
+        String[] models = {"llama-3.1-8b-instant", "llama-3.3-70b-versatile"};
+        logger.info("\n=== TOOL RESULT ENCODING ===");
+        // Every encoding is compared with the JSON run of the same model, which comes first. Prompt tokens are
+        // summed over the run's turns, each covering all its tool-calling round trips, which resend earlier results
+        Map<String, TestResults> json = new HashMap<>();
+        for (ToolResultEncoder encoder : ToolResultEncoder.values()) {
+            LlmProvider groq = groqOnly(models).withToolResultEncoder(encoder);
+            var results = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                    .runBenchmark(createComplexScenario());
+            logger.info("{}", groq.toolCallingManager);
+
+            for (String model : models) {
+                TestResults after = results.getResults().get(groq.getFullModelName(model));
+                assertThat(after).isNotNull();
+                TestResults before = json.computeIfAbsent(model, ignored -> after);
+                logger.info(String.format("%-8s %-40s prompt tokens/run %8.0f -> %8.0f, avg run %6.0fms -> %6.0fms, "
+                                          + "accuracy %5.1f%% -> %5.1f%%", encoder, model,
+                        before.getAverageMeasured(r -> r.promptTokens), after.getAverageMeasured(r -> r.promptTokens),
+                        before.getAverageTime(), after.getAverageTime(),
+                        before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100));
+            }
+        }
+    }
+
+    @Test
+    void stateSnapshotReplacesHistoryReplay() {
+        String model = "llama-3.3-70b-versatile";
+        LlmProvider groq = groqOnly(model);
+        ConsoleStateSnapshotAdvisor snapshot = new ConsoleStateSnapshotAdvisor(mockConsoleService, 4);
+
+        logger.info("\n=== CONSOLE STATE SNAPSHOT VS HISTORY REPLAY ===");
+        for (int extraTurns : List.of(0, 4, 8)) {
+            TestScenario scenario = createLongBandScenario(extraTurns);
+            TestResults before = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                    .runBenchmark(scenario).getResults().get(groq.getFullModelName(model));
+            TestResults after = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                    .withAdvisors(snapshot)
+                    .runBenchmark(scenario).getResults().get(groq.getFullModelName(model));
+            assertThat(before).isNotNull();
+            assertThat(after).isNotNull();
+            logger.info(String.format("%2d turns: prompt tokens %8.0f -> %8.0f, avg run %6.0fms -> %6.0fms, "
+                                      + "accuracy %5.1f%% -> %5.1f%%", scenario.getPrompts().size(),
+                    before.getAverageMeasured(r -> r.promptTokens), after.getAverageMeasured(r -> r.promptTokens),
+                    before.getAverageTime(), after.getAverageTime(),
+                    before.getAverageAccuracy() * 100, after.getAverageAccuracy() * 100));
+        }
+        logger.info("Snapshot: {}", snapshot);
+    }
+
+    @Test
+    void advisorOverheadPerTurn() {
+        String model = "llama-3.1-8b-instant";
+        AdvisorTimings timings = new AdvisorTimings();
+        LlmProvider groq = groqOnly(model).withAdvisorTimings(timings);
+        TestResults results = new BenchmarkRunner(List.of(groq), AdaptiveSampling.fixed(3), TIMEOUT_SECONDS)
+                .runBenchmark(createComplexScenario()).getResults().get(groq.getFullModelName(model));
+        assertThat(results).isNotNull();
+
+        timings.printReport();
+        // Later turns carry more history, so growth here is the cost of replaying memory
+        logger.info(String.format("%-6s %-32s %12s %16s", "Turn", "Advisor", "Avg ms", "Avg bytes added"));
+        int turnCount = results.runs.stream().mapToInt(run -> run.advisorTurns.size()).max().orElse(0);
+        for (int turn = 0; turn < turnCount; turn++) {
+            Map<String, AdvisorTimings.Sample> sums = new LinkedHashMap<>();
+            int runs = 0;
+            for (TestRun run : results.runs) {
+                if (turn < run.advisorTurns.size()) {
+                    runs++;
+                    run.advisorTurns.get(turn).forEach((advisor, sample) ->
+                            sums.merge(advisor, sample, AdvisorTimings.Sample::plus));
+                }
+            }
+            for (var entry : sums.entrySet()) {
+                logger.info(String.format("%-6d %-32s %12.3f %16.0f", turn + 1, entry.getKey(),
+                        entry.getValue().selfMs() / runs, (double) entry.getValue().addedBytes() / runs));
+            }
+        }
+
+        assertThat(timings.getTotals()).containsKey("SimpleLoggerAdvisor");
+    }
+
+    @Test
+    void localFirstEscalationBlendsCostAndAccuracy() {
+        String cloudModel = "llama-3.3-70b-versatile";
+        LlmProvider cloudOnly = groqOnly(cloudModel);
+        LocalFirstLlmProvider localFirst = new LocalFirstLlmProvider(new OllamaTestContainerProvider(), "llama3.2:3b",
+                new GroqProxyProvider(), cloudModel, 32);
+        var runner = new BenchmarkRunner(List.of(cloudOnly, localFirst), AdaptiveSampling.fixed(10), TIMEOUT_SECONDS);
+
+        var results = runner.runBenchmark(createComplexScenario());
+        results.printReport();
+
+        TestResults cloudResults = results.getResults().get(cloudOnly.getFullModelName(cloudModel));
+        TestResults blended = results.getResults().get(localFirst.getFullModelName("llama3.2:3b"));
+        assertThat(cloudResults).isNotNull();
+        assertThat(blended).isNotNull();
+
+        logger.info("\n=== LOCAL-FIRST VS CLOUD-ONLY ===");
+        for (TestResults arm : List.of(cloudResults, blended)) {
+            logger.info(String.format("%-80s p50 %6.0fms  p95 %6.0fms  accuracy %5.1f%%  $%.6f/run",
+                    arm.modelName, arm.getLatencyPercentile(50), arm.getLatencyPercentile(95),
+                    arm.getAverageAccuracy() * 100, arm.getAverageCost()));
+        }
+        LocalFirstChatModel.Stats stats = localFirst.getStats();
+        logger.info("Local-first: {}, cloud cost per run ${}", stats,
+                String.format("%.6f", stats.getCloudCost() / Math.max(1, blended.runs.size())));
+
+        assertThat(blended.getSuccessRate()).isGreaterThan(0);
     }
 
     // Helper methods
@@ -191,7 +455,23 @@ public class LlmToolCallingBenchmarkTest {
         return score / maxScore;
     }
 
+    /**
+     * Groq limited to {@code models}, so a scenario runs only the models it compares.
+     */
+    private static LlmProvider groqOnly(String... models) {
+        return new GroqProxyProvider() {
+            @Override
+            public List<String> getSupportedModels() {
+                return List.of(models);
+            }
+        };
+    }
+
     private TestScenario createComplexScenario() {
+        return createComplexScenario(mockConsoleService);
+    }
+
+    private TestScenario createComplexScenario(Object toolService) {
         return new TestScenario.Builder()
                 .name("Complex Band Setup with Memory")
                 .prompts(
@@ -203,6 +483,30 @@ public class LlmToolCallingBenchmarkTest {
                         "Rename the Kick channel specifically to 'DR-Kick-In'"  // Tests finding and updating specific channel
                 )
                 .validation(this::validateComplexBandSetup)
+                .toolService(toolService)
+                .systemPrompt(MIXING_CONSOLE_SYSTEM_PROMPT)
+                .build();
+    }
+
+    /**
+     * The complex band setup with {@code extraTurns} unrelated renames before the two prompts that depend on
+     * the drum channels, pushing the drum setup further back in the conversation.
+     */
+    private TestScenario createLongBandScenario(int extraTurns) {
+        List<String> prompts = new ArrayList<>(List.of(
+                "Name channels 1-7: Kick, Snare, Hi-hat, Tom 1, Tom 2, Overheads L, Overheads R",
+                "Add bass on channel 8 and guitar on channel 9",
+                "What's on channel 6? Now swap it with what's on channel 9",
+                "Add lead vocal on channel 12, backing vocals on 13-14"));
+        for (int i = 0; i < extraTurns; i++) {
+            prompts.add("Name channel " + (17 + i) + " Spare " + (i + 1));
+        }
+        prompts.add("Change all drum channels (the first 7 you set up) to have 'DR-' prefix");
+        prompts.add("Rename the Kick channel specifically to 'DR-Kick-In'");
+        return new TestScenario.Builder()
+                .name("Complex Band Setup with " + extraTurns + " Extra Turns")
+                .prompts(prompts)
+                .validation(this::validateComplexBandSetup)
                 .toolService(mockConsoleService)
                 .systemPrompt(MIXING_CONSOLE_SYSTEM_PROMPT)
                 .build();
@@ -254,15 +558,4 @@ public class LlmToolCallingBenchmarkTest {
         logger.info("Complex validation score: {}/{}", score, maxScore);
         return score / maxScore;
     }
-
-    private double calculateOverallScore(TestResults tr) {
-        double reliabilityScore = tr.getSuccessRate() * 50;
-        double accuracyScore = tr.getAverageAccuracy() * 30;
-        double speedScore = tr.getAverageTime() > 0 ?
-                Math.min(15.0, 15000.0 / tr.getAverageTime()) : 0;
-        double costScore = tr.getAverageCost() > 0 ?
-                Math.min(5.0, 0.05 / tr.getAverageCost()) : 5.0;
-
-        return reliabilityScore + accuracyScore + speedScore + costScore;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Two-tier execution: a free local model proposes each round of tool calls, an {@link ApiCallValidator} checks
+ * them before they reach the console, and the turn escalates to a cloud model only when the local model
+ * errors, proposes something invalid, answers with nothing, or runs out of rounds.
+ * <p>
+ * Tool calls the local model already ran stay applied. The cloud model gets the original prompt plus a note
+ * listing them, rather than the raw tool-call messages, because local tool-call ids are not valid for other
+ * providers.
+ */
+public class LocalFirstChatModel implements ChatModel {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFirstChatModel.class);
+    private static final int DEFAULT_MAX_ROUNDS = 5;
+
+    private final PricedChatModel local;
+    private final PricedChatModel cloud;
+    private final ApiCallValidator validator;
+    private final ToolCallingManager toolCallingManager = ToolCallingManager.builder().build();
+    private final Stats stats = new Stats();
+    private int maxRounds = DEFAULT_MAX_ROUNDS;
+
+    public LocalFirstChatModel(PricedChatModel local, PricedChatModel cloud, int channelCount) {
+        this.local = local;
+        this.cloud = cloud;
+        this.validator = new ApiCallValidator(channelCount);
+    }
+
+    public LocalFirstChatModel withMaxRounds(int maxRounds) {
+        this.maxRounds = maxRounds;
+        return this;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // ChatClient only attaches tools when the model's default options support tool calling
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        stats.turns.incrementAndGet();
+        Prompt localPrompt = DelegatePrompts.forManualToolExecution(prompt);
+        Set<String> toolNames = toolNames(localPrompt);
+        Map<String, String> turnWrites = new HashMap<>();
+        List<Message> history = new ArrayList<>(localPrompt.getInstructions());
+        List<ToolResponseMessage> executed = new ArrayList<>();
+
+        for (int round = 0; round < maxRounds; round++) {
+            Prompt roundPrompt = new Prompt(history, localPrompt.getOptions());
+            ChatResponse response;
+            try {
+                response = local.model().call(roundPrompt);
+            } catch (RuntimeException e) {
+                return escalate(prompt, executed, local.name() + " failed: " + e.getMessage());
+            }
+
+            if (!response.hasToolCalls()) {
+                if (response.getResult() == null || isBlank(response.getResult().getOutput().getText())) {
+                    return escalate(prompt, executed, "empty answer");
+                }
+                stats.localTurns.incrementAndGet();
+                return local.stamp(response);
+            }
+
+            List<AssistantMessage.ToolCall> toolCalls = response.getResults().stream()
+                    .flatMap(generation -> generation.getOutput().getToolCalls().stream())
+                    .toList();
+            ApiCallValidator.Verdict verdict = validator.validate(toolCalls, toolNames, turnWrites);
+            if (!verdict.valid()) {
+                return escalate(prompt, executed, "invalid proposal: " + verdict.reason());
+            }
+
+            ToolExecutionResult result = toolCallingManager.executeToolCalls(roundPrompt, response);
+            history = new ArrayList<>(result.conversationHistory());
+            if (history.getLast() instanceof ToolResponseMessage toolResponses) {
+                executed.add(toolResponses);
+            }
+            if (result.returnDirect()) {
+                stats.localTurns.incrementAndGet();
+                return local.stamp(ChatResponse.builder().from(response)
+                        .generations(ToolExecutionResult.buildGenerations(result))
+                        .build());
+            }
+        }
+        return escalate(prompt, executed, "no answer after " + maxRounds + " rounds");
+    }
+
+    private ChatResponse escalate(Prompt prompt, List<ToolResponseMessage> executed, String reason) {
+        logger.info("Escalating turn from {} to {}: {}", local.name(), cloud.name(), reason);
+        stats.escalations.incrementAndGet();
+        if (!executed.isEmpty()) {
+            stats.escalationsAfterTools.incrementAndGet();
+        }
+
+        Prompt cloudPrompt = DelegatePrompts.forDelegate(prompt);
+        if (!executed.isEmpty()) {
+            List<Message> messages = new ArrayList<>(cloudPrompt.getInstructions());
+            messages.add(new AssistantMessage(describe(executed)));
+            cloudPrompt = new Prompt(messages, cloudPrompt.getOptions());
+        }
+        ChatResponse response = cloud.model().call(cloudPrompt);
+        stats.cloudCost.add(cloud.cost(response));
+        return cloud.stamp(response);
+    }
+
+    private static String describe(List<ToolResponseMessage> executed) {
+        return executed.stream()
+                .flatMap(message -> message.getResponses().stream())
+                .map(r -> r.name() + " -> " + r.responseData())
+                .collect(Collectors.joining("\n", "Tool calls already executed this turn, do not repeat them:\n", ""));
+    }
+
+    private static Set<String> toolNames(Prompt prompt) {
+        Set<String> names = new HashSet<>();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            options.getToolCallbacks().forEach(callback -> names.add(callback.getToolDefinition().name()));
+            names.addAll(options.getToolNames());
+        }
+        return names;
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.isBlank();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    public static class Stats {
+        private final AtomicInteger turns = new AtomicInteger();
+        private final AtomicInteger localTurns = new AtomicInteger();
+        private final AtomicInteger escalations = new AtomicInteger();
+        private final AtomicInteger escalationsAfterTools = new AtomicInteger();
+        private final DoubleAdder cloudCost = new DoubleAdder();
+
+        public int getTurns() {
+            return turns.get();
+        }
+
+        public int getLocalTurns() {
+            return localTurns.get();
+        }
+
+        public int getEscalations() {
+            return escalations.get();
+        }
+
+        /**
+         * Escalations where the local model had already changed the console before giving up.
+         */
+        public int getEscalationsAfterTools() {
+            return escalationsAfterTools.get();
+        }
+
+        public double getCloudCost() {
+            return cloudCost.sum();
+        }
+
+        public double getEscalationRate() {
+            return turns.get() > 0 ? (double) escalations.get() / turns.get() : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d turns, %d local, %d escalated (%.1f%%, %d after tools), cloud cost $%.6f",
+                    getTurns(), getLocalTurns(), getEscalations(), getEscalationRate() * 100,
+                    getEscalationsAfterTools(), getCloudCost());
+        }
+    }
+}
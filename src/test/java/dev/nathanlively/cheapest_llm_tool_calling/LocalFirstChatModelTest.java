@@ -0,0 +1,124 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalFirstChatModelTest {
+
+    private final Console console = new Console();
+    private final ScriptedChatModel local = new ScriptedChatModel();
+    private final StubChatModel cloud = new StubChatModel("cloud", Duration.ZERO);
+    private final LocalFirstChatModel model = new LocalFirstChatModel(
+            new PricedChatModel("local", local, null),
+            new PricedChatModel("cloud", cloud, new LlmPricing.ModelPricing(1.0, 2.0, true, 0)), 32);
+
+    @Test
+    void validProposalIsServedLocally() {
+        local.respond(toolCall("{\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}"));
+        local.respond(new AssistantMessage("Renamed channel 1 to Kick"));
+
+        ChatResponse response = model.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("Renamed channel 1 to Kick");
+        assertThat(console.writes).containsExactly("ch.0.cfg.name=Kick");
+        assertThat(cloud.getCalls()).isZero();
+        assertThat(model.getStats().getLocalTurns()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidProposalEscalatesBeforeTouchingConsole() {
+        local.respond(toolCall("{\"path\": \"channel1.name\", \"value\": \"Kick\"}"));
+
+        ChatResponse response = model.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("cloud");
+        assertThat(console.writes).isEmpty();
+        assertThat(model.getStats().getEscalations()).isEqualTo(1);
+        assertThat(model.getStats().getCloudCost()).isGreaterThan(0);
+        assertThat(PricedChatModel.servedBy(response)).isEqualTo("cloud");
+    }
+
+    @Test
+    void loopingProposalEscalatesWithoutRepeatingWrites() {
+        local.respond(toolCall("{\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}"));
+        local.respond(toolCall("{\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}"));
+
+        model.call(prompt());
+
+        assertThat(console.writes).containsExactly("ch.0.cfg.name=Kick");
+        assertThat(model.getStats().getEscalationsAfterTools()).isEqualTo(1);
+    }
+
+    @Test
+    void localFailureEscalates() {
+        local.fail();
+
+        ChatResponse response = model.call(prompt());
+
+        assertThat(response.getResult().getOutput().getText()).isEqualTo("cloud");
+        assertThat(model.getStats().getEscalationRate()).isEqualTo(1.0);
+    }
+
+    private Prompt prompt() {
+        return new Prompt(List.<Message>of(new UserMessage("Rename channel 1 to Kick")),
+                ToolCallingChatOptions.builder().toolCallbacks(ToolCallbacks.from(console)).build());
+    }
+
+    private static AssistantMessage toolCall(String apiCall) {
+        return new AssistantMessage("", Map.of(), List.of(new AssistantMessage.ToolCall(
+                "call-1", "function", "setSingleParameter", "{\"apiCall\": " + apiCall + "}")));
+    }
+
+    static class Console {
+        final List<String> writes = new ArrayList<>();
+
+        @Tool(description = "Set a mixer parameter")
+        public String setSingleParameter(ApiCall apiCall) {
+            writes.add(apiCall.path() + "=" + apiCall.value());
+            return "SUCCESS";
+        }
+    }
+
+    /**
+     * Answers with queued messages in order, failing when told to or when the script runs out.
+     */
+    private static class ScriptedChatModel implements ChatModel {
+        private static final AssistantMessage FAILURE = new AssistantMessage("");
+        private final Deque<AssistantMessage> responses = new ArrayDeque<>();
+
+        void respond(AssistantMessage message) {
+            responses.add(message);
+        }
+
+        void fail() {
+            responses.add(FAILURE);
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            AssistantMessage message = responses.poll();
+            if (message == null || message == FAILURE) {
+                throw new IllegalStateException("local model crashed");
+            }
+            return new ChatResponse(List.of(new Generation(message)));
+        }
+    }
+}
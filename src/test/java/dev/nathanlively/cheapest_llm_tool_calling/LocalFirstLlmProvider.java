@@ -0,0 +1,109 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs a local model with cloud escalation (see {@link LocalFirstChatModel}). The model is kept across chat
+ * clients so its statistics cover a whole sweep.
+ */
+public class LocalFirstLlmProvider extends LlmProvider {
+    private final LlmProvider local;
+    private final String localModel;
+    private final LlmProvider cloud;
+    private final String cloudModel;
+    private final int channelCount;
+    @Nullable
+    private LocalFirstChatModel localFirstModel;
+
+    public LocalFirstLlmProvider(LlmProvider local, String localModel,
+                                 LlmProvider cloud, String cloudModel, int channelCount) {
+        super("LocalFirst", cloud.apiKeyEnvVar, List.of(localModel));
+        this.local = local;
+        this.localModel = localModel;
+        this.cloud = cloud;
+        this.cloudModel = cloudModel;
+        this.channelCount = channelCount;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return local.isAvailable() && cloud.isAvailable();
+    }
+
+    @Override
+    public void prepare() {
+        local.prepare();
+    }
+
+    @Override
+    public Duration warmUp(String model) {
+        return local.warmUp(localModel);
+    }
+
+    @Override
+    public RateLimitInterceptor getRateLimits() {
+        return cloud.getRateLimits();
+    }
+
+    @Override
+    public synchronized ChatModel createChatModel(String model) {
+        if (localFirstModel == null) {
+            localFirstModel = new LocalFirstChatModel(PricedChatModel.of(local, localModel),
+                    PricedChatModel.of(cloud, cloudModel), channelCount);
+        }
+        return localFirstModel;
+    }
+
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .maxMessages(10)
+                .build();
+        return ChatClient.builder(createChatModel(model))
+                .defaultAdvisors(timed(
+                        new EmptyMessageFilterAdvisor(),
+                        MessageChatMemoryAdvisor.builder(chatMemory)
+                                .conversationId("test-" + System.currentTimeMillis())
+                                .build(),
+                        new SimpleLoggerAdvisor()))
+                .build();
+    }
+
+    @Override
+    public String getFullModelName(String model) {
+        return "local-first/" + local.getFullModelName(localModel) + "+" + cloud.getFullModelName(cloudModel);
+    }
+
+    /**
+     * Priced as the tier that served the response, which {@link LocalFirstChatModel} stamps on it. The exact
+     * cloud spend is reported by {@link #getStats()}.
+     */
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model, ChatResponse response) {
+        LlmPricing.ModelPricing pricing = cloud.getFullModelName(cloudModel).equals(PricedChatModel.servedBy(response))
+                ? cloud.getPricing(cloudModel) : local.getPricing(localModel);
+        return pricing != null ? pricing : new LlmPricing.ModelPricing(0.0, 0.0, true, 0);
+    }
+
+    /**
+     * Priced as the local tier, for checks made before any turn has been served.
+     */
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model) {
+        LlmPricing.ModelPricing pricing = local.getPricing(localModel);
+        return pricing != null ? pricing : new LlmPricing.ModelPricing(0.0, 0.0, true, 0);
+    }
+
+    public synchronized LocalFirstChatModel.Stats getStats() {
+        return localFirstModel != null ? localFirstModel.getStats() : new LocalFirstChatModel.Stats();
+    }
+}
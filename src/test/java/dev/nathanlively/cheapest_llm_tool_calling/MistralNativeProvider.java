@@ -4,6 +4,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.mistralai.MistralAiChatModel;
 import org.springframework.ai.mistralai.MistralAiChatOptions;
 import org.springframework.ai.mistralai.api.MistralAiApi;
@@ -19,27 +20,26 @@ public class MistralNativeProvider extends LlmProvider {
     }
 
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        String apiKey = System.getenv(apiKeyEnvVar);
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
-        }
-
-        MistralAiApi mistralAiApi = new MistralAiApi(apiKey);
+    public ChatModel createChatModel(String model) {
+        MistralAiApi mistralAiApi = new MistralAiApi(requireApiKey());
         MistralAiChatOptions chatOptions = MistralAiChatOptions.builder()
-                .model(smallValue)
+                .model(model)
                 .temperature(0.1)
                 .build();
 
-        MistralAiChatModel chatModel = MistralAiChatModel.builder()
+        return MistralAiChatModel.builder()
                 .mistralAiApi(mistralAiApi)
                 .defaultOptions(chatOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
 
-        ChatClient.Builder builder = ChatClient.builder(chatModel);
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        ChatClient.Builder builder = ChatClient.builder(createChatModel(model));
 
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder().build();
-        builder.defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor());
+        builder.defaultAdvisors(timed(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor()));
 
         return builder.build();
     }
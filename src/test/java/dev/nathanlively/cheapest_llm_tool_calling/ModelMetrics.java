@@ -0,0 +1,70 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+/**
+ * The objectives a model is ranked on: latency percentiles, cost per conversation, accuracy and reliability.
+ */
+public record ModelMetrics(String model,
+                           double p50Ms,
+                           double p95Ms,
+                           double p99Ms,
+                           double costPerRun,
+                           double accuracy,
+                           double reliability) {
+
+    /**
+     * A model with no successful run has no latency or cost worth the name, so they rank as worst rather than
+     * as instant and free, which would otherwise put it on the frontier ahead of every working model.
+     */
+    static ModelMetrics from(TestResults results) {
+        if (results.getSuccessRate() == 0) {
+            double unmeasured = Double.POSITIVE_INFINITY;
+            return new ModelMetrics(results.modelName, unmeasured, unmeasured, unmeasured, unmeasured, 0, 0);
+        }
+        return new ModelMetrics(
+                results.modelName,
+                results.getLatencyPercentile(50),
+                results.getLatencyPercentile(95),
+                results.getLatencyPercentile(99),
+                results.getAverageCost(),
+                results.getAverageAccuracy(),
+                results.getSuccessRate());
+    }
+
+    /**
+     * Combines the same model's metrics from two scenarios: a production model has to hold up in every
+     * scenario, so latency, accuracy and reliability take the worse value while cost adds up.
+     */
+    public ModelMetrics combine(ModelMetrics other) {
+        return new ModelMetrics(
+                model,
+                Math.max(p50Ms, other.p50Ms),
+                Math.max(p95Ms, other.p95Ms),
+                Math.max(p99Ms, other.p99Ms),
+                costPerRun + other.costPerRun,
+                Math.min(accuracy, other.accuracy),
+                Math.min(reliability, other.reliability));
+    }
+
+    /**
+     * True if this model is at least as good as {@code other} on every objective and strictly better on one.
+     */
+    public boolean dominates(ModelMetrics other) {
+        boolean noWorse = p50Ms <= other.p50Ms
+                          && p95Ms <= other.p95Ms
+                          && costPerRun <= other.costPerRun
+                          && accuracy >= other.accuracy
+                          && reliability >= other.reliability;
+        boolean better = p50Ms < other.p50Ms
+                         || p95Ms < other.p95Ms
+                         || costPerRun < other.costPerRun
+                         || accuracy > other.accuracy
+                         || reliability > other.reliability;
+        return noWorse && better;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (p50=%.0fms, p95=%.0fms, p99=%.0fms, cost=$%.6f, accuracy=%.0f%%, reliability=%.0f%%)",
+                model, p50Ms, p95Ms, p99Ms, costPerRun, accuracy * 100, reliability * 100);
+    }
+}
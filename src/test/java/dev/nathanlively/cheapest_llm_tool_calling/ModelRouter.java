@@ -0,0 +1,156 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks a model per turn from live measurements instead of a static benchmark winner. Every route keeps a
+ * moving window of latency, errors and cost; a turn goes to the best route, by the SLO's objective, whose
+ * window currently meets every SLO constraint.
+ * <p>
+ * A route with fewer than {@code minSamples} turns is assumed to meet the latency and reliability constraints
+ * and is priced from {@link LlmPricing} at the average token usage seen so far, so new routes get tried. Routes
+ * that miss the SLO stay available for failover, and every {@code probeEvery} turns the cheapest of them is
+ * tried first so that a recovered provider is noticed.
+ */
+public class ModelRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+    private static final int WINDOW_SIZE = 50;
+    // Token usage assumed for pricing before any turn has been observed
+    private static final int DEFAULT_PROMPT_TOKENS = 1_000;
+    private static final int DEFAULT_COMPLETION_TOKENS = 100;
+
+    /**
+     * @param accuracy offline accuracy from the benchmark, since live turns cannot be scored
+     */
+    public record Route(PricedChatModel model, double accuracy) {
+        public Route(PricedChatModel model) {
+            this(model, 1.0);
+        }
+
+        String name() {
+            return model.name();
+        }
+    }
+
+    private final List<Route> routes;
+    private final ServiceLevelObjective slo;
+    private final Map<String, RouteWindow> windows = new LinkedHashMap<>();
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong observedTurns = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private int minSamples = 5;
+    private int probeEvery = 20;
+
+    public ModelRouter(List<Route> routes, ServiceLevelObjective slo) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("A router needs at least one route");
+        }
+        this.routes = List.copyOf(routes);
+        this.slo = slo;
+        routes.forEach(route -> windows.put(route.name(), new RouteWindow(WINDOW_SIZE)));
+    }
+
+    /**
+     * Turns a route must serve before its window is trusted over the optimistic estimate.
+     */
+    public ModelRouter withMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Every {@code probeEvery} turns, try the cheapest route that misses the SLO first. Zero disables probing.
+     */
+    public ModelRouter withProbeEvery(int probeEvery) {
+        this.probeEvery = probeEvery;
+        return this;
+    }
+
+    /**
+     * All routes in the order a turn should try them: routes meeting the SLO best first, then the rest
+     * fastest first as a fallback.
+     */
+    public List<Route> rank() {
+        Comparator<ModelMetrics> objective = slo.objective().comparator();
+        Map<ModelMetrics, Route> byMetrics = new LinkedHashMap<>();
+        routes.forEach(route -> byMetrics.put(metrics(route), route));
+
+        List<Route> ranked = new ArrayList<>();
+        byMetrics.keySet().stream()
+                .filter(slo::isMetBy)
+                .sorted(objective)
+                .forEach(m -> ranked.add(byMetrics.get(m)));
+        List<ModelMetrics> missing = byMetrics.keySet().stream()
+                .filter(m -> !slo.isMetBy(m))
+                .toList();
+
+        if (probeEvery > 0 && turns.incrementAndGet() % probeEvery == 0 && !missing.isEmpty()) {
+            Route probe = byMetrics.get(missing.stream().min(Comparator.comparingDouble(ModelMetrics::costPerRun)).orElseThrow());
+            logger.info("Probing {} which currently misses the SLO", probe.name());
+            ranked.addFirst(probe);
+            missing = missing.stream().filter(m -> byMetrics.get(m) != probe).toList();
+        }
+        missing.stream()
+                .sorted(Comparator.comparingDouble(ModelMetrics::p95Ms))
+                .forEach(m -> ranked.add(byMetrics.get(m)));
+        return ranked;
+    }
+
+    public void recordSuccess(Route route, Duration latency, ChatResponse response) {
+        Usage usage = response.getMetadata().getUsage();
+        if (usage != null && usage.getPromptTokens() != null && usage.getPromptTokens() > 0) {
+            observedTurns.incrementAndGet();
+            promptTokens.addAndGet(usage.getPromptTokens());
+            completionTokens.addAndGet(usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+        }
+        windows.get(route.name()).record(latency, true, route.model().cost(response));
+    }
+
+    public void recordFailure(Route route, Duration latency) {
+        windows.get(route.name()).record(latency, false, 0);
+    }
+
+    /**
+     * Live metrics of a route, or an optimistic estimate while it has fewer than {@code minSamples} turns.
+     */
+    public ModelMetrics metrics(Route route) {
+        RouteWindow window = windows.get(route.name());
+        if (window.size() >= minSamples) {
+            return window.toMetrics(route.name(), route.accuracy());
+        }
+        double estimatedCost = route.model().cost(averageTokens(promptTokens, DEFAULT_PROMPT_TOKENS),
+                averageTokens(completionTokens, DEFAULT_COMPLETION_TOKENS));
+        return new ModelMetrics(route.name(), 0, 0, 0, estimatedCost, route.accuracy(), 1.0);
+    }
+
+    private int averageTokens(AtomicLong total, int fallback) {
+        long turns = observedTurns.get();
+        return turns > 0 ? (int) (total.get() / turns) : fallback;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public void printReport() {
+        logger.info("\n=== ROUTER: {} ===", slo);
+        for (Route route : routes) {
+            ModelMetrics metrics = metrics(route);
+            String status = windows.get(route.name()).size() < minSamples ? "warming up"
+                    : slo.isMetBy(metrics) ? "meets SLO" : String.join(", ", slo.violations(metrics));
+            logger.info("  {} [{} turns] - {}", metrics, windows.get(route.name()).size(), status);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import org.jspecify.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.ai.ollama.api.OllamaChatOptions;
@@ -13,15 +16,23 @@ import org.springframework.ai.ollama.management.ModelManagementOptions;
 import org.springframework.ai.ollama.management.OllamaModelManager;
 import org.springframework.ai.ollama.management.PullModelStrategy;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
 import java.util.Set;
 
 public class OllamaDirectProvider extends LlmProvider {
     private static final Logger logger = LoggerFactory.getLogger(OllamaDirectProvider.class);
 
     private static final String DEFAULT_BASE_URL = "http://localhost:11434";
+    private static final int PULL_CONCURRENCY = 3;
+    private static final double DEFAULT_DISK_BUDGET_GB = 50.0;
 
     private static final List<String> TOOL_CALLING_MODELS = List.of(
 //            "qwen2.5:0.5b",
@@ -50,6 +61,9 @@ public class OllamaDirectProvider extends LlmProvider {
     private final Set<String> pulledModels = new HashSet<>();
     private final Set<String> preExistingModels = new HashSet<>();
     private final boolean cleanupModelsAfterTest;
+    private final Map<String, String> unavailableModels = new LinkedHashMap<>();
+    private final OllamaMetrics metrics;
+    private boolean prepared;
     private OllamaModelManager modelManager;
 
     public OllamaDirectProvider() {
@@ -65,6 +79,7 @@ public class OllamaDirectProvider extends LlmProvider {
         this.baseUrl = baseUrl;
         this.pullStrategy = pullStrategy;
         this.cleanupModelsAfterTest = cleanupModelsAfterTest;
+        this.metrics = new OllamaMetrics(baseUrl);
         logger.info("Initializing Ollama Direct Provider with base URL: {} (cleanup: {})",
                 baseUrl, cleanupModelsAfterTest);
 
@@ -73,9 +88,10 @@ public class OllamaDirectProvider extends LlmProvider {
             OllamaApi api = OllamaApi.builder().baseUrl(baseUrl).build();
             this.modelManager = new OllamaModelManager(api);
 
-            // Track which models already exist (so we don't delete them)
+            // Track which models already exist (so we don't delete them), with one listing for all models
+            Set<String> installed = OllamaModelProvisioner.listModels(api);
             for (String model : TOOL_CALLING_MODELS) {
-                if (modelManager.isModelAvailable(model)) {
+                if (installed.contains(OllamaModelProvisioner.normalize(model))) {
                     preExistingModels.add(model);
                     logger.debug("Model {} already exists, will not delete after test", model);
                 }
@@ -103,10 +119,39 @@ public class OllamaDirectProvider extends LlmProvider {
         }
     }
 
+    /**
+     * Pulls every missing model up front, within the free space of the local model directory
+     * ({@code OLLAMA_MODELS}, or {@code ~/.ollama/models}). A pre-seeded directory needs no pulls at all.
+     */
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        logger.info("Creating Ollama chat client for model: {}", model);
+    public void prepare() {
+        if (prepared || pullStrategy == PullModelStrategy.NEVER) {
+            return;
+        }
+        OllamaApi api = OllamaApi.builder().baseUrl(baseUrl).build();
+        double diskBudgetGb = OllamaModelProvisioner.diskBudgetGb(DEFAULT_DISK_BUDGET_GB, localModelDirectory());
+        var result = new OllamaModelProvisioner(api, PULL_CONCURRENCY, diskBudgetGb).provision(TOOL_CALLING_MODELS);
+        pulledModels.addAll(result.pulled().keySet());
+        unavailableModels.putAll(result.skipped());
+        prepared = true;
+    }
 
+    private static @Nullable Path localModelDirectory() {
+        String configured = System.getenv("OLLAMA_MODELS");
+        Path directory = configured != null ? Path.of(configured)
+                : Path.of(System.getProperty("user.home"), ".ollama", "models");
+        return Files.isDirectory(directory) ? directory : null;
+    }
+
+    @Override
+    public List<String> getSupportedModels() {
+        return TOOL_CALLING_MODELS.stream()
+                .filter(model -> !unavailableModels.containsKey(model))
+                .toList();
+    }
+
+    @Override
+    public ChatModel createChatModel(String model) {
         // Track if we need to pull this model
         boolean modelExistedBefore = preExistingModels.contains(model);
 
@@ -117,7 +162,7 @@ public class OllamaDirectProvider extends LlmProvider {
 
         // Configure model management for auto-pulling models
         ModelManagementOptions modelManagementOptions = ModelManagementOptions.builder()
-                .pullModelStrategy(pullStrategy)
+                .pullModelStrategy(prepared ? PullModelStrategy.NEVER : pullStrategy)
                 .timeout(Duration.ofMinutes(2))  // 2 minutes timeout for pulling models
                 .maxRetries(2)
                 .build();
@@ -127,6 +172,7 @@ public class OllamaDirectProvider extends LlmProvider {
                 .model(model)
                 .temperature(0.1)  // Low temperature for consistent results
                 .numPredict(2048)  // Max tokens to generate
+                .keepAlive(OllamaWarmUp.KEEP_ALIVE)  // Stay loaded between runs
                 .build();
 
         // Build the OllamaChatModel
@@ -134,13 +180,21 @@ public class OllamaDirectProvider extends LlmProvider {
                 .ollamaApi(ollamaApi)
                 .defaultOptions(chatOptions)
                 .modelManagementOptions(modelManagementOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
 
-        // Track if model was pulled (only if it didn't exist before)
-        if (!modelExistedBefore && modelManager != null && modelManager.isModelAvailable(model)) {
+        // Track if model was pulled (only if it didn't exist before and was not provisioned)
+        if (!prepared && !modelExistedBefore && modelManager != null && modelManager.isModelAvailable(model)) {
             pulledModels.add(model);
             logger.info("Model {} was pulled during test, will be cleaned up", model);
         }
+        return chatModel;
+    }
+
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        logger.info("Creating Ollama chat client for model: {}", model);
+        ChatModel chatModel = createChatModel(model);
 
         // Create chat memory for multi-turn conversations
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
@@ -149,12 +203,12 @@ public class OllamaDirectProvider extends LlmProvider {
 
         // Build the ChatClient with advisors
         ChatClient.Builder builder = ChatClient.builder(chatModel)
-                .defaultAdvisors(
+                .defaultAdvisors(timed(
                         MessageChatMemoryAdvisor.builder(chatMemory)
                                 .conversationId("test-" + System.currentTimeMillis())
                                 .build(),
                         new SimpleLoggerAdvisor()
-                );
+                ));
 
         // Add system prompt if provided
         if (scenario.getSystemPrompt() != null && !scenario.getSystemPrompt().isEmpty()) {
@@ -164,6 +218,19 @@ public class OllamaDirectProvider extends LlmProvider {
         return builder.build();
     }
 
+    @Override
+    public Duration warmUp(String model) {
+        if (!prepared && modelManager != null) {
+            modelManager.pullModel(model, pullStrategy);
+        }
+        return OllamaWarmUp.load(OllamaApi.builder().baseUrl(baseUrl).build(), model);
+    }
+
+    @Override
+    public void recordRunMetrics(String model, TestRun run, List<ChatResponse> turns) {
+        metrics.record(model, run, turns);
+    }
+
     @Override
     public String getFullModelName(String model) {
         return "ollama-direct/" + model.replace(":", "-");
@@ -172,12 +239,13 @@ public class OllamaDirectProvider extends LlmProvider {
     @Override
     public LlmPricing.ModelPricing getPricing(String model) {
         // Ollama runs locally, so no API costs
-        // Only consideration is compute resources
+        // Only consideration is compute resources: measured generation speed once a run has reported it
+        OptionalDouble measured = metrics.evalTokensPerSecond(model);
         return new LlmPricing.ModelPricing(
                 0.0,   // No input cost
                 0.0,   // No output cost
                 true,  // Supports tool calling (for models in our list)
-                estimateTokensPerSecond(model)
+                measured.isPresent() ? (int) Math.round(measured.getAsDouble()) : estimateTokensPerSecond(model)
         );
     }
 
@@ -232,20 +300,12 @@ public class OllamaDirectProvider extends LlmProvider {
     }
 
     /**
-     * Get the size of a model in GB (approximate).
+     * Get the size of a model in GB as reported by Ollama, or estimated from its name if it is not pulled.
      * Useful for understanding disk space requirements.
      */
     public double getModelSizeGB(String model) {
-        // Rough estimates based on model name
-        if (model.contains("0.5b")) return 0.3;
-        if (model.contains("1b")) return 0.65;
-        if (model.contains("1.5b")) return 1.0;
-        if (model.contains("3b")) return 2.0;
-        if (model.contains("7b")) return 4.5;
-        if (model.contains("8b")) return 5.0;
-        if (model.contains("35b")) return 20.0;
-        if (model.contains("70b")) return 40.0;
-        return 3.0; // Default estimate
+        OptionalLong bytes = metrics.diskSize(model);
+        return bytes.isPresent() ? bytes.getAsLong() / 1e9 : OllamaModelProvisioner.estimateSizeGB(model);
     }
 
     /**
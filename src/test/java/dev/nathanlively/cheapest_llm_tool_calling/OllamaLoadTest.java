@@ -0,0 +1,135 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sizes an on-prem box: how does one local model hold up when several console operators use it at once?
+ * Sweeps the number of concurrent conversations against the server's {@code OLLAMA_NUM_PARALLEL}.
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+public class OllamaLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaLoadTest.class);
+    private static final String MODEL = "llama3.2:3b";
+    private static final int[] NUM_PARALLEL = {1, 2, 4};
+    private static final int[] CONCURRENT_OPERATORS = {1, 2, 4, 8};
+    private static final int CONVERSATIONS_PER_OPERATOR = 3;
+    private static final int REQUEST_THREADS = 2;
+    private static final int TIMEOUT_SECONDS = 60 * 20;
+
+    private static final String MIXING_CONSOLE_SYSTEM_PROMPT = """
+            - API uses 0-based indexing (ch.0, ch.1, ch.2...)
+            - Humans use 1-based indexing (Channel 1, Channel 2, Channel 3...)
+            - You must translate human/user requests from 1-based to 0-based.
+            
+            Examples: Human "Channel 1" → API ch.0 | Human "Channels 1-4" → API ch.0-ch.3""";
+
+    @AfterAll
+    static void tearDown() {
+        OllamaTestContainerProvider.cleanup();
+    }
+
+    @Test
+    void concurrentOperatorsSweep() {
+        List<String> rows = new ArrayList<>();
+        List<ConcurrentLoadRunner.LoadResult> sweep = new ArrayList<>();
+
+        for (int numParallel : NUM_PARALLEL) {
+            var provider = new OllamaTestContainerProvider(numParallel);
+            provider.prepare();
+            logger.info("OLLAMA_NUM_PARALLEL={} cold start: {}ms", numParallel, provider.warmUp(MODEL).toMillis());
+            var runner = new ConcurrentLoadRunner(provider, MODEL, TIMEOUT_SECONDS);
+
+            for (int operators : CONCURRENT_OPERATORS) {
+                var result = runner.run(operators, CONVERSATIONS_PER_OPERATOR, this::createRenamingScenario);
+                sweep.add(result);
+                rows.add(String.valueOf(numParallel));
+            }
+        }
+
+        logger.info("\n=== LOAD TEST: {} ===", MODEL);
+        ConcurrentLoadRunner.printHeader();
+        for (int i = 0; i < sweep.size(); i++) {
+            sweep.get(i).printRow(rows.get(i));
+        }
+
+        assertThat(sweep.getFirst().conversations().getSuccessRate()).isGreaterThan(0);
+    }
+
+    @Test
+    void blockingVersusNonBlockingTools() {
+        int operators = CONCURRENT_OPERATORS[CONCURRENT_OPERATORS.length - 1];
+        var provider = new OllamaTestContainerProvider(NUM_PARALLEL[NUM_PARALLEL.length - 1]);
+        provider.prepare();
+        provider.warmUp(MODEL);
+        // A response's async tool calls are awaited together; plain tools are unaffected
+        var runner = new ConcurrentLoadRunner(provider.withAsyncToolResults(), MODEL, TIMEOUT_SECONDS);
+        SimulatedConsoleTransport transport = new SimulatedConsoleTransport(Duration.ofMillis(500));
+        Supplier<TestScenario> asyncScenarios = () -> {
+            AsyncMixingConsoleService console = new AsyncMixingConsoleService(transport);
+            return createRenamingScenario(console, console::getCapturedApiCalls);
+        };
+
+        // Each pair differs only in the console. The model call holds its request thread in every arm, so on the
+        // fixed pool the async console can only give back the time spent waiting on the console
+        var fixedPool = runner.withRequestThreads(REQUEST_THREADS);
+        var blocking = fixedPool.run(operators, CONVERSATIONS_PER_OPERATOR, this::createRenamingScenario);
+        var nonBlocking = fixedPool.run(operators, CONVERSATIONS_PER_OPERATOR, asyncScenarios);
+        var virtualThreads = runner.withVirtualThreads();
+        var blockingVirtual = virtualThreads.run(operators, CONVERSATIONS_PER_OPERATOR, this::createRenamingScenario);
+        var nonBlockingVirtual = virtualThreads.run(operators, CONVERSATIONS_PER_OPERATOR, asyncScenarios);
+
+        logger.info("\n=== BLOCKING VS NON-BLOCKING TOOLS: {} ({} operators) ===", MODEL, operators);
+        ConcurrentLoadRunner.printHeader();
+        blocking.printRow("blocking/" + REQUEST_THREADS);
+        nonBlocking.printRow("async/" + REQUEST_THREADS);
+        blockingVirtual.printRow("blocking/vt");
+        nonBlockingVirtual.printRow("async/vt");
+        logger.info("Console requests in flight at once: {}", transport.getMaxInFlight());
+        logger.info("On {} request threads the async console changes conversations/min by {}%; compare with the "
+                    + "virtual-thread rows for how much of the gap is the pool size",
+                REQUEST_THREADS, String.format("%+.0f", 100 * (nonBlocking.conversationsPerMinute()
+                                                               / blocking.conversationsPerMinute() - 1)));
+
+        assertThat(nonBlocking.conversations().getSuccessRate()).isGreaterThan(0);
+        assertThat(nonBlockingVirtual.conversations().getSuccessRate()).isGreaterThan(0);
+    }
+
+    /**
+     * A fresh console per conversation, so concurrent operators do not see each other's writes.
+     */
+    private TestScenario createRenamingScenario() {
+        MockMixingConsoleService console = new MockMixingConsoleService();
+        return createRenamingScenario(console, console::getCapturedApiCalls);
+    }
+
+    private TestScenario createRenamingScenario(Object console, Supplier<List<ApiCall>> capturedApiCalls) {
+        return new TestScenario.Builder()
+                .name("Concurrent Channel Renaming")
+                .prompts(
+                        "Rename channel 1 to Kick and channel 2 to Snare",
+                        "Now change the first channel you renamed to Kick-In"
+                )
+                .validation(() -> {
+                    List<ApiCall> calls = capturedApiCalls.get();
+                    double score = 0;
+                    if (calls.contains(new ApiCall("ch.0.cfg.name", "Kick"))) score += 1;
+                    if (calls.contains(new ApiCall("ch.1.cfg.name", "Snare"))) score += 1;
+                    if (calls.contains(new ApiCall("ch.0.cfg.name", "Kick-In"))) score += 1;
+                    return score / 3;
+                })
+                .toolService(console)
+                .systemPrompt(MIXING_CONSOLE_SYSTEM_PROMPT)
+                .build();
+    }
+}
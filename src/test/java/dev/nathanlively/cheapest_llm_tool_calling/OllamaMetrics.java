@@ -0,0 +1,161 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures what the Ollama providers used to guess from model names: on-disk size ({@code /api/tags}), resident
+ * memory while loaded ({@code /api/ps}), and prompt-eval/eval throughput and load time from the timing fields
+ * Ollama returns with every response.
+ */
+final class OllamaMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaMetrics.class);
+
+    // Keys under which OllamaChatModel copies Ollama's timing fields into the response metadata, summed over
+    // the tool-calling round trips of one turn
+    private static final String PROMPT_EVAL_COUNT = "prompt-eval-count";
+    private static final String PROMPT_EVAL_DURATION = "prompt-eval-duration";
+    private static final String EVAL_COUNT = "eval-count";
+    private static final String EVAL_DURATION = "eval-duration";
+    private static final String LOAD_DURATION = "load-duration";
+    private static final String TOTAL_DURATION = "total-duration";
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record RunningModels(@Nullable List<RunningModel> models) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record RunningModel(String name, long size, @JsonProperty("size_vram") long sizeVram) {
+    }
+
+    private final OllamaApi ollamaApi;
+    private final RestClient restClient;
+    private final Map<String, Long> diskSizes = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSummaryStatistics> evalRates = new ConcurrentHashMap<>();
+
+    OllamaMetrics(String baseUrl) {
+        this.ollamaApi = OllamaApi.builder().baseUrl(baseUrl).build();
+        this.restClient = RestClient.builder().baseUrl(baseUrl).build();
+    }
+
+    void record(String model, TestRun run, List<ChatResponse> turns) {
+        long promptEvalCount = 0;
+        long evalCount = 0;
+        Duration promptEval = Duration.ZERO;
+        Duration eval = Duration.ZERO;
+        Duration load = Duration.ZERO;
+        Duration total = Duration.ZERO;
+        for (ChatResponse turn : turns) {
+            ChatResponseMetadata metadata = turn.getMetadata();
+            promptEvalCount += count(metadata, PROMPT_EVAL_COUNT);
+            evalCount += count(metadata, EVAL_COUNT);
+            promptEval = promptEval.plus(duration(metadata, PROMPT_EVAL_DURATION));
+            eval = eval.plus(duration(metadata, EVAL_DURATION));
+            load = load.plus(duration(metadata, LOAD_DURATION));
+            total = total.plus(duration(metadata, TOTAL_DURATION));
+        }
+
+        run.promptEvalTokensPerSecond = rate(promptEvalCount, promptEval);
+        run.evalTokensPerSecond = rate(evalCount, eval);
+        run.loadDurationMs = load.toMillis();
+        run.serverTotalMs = total.toMillis();
+        run.promptEvalMs = promptEval.toMillis();
+        run.evalMs = eval.toMillis();
+        run.diskSizeBytes = diskSize(model).orElse(0);
+        loadedModel(model).ifPresent(loaded -> {
+            run.residentMemoryBytes = loaded.size();
+            run.vramBytes = loaded.sizeVram();
+        });
+        if (run.evalTokensPerSecond > 0) {
+            DoubleSummaryStatistics stats = evalRates.computeIfAbsent(model, m -> new DoubleSummaryStatistics());
+            synchronized (stats) {
+                stats.accept(run.evalTokensPerSecond);
+            }
+        }
+    }
+
+    /** Average generation speed over the runs measured so far. */
+    OptionalDouble evalTokensPerSecond(String model) {
+        DoubleSummaryStatistics stats = evalRates.get(model);
+        if (stats == null) {
+            return OptionalDouble.empty();
+        }
+        synchronized (stats) {
+            return OptionalDouble.of(stats.getAverage());
+        }
+    }
+
+    OptionalLong diskSize(String model) {
+        Long cached = diskSizes.get(model);
+        if (cached != null) {
+            return OptionalLong.of(cached);
+        }
+        try {
+            OllamaApi.ListModelResponse response = ollamaApi.listModels();
+            if (response.models() != null) {
+                response.models().forEach(m -> {
+                    if (m.size() != null) {
+                        diskSizes.put(m.name(), m.size());
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("Cannot list Ollama models: {}", e.getMessage());
+        }
+        Long size = diskSizes.get(model);
+        if (size == null) {
+            size = diskSizes.get(OllamaModelProvisioner.normalize(model));
+        }
+        return size != null ? OptionalLong.of(size) : OptionalLong.empty();
+    }
+
+    /**
+     * The loaded model's memory, RAM and VRAM together as {@code size} and the part in VRAM as
+     * {@code sizeVram}, or empty if it is not loaded.
+     */
+    Optional<RunningModel> loadedModel(String model) {
+        try {
+            RunningModels running = restClient.get().uri("/api/ps").retrieve().body(RunningModels.class);
+            if (running == null || running.models() == null) {
+                return Optional.empty();
+            }
+            String name = OllamaModelProvisioner.normalize(model);
+            return running.models().stream()
+                    .filter(m -> m.name().equals(name))
+                    .findFirst();
+        } catch (Exception e) {
+            logger.warn("Cannot read loaded models from /api/ps: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static long count(ChatResponseMetadata metadata, String key) {
+        Object value = metadata.get(key);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    private static Duration duration(ChatResponseMetadata metadata, String key) {
+        Object value = metadata.get(key);
+        return value instanceof Duration duration ? duration : Duration.ZERO;
+    }
+
+    private static double rate(long tokens, Duration duration) {
+        return duration.isPositive() ? tokens / (duration.toNanos() / 1e9) : 0;
+    }
+}
@@ -0,0 +1,215 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.ollama.api.OllamaApi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provisioning stage that runs before any benchmark clock starts: asks Ollama once which models it already
+ * has, checks that the missing ones fit the disk budget, and pulls them concurrently with progress reports.
+ * <p>
+ * Ollama keeps the blobs of an interrupted pull and skips them when the same pull is requested again, so a
+ * failed pull is simply retried and resumes where it stopped.
+ */
+public class OllamaModelProvisioner {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaModelProvisioner.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final double BYTES_PER_GB = 1024.0 * 1024 * 1024;
+
+    private final OllamaApi ollamaApi;
+    private final int concurrency;
+    private final double diskBudgetGb;
+
+    /**
+     * @param diskBudgetGb how much the missing models may add to disk, estimated with {@link #estimateSizeGB}
+     */
+    public OllamaModelProvisioner(OllamaApi ollamaApi, int concurrency, double diskBudgetGb) {
+        this.ollamaApi = ollamaApi;
+        this.concurrency = concurrency;
+        this.diskBudgetGb = diskBudgetGb;
+    }
+
+    /**
+     * The tighter of {@code configuredGb} and the free space of a local model directory, e.g. a pre-seeded
+     * directory bound into the container.
+     */
+    public static double diskBudgetGb(double configuredGb, @Nullable Path modelDirectory) {
+        if (modelDirectory == null) {
+            return configuredGb;
+        }
+        try {
+            return Math.min(configuredGb, Files.getFileStore(modelDirectory).getUsableSpace() / BYTES_PER_GB);
+        } catch (IOException e) {
+            logger.warn("Cannot read free space of {}: {}", modelDirectory, e.getMessage());
+            return configuredGb;
+        }
+    }
+
+    /**
+     * @param present models Ollama already had
+     * @param pulled  models pulled by this stage, with how long each took
+     * @param skipped models not made available, with the reason
+     */
+    public record Result(Set<String> present, Map<String, Duration> pulled, Map<String, String> skipped) {
+
+        public Set<String> ready() {
+            Set<String> ready = new LinkedHashSet<>(present);
+            ready.addAll(pulled.keySet());
+            return ready;
+        }
+    }
+
+    public Result provision(List<String> models) {
+        Set<String> present = listModels(ollamaApi);
+        Map<String, String> skipped = new LinkedHashMap<>();
+        List<String> toPull = new ArrayList<>();
+        double plannedGb = 0;
+
+        for (String model : models) {
+            if (present.contains(normalize(model))) {
+                continue;
+            }
+            double sizeGb = estimateSizeGB(model);
+            if (plannedGb + sizeGb > diskBudgetGb) {
+                skipped.put(model, String.format("needs ~%.1fGB, only %.1fGB of the %.1fGB disk budget left",
+                        sizeGb, diskBudgetGb - plannedGb, diskBudgetGb));
+                continue;
+            }
+            plannedGb += sizeGb;
+            toPull.add(model);
+        }
+
+        Set<String> alreadyPresent = new LinkedHashSet<>(models);
+        alreadyPresent.removeIf(model -> !present.contains(normalize(model)));
+        logger.info("Provisioning {} models: {} present, {} to pull (~{}GB), {} over budget",
+                models.size(), alreadyPresent.size(), toPull.size(), String.format("%.1f", plannedGb), skipped.size());
+        skipped.forEach((model, reason) -> logger.warn("Skipping {}: {}", model, reason));
+
+        Map<String, Duration> pulled = new ConcurrentHashMap<>();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String model : toPull) {
+                futures.add(executor.submit(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        pullWithResume(model);
+                        pulled.put(model, Duration.ofNanos(System.nanoTime() - start));
+                        logger.info("Provisioned {} ({}/{} models done)", model, done.incrementAndGet(),
+                                toPull.size());
+                    } catch (RuntimeException e) {
+                        failed.put(model, "pull failed: " + e.getMessage());
+                        logger.warn("Failed to provision {} ({}/{} models done): {}", model, done.incrementAndGet(),
+                                toPull.size(), e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while pulling models", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Model provisioning failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        skipped.putAll(failed);
+        Map<String, Duration> pulledInOrder = new LinkedHashMap<>();
+        toPull.stream().filter(pulled::containsKey).forEach(model -> pulledInOrder.put(model, pulled.get(model)));
+        return new Result(alreadyPresent, pulledInOrder, skipped);
+    }
+
+    private void pullWithResume(String model) {
+        RuntimeException lastError = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                pull(model);
+                return;
+            } catch (RuntimeException e) {
+                lastError = e;
+                logger.warn("Pull of {} interrupted (attempt {}/{}): {}", model, attempt, MAX_ATTEMPTS, e.getMessage());
+                try {
+                    Thread.sleep(Duration.ofSeconds(2L * attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    private void pull(String model) {
+        AtomicInteger lastReportedDecile = new AtomicInteger(-1);
+        ollamaApi.pullModel(new OllamaApi.PullModelRequest(model))
+                .doOnNext(progress -> {
+                    if (progress.total() == null || progress.completed() == null || progress.total() == 0) {
+                        return;
+                    }
+                    int decile = (int) (progress.completed() * 10 / progress.total());
+                    if (decile > lastReportedDecile.getAndSet(decile)) {
+                        logger.info("  {} {}% ({}MB)", model, decile * 10, progress.total() / (1024 * 1024));
+                    }
+                })
+                .blockLast();
+    }
+
+    /**
+     * Names of the models Ollama already has, in one request.
+     */
+    static Set<String> listModels(OllamaApi ollamaApi) {
+        Set<String> names = new LinkedHashSet<>();
+        OllamaApi.ListModelResponse response = ollamaApi.listModels();
+        if (response.models() != null) {
+            response.models().forEach(model -> names.add(normalize(model.name())));
+        }
+        return names;
+    }
+
+    // Ollama lists "llama3.2:3b" but "mistral" as "mistral:latest"
+    static String normalize(String model) {
+        return model.contains(":") ? model : model + ":latest";
+    }
+
+    /**
+     * Approximate download size of a model in GB, from its parameter count.
+     */
+    public static double estimateSizeGB(String model) {
+        if (model.contains("0.5b")) return 0.3;
+        if (model.contains("0.6b")) return 0.5;
+        if (model.contains("1.5b")) return 1.0;
+        if (model.contains("1.7b")) return 1.4;
+        if (model.contains("1b")) return 0.65;
+        if (model.contains("3.8b")) return 2.5;
+        if (model.contains("3b")) return 2.0;
+        if (model.contains("4b")) return 2.6;
+        if (model.contains("10.7b")) return 6.1;
+        if (model.contains("7b")) return 4.5;
+        if (model.contains("8b")) return 5.0;
+        if (model.contains("35b")) return 20.0;
+        if (model.contains("70b")) return 40.0;
+        return 3.0; // Default estimate
+    }
+}
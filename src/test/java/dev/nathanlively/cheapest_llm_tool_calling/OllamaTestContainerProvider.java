@@ -7,20 +7,33 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.ollama.OllamaChatModel;
 import org.springframework.ai.ollama.api.OllamaApi;
 import org.springframework.ai.ollama.api.OllamaChatOptions;
 import org.springframework.ai.ollama.management.OllamaModelManager;
 import org.springframework.ai.ollama.management.PullModelStrategy;
+import org.testcontainers.containers.BindMode;
 import org.testcontainers.ollama.OllamaContainer;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class OllamaTestContainerProvider extends LlmProvider {
     private static final Logger logger = LoggerFactory.getLogger(OllamaTestContainerProvider.class);
     private static final String OLLAMA_IMAGE = "ollama/ollama";
+    private static final String CONTAINER_MODELS_DIR = "/root/.ollama/models";
+    private static final int PULL_CONCURRENCY = 3;
+    private static final double DEFAULT_DISK_BUDGET_GB = 100.0;
 
     // Models to test - ordered from smallest to largest
     private static final List<String> OLLAMA_MODELS = new ArrayList<>(List.of(
@@ -53,9 +66,27 @@ public class OllamaTestContainerProvider extends LlmProvider {
     private static OllamaApi ollamaApi;
     @Nullable
     private static OllamaModelManager modelManager;
+    @Nullable
+    private static OllamaMetrics metrics;
+
+    private static int containerNumParallel;
+    // Models provisioned into the running container, and those that could not be
+    private static final Set<String> readyModels = ConcurrentHashMap.newKeySet();
+    private static final Map<String, String> unavailableModels = new ConcurrentHashMap<>();
+
+    private final int numParallel;
 
     public OllamaTestContainerProvider() {
+        this(1);
+    }
+
+    /**
+     * @param numParallel {@code OLLAMA_NUM_PARALLEL}, how many requests the server processes at once. A running
+     *                    container with a different setting is replaced.
+     */
+    public OllamaTestContainerProvider(int numParallel) {
         super("Ollama", "OLLAMA_LOCAL", OLLAMA_MODELS);
+        this.numParallel = numParallel;
     }
 
     @Override
@@ -64,55 +95,145 @@ public class OllamaTestContainerProvider extends LlmProvider {
     }
 
     private void ensureContainerStarted() {
+        synchronized (OllamaTestContainerProvider.class) {
+            startContainer();
+        }
+    }
+
+    private void startContainer() {
+        if (container != null && containerNumParallel != numParallel) {
+            logger.info("Restarting Ollama container with OLLAMA_NUM_PARALLEL={}", numParallel);
+            cleanup();
+        }
         if (container == null) {
             logger.info("Starting Ollama container...");
             container = new OllamaContainer(OLLAMA_IMAGE);
-            container.withEnv("OLLAMA_NUM_PARALLEL", "1")      // Process one request at a time
+            container.withEnv("OLLAMA_NUM_PARALLEL", String.valueOf(numParallel)) // Requests processed at once
                     .withEnv("OLLAMA_MAX_LOADED_MODELS", "1") // Keep only one model in memory
-                    .withEnv("OLLAMA_MODELS", "/root/.ollama/models") // Ensure models persist
+                    .withEnv("OLLAMA_KEEP_ALIVE", OllamaWarmUp.KEEP_ALIVE) // Sweep is model-major, see runBenchmarks
+                    .withEnv("OLLAMA_MODELS", CONTAINER_MODELS_DIR) // Ensure models persist
                     .withReuse(true);
+            Path seededModels = seededModelDirectory();
+            if (seededModels != null) {
+                logger.info("Using pre-seeded models from {}", seededModels);
+                container.withFileSystemBind(seededModels.toString(), CONTAINER_MODELS_DIR, BindMode.READ_WRITE);
+            }
             container.start();
+            containerNumParallel = numParallel;
 
             String baseUrl = container.getEndpoint();
             ollamaApi = OllamaApi.builder().baseUrl(baseUrl).build();
             modelManager = new OllamaModelManager(ollamaApi);
+            metrics = new OllamaMetrics(baseUrl);
 
             logger.info("Ollama container started at: {}", baseUrl);
         }
     }
 
+    /**
+     * Host directory from {@code OLLAMA_MODELS_DIR} to mount as the container's model store, so models pulled
+     * once survive container restarts.
+     */
+    private static @Nullable Path seededModelDirectory() {
+        String configured = System.getenv("OLLAMA_MODELS_DIR");
+        return configured != null && Files.isDirectory(Path.of(configured)) ? Path.of(configured) : null;
+    }
+
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
+    public void prepare() {
         ensureContainerStarted();
+        List<String> missing = OLLAMA_MODELS.stream().filter(model -> !readyModels.contains(model)).toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        double diskBudgetGb = OllamaModelProvisioner.diskBudgetGb(DEFAULT_DISK_BUDGET_GB, seededModelDirectory());
+        var result = new OllamaModelProvisioner(Objects.requireNonNull(ollamaApi), PULL_CONCURRENCY, diskBudgetGb)
+                .provision(missing);
+        readyModels.addAll(result.ready());
+        unavailableModels.putAll(result.skipped());
+    }
+
+    @Override
+    public List<String> getSupportedModels() {
+        return OLLAMA_MODELS.stream()
+                .filter(model -> !unavailableModels.containsKey(model))
+                .toList();
+    }
+
+    private void ensureModel(String model) {
+        if (!readyModels.contains(model)) {
+            logger.warn("Model {} was not provisioned, pulling it now", model);
+            Objects.requireNonNull(modelManager).pullModel(model, PullModelStrategy.WHEN_MISSING);
+            readyModels.add(model);
+        }
+    }
 
-        logger.info("Ensuring model {} is available...", model);
-        Objects.requireNonNull(modelManager).pullModel(model, PullModelStrategy.WHEN_MISSING);
+    @Override
+    public ChatModel createChatModel(String model) {
+        ensureContainerStarted();
+        ensureModel(model);
 
         OllamaChatOptions chatOptions = OllamaChatOptions.builder()
                 .model(model)
                 .temperature(0.1)
                 .numPredict(2048)    // Allow longer responses
                 .numCtx(4096)        // Larger context window
+                .keepAlive(OllamaWarmUp.KEEP_ALIVE)
                 .build();
-        OllamaChatModel chatModel = OllamaChatModel.builder()
+        return OllamaChatModel.builder()
                 .ollamaApi(ollamaApi)
                 .defaultOptions(chatOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
+
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        ChatModel chatModel = createChatModel(model);
 
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
                 .maxMessages(10)
                 .build();
 
         return ChatClient.builder(chatModel)
-                .defaultAdvisors(
+                .defaultAdvisors(timed(
                         MessageChatMemoryAdvisor.builder(chatMemory)
                                 .conversationId("test-" + System.currentTimeMillis())
                                 .build(),
                         new SimpleLoggerAdvisor()
-                )
+                ))
                 .build();
     }
 
+    @Override
+    public Duration warmUp(String model) {
+        ensureContainerStarted();
+        ensureModel(model);
+        return OllamaWarmUp.load(Objects.requireNonNull(ollamaApi), model);
+    }
+
+    @Override
+    public void recordRunMetrics(String model, TestRun run, List<ChatResponse> turns) {
+        if (metrics != null) {
+            metrics.record(model, run, turns);
+        }
+    }
+
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model) {
+        LlmPricing.ModelPricing pricing = super.getPricing(model);
+        OptionalDouble measured = metrics != null ? metrics.evalTokensPerSecond(model) : OptionalDouble.empty();
+        if (measured.isEmpty()) {
+            return pricing;
+        }
+        return new LlmPricing.ModelPricing(pricing.inputPricePerMillion(), pricing.outputPricePerMillion(),
+                pricing.supportsToolCalling(), (int) Math.round(measured.getAsDouble()));
+    }
+
+    public int getNumParallel() {
+        return numParallel;
+    }
+
     public static void cleanup() {
         if (container != null && container.isRunning()) {
             logger.info("Stopping Ollama container...");
@@ -120,6 +241,9 @@ public class OllamaTestContainerProvider extends LlmProvider {
             container = null;
             ollamaApi = null;
             modelManager = null;
+            metrics = null;
+            readyModels.clear();
+            unavailableModels.clear();
         }
     }
 
@@ -0,0 +1,39 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.ollama.api.OllamaApi;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Loads an Ollama model into memory before it is benchmarked, so that load time is measured on its own
+ * instead of inflating the first run.
+ */
+final class OllamaWarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaWarmUp.class);
+
+    /** Long enough to cover every scenario of a model without Ollama unloading it between runs. */
+    static final String KEEP_ALIVE = "30m";
+
+    private OllamaWarmUp() {
+    }
+
+    /**
+     * A chat request without messages makes Ollama load the model and return. Returns the wall-clock time
+     * of that request, which is what the first user of a cold model waits.
+     */
+    static Duration load(OllamaApi ollamaApi, String model) {
+        long start = System.nanoTime();
+        OllamaApi.ChatResponse response = ollamaApi.chat(new OllamaApi.ChatRequest.Builder(model)
+                .messages(List.of())
+                .keepAlive(KEEP_ALIVE)
+                .build());
+        Duration coldStart = Duration.ofNanos(System.nanoTime() - start);
+        Duration loadDuration = response.loadDuration() != null ? response.getLoadDuration() : Duration.ZERO;
+        logger.info("Warmed up {} in {}ms (Ollama load: {}ms), keep-alive {}",
+                model, coldStart.toMillis(), loadDuration.toMillis(), KEEP_ALIVE);
+        return coldStart;
+    }
+}
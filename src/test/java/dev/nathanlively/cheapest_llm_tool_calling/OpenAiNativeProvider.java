@@ -4,6 +4,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
@@ -20,27 +21,29 @@ public class OpenAiNativeProvider extends LlmProvider {
     }
 
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        String apiKey = System.getenv(apiKeyEnvVar);
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
-        }
-
-        OpenAiApi openAiApi = OpenAiApi.builder().apiKey(apiKey).build();
+    public ChatModel createChatModel(String model) {
+        OpenAiApi openAiApi = OpenAiApi.builder()
+                .apiKey(requireApiKey())
+                .restClientBuilder(rateLimits.restClientBuilder())
+                .build();
         OpenAiChatOptions chatOptions = OpenAiChatOptions.builder()
-                .model(fourOmini)
+                .model(model)
                 .temperature(0.1)
                 .build();
 
-        OpenAiChatModel chatModel = OpenAiChatModel.builder()
+        return OpenAiChatModel.builder()
                 .openAiApi(openAiApi)
                 .defaultOptions(chatOptions)
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
 
-        ChatClient.Builder builder = ChatClient.builder(chatModel);
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        ChatClient.Builder builder = ChatClient.builder(createChatModel(model));
 
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder().build();
-        builder.defaultAdvisors(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor());
+        builder.defaultAdvisors(timed(MessageChatMemoryAdvisor.builder(chatMemory).build(), new SimpleLoggerAdvisor()));
 
         return builder.build();
     }
@@ -6,6 +6,7 @@ import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.openai.api.OpenAiApi;
@@ -22,34 +23,35 @@ public abstract class OpenAiProxyProvider extends LlmProvider {
     }
 
     @Override
-    public ChatClient createChatClient(String model, TestScenario scenario) {
-        String apiKey = System.getenv(apiKeyEnvVar);
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("API key not found for " + name + ". Set environment variable: " + apiKeyEnvVar);
-        }
-
-        OpenAiChatModel chatModel = OpenAiChatModel.builder()
+    public ChatModel createChatModel(String model) {
+        return OpenAiChatModel.builder()
                 .openAiApi(OpenAiApi.builder()
                         .baseUrl(baseUrl)
-                        .apiKey(apiKey)
+                        .apiKey(requireApiKey())
+                        .restClientBuilder(rateLimits.restClientBuilder())
                         .build())
                 .defaultOptions(OpenAiChatOptions.builder()
                         .model(model)
                         .temperature(0.1)
                         .build())
+                .toolCallingManager(toolCallingManager)
                 .build();
+    }
 
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        ChatModel chatModel = createChatModel(model);
 
         log.info("Creating chat client with memory for {}/{}", name, model);
         MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
                 .maxMessages(10)
                 .build();
         ChatClient.Builder builder = ChatClient.builder(chatModel)
-                .defaultAdvisors(
+                .defaultAdvisors(timed(
                         MessageChatMemoryAdvisor.builder(chatMemory)
                                 .conversationId("test-" + System.currentTimeMillis())
                                 .build(),
-                        new SimpleLoggerAdvisor());
+                        new SimpleLoggerAdvisor()));
 
         return builder.build();
     }
@@ -0,0 +1,161 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the tool calls of one model response concurrently on virtual threads instead of one after another.
+ * Calls that touch the same console path run in the order the model emitted them, so writes to one parameter
+ * never reorder; calls without a path are ordered per tool, and calls whose arguments cannot be parsed act as
+ * a barrier. Tool responses are returned in emission order whatever order they finish in.
+ */
+public class ParallelToolCallingManager implements ToolCallingManager {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ToolCallingManager delegate = ToolCallingManager.builder().build();
+    private final ToolExecutionExceptionProcessor exceptionProcessor =
+            DefaultToolExecutionExceptionProcessor.builder().build();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+
+        Map<String, ToolCallback> callbacks = new HashMap<>();
+        Map<String, Object> toolContext = Map.of();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options) {
+            options.getToolCallbacks().forEach(callback -> callbacks.put(callback.getToolDefinition().name(), callback));
+            toolContext = options.getToolContext();
+        }
+        if (toolCalls.size() < 2 || !toolCalls.stream().allMatch(call -> callbacks.containsKey(call.name()))) {
+            // Nothing to overlap, or tools only the default resolver can find
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+
+        List<CompletableFuture<String>> results = schedule(toolCalls, callbacks, toolContext);
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            responses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), join(results.get(i))));
+        }
+
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        history.add(new ToolResponseMessage(responses, Map.of()));
+        boolean returnDirect = toolCalls.stream()
+                .allMatch(call -> callbacks.get(call.name()).getToolMetadata().returnDirect());
+        return ToolExecutionResult.builder()
+                .conversationHistory(history)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private List<CompletableFuture<String>> schedule(List<AssistantMessage.ToolCall> toolCalls,
+                                                     Map<String, ToolCallback> callbacks,
+                                                     Map<String, Object> toolContext) {
+        Map<String, CompletableFuture<String>> lastByKey = new HashMap<>();
+        List<CompletableFuture<String>> scheduled = new ArrayList<>();
+        CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            Set<String> keys = orderingKeys(toolCall);
+            List<CompletableFuture<?>> dependencies = new ArrayList<>();
+            dependencies.add(barrier);
+            if (keys == null) {
+                dependencies.addAll(scheduled);
+            } else {
+                keys.stream().map(lastByKey::get).filter(f -> f != null).forEach(dependencies::add);
+            }
+            ToolCallback callback = callbacks.get(toolCall.name());
+            CompletableFuture<String> result = CompletableFuture
+                    .allOf(dependencies.toArray(CompletableFuture[]::new))
+                    .thenApplyAsync(ignored -> call(callback, toolCall.arguments(), toolContext), executor);
+            if (keys == null) {
+                barrier = result;
+            } else {
+                keys.forEach(key -> lastByKey.put(key, result));
+            }
+            scheduled.add(result);
+        }
+        return scheduled;
+    }
+
+    /**
+     * The console paths a call touches, the tool name for calls without one, or {@code null} when the
+     * arguments cannot be read and the call must not overlap anything.
+     */
+    static @Nullable Set<String> orderingKeys(AssistantMessage.ToolCall toolCall) {
+        try {
+            Set<String> paths = new LinkedHashSet<>();
+            collectPaths(objectMapper.readTree(toolCall.arguments()), paths);
+            return paths.isEmpty() ? Set.of("tool:" + toolCall.name()) : paths;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static void collectPaths(JsonNode node, Set<String> paths) {
+        if (node.isObject() && node.has("path")) {
+            paths.add(node.get("path").asText());
+        }
+        node.forEach(child -> collectPaths(child, paths));
+    }
+
+    private String call(ToolCallback callback, String arguments, Map<String, Object> toolContext) {
+        try {
+            return toolContext.isEmpty()
+                    ? callback.call(arguments)
+                    : callback.call(arguments, new ToolContext(toolContext));
+        } catch (ToolExecutionException e) {
+            return exceptionProcessor.process(e);
+        }
+    }
+
+    private static String join(CompletableFuture<String> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelToolCallingManagerTest {
+
+    private static final long TOOL_MS = 200;
+
+    private final Console console = new Console();
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager();
+
+    @Test
+    void independentCallsOverlap() {
+        List<AssistantMessage.ToolCall> calls = IntStream.range(0, 4)
+                .mapToObj(i -> toolCall("call-" + i, "ch." + i + ".cfg.name", "Ch" + i))
+                .toList();
+        Prompt prompt = prompt();
+        // First call pays for argument conversion setup, which is not what is measured
+        manager.executeToolCalls(prompt, response(List.of(toolCall("warm-up", "ch.9.cfg.name", "Spare"))));
+        console.writes.clear();
+
+        long start = System.nanoTime();
+        manager.executeToolCalls(prompt, response(calls));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(console.writes).containsExactlyInAnyOrder(
+                "ch.0.cfg.name=Ch0", "ch.1.cfg.name=Ch1", "ch.2.cfg.name=Ch2", "ch.3.cfg.name=Ch3");
+        assertThat(elapsedMs).isLessThan(TOOL_MS * 2);
+    }
+
+    @Test
+    void writesToSamePathKeepTheirOrder() {
+        List<AssistantMessage.ToolCall> calls = List.of(
+                toolCall("call-0", "ch.0.cfg.name", "Kick"),
+                toolCall("call-1", "ch.1.cfg.name", "Snare"),
+                toolCall("call-2", "ch.0.cfg.name", "Kick In"));
+
+        manager.executeToolCalls(prompt(), response(calls));
+
+        List<String> channelOneWrites = console.writes.stream().filter(write -> write.startsWith("ch.0.")).toList();
+        assertThat(channelOneWrites).containsExactly("ch.0.cfg.name=Kick", "ch.0.cfg.name=Kick In");
+    }
+
+    @Test
+    void responsesFollowEmissionOrder() {
+        List<AssistantMessage.ToolCall> calls = List.of(
+                toolCall("call-0", "ch.0.cfg.name", "Kick"),
+                toolCall("call-1", "ch.1.cfg.name", "Snare"));
+
+        ToolExecutionResult result = manager.executeToolCalls(prompt(), response(calls));
+
+        List<Message> history = result.conversationHistory();
+        assertThat(history).hasSize(3);
+        ToolResponseMessage toolResponses = (ToolResponseMessage) history.getLast();
+        assertThat(toolResponses.getResponses().stream().map(ToolResponseMessage.ToolResponse::id).toList())
+                .containsExactly("call-0", "call-1");
+        assertThat(result.returnDirect()).isFalse();
+    }
+
+    private Prompt prompt() {
+        return new Prompt(List.<Message>of(new UserMessage("Name channels 1-4")),
+                ToolCallingChatOptions.builder().toolCallbacks(ToolCallbacks.from(console)).build());
+    }
+
+    private static ChatResponse response(List<AssistantMessage.ToolCall> calls) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), calls))));
+    }
+
+    private static AssistantMessage.ToolCall toolCall(String id, String path, String value) {
+        return new AssistantMessage.ToolCall(id, "function", "setSingleParameter",
+                "{\"apiCall\": {\"path\": \"" + path + "\", \"value\": \"" + value + "\"}}");
+    }
+
+    static class Console {
+        final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+        @Tool(description = "Set a mixer parameter")
+        public String setSingleParameter(ApiCall apiCall) throws InterruptedException {
+            // Stands in for a round trip to the console
+            Thread.sleep(TOOL_MS);
+            writes.add(apiCall.path() + "=" + apiCall.value());
+            return "SUCCESS";
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Ranks models without collapsing them into one weighted score. The Pareto frontier holds every model that no
+ * other model beats on all of p50, p95, cost, accuracy and reliability; the winner is the best model, by the
+ * SLO's objective, among those meeting every SLO constraint.
+ */
+public final class ParetoRanking {
+    private static final Logger logger = LoggerFactory.getLogger(ParetoRanking.class);
+
+    private ParetoRanking() {
+    }
+
+    public static Ranking rank(Collection<ModelMetrics> models, ServiceLevelObjective slo) {
+        List<ModelMetrics> frontier = models.stream()
+                .filter(candidate -> models.stream().noneMatch(other -> other.dominates(candidate)))
+                .sorted(slo.objective().comparator())
+                .toList();
+
+        List<ModelMetrics> eligible = models.stream()
+                .filter(slo::isMetBy)
+                .sorted(slo.objective().comparator())
+                .toList();
+
+        Map<String, List<String>> rejected = new LinkedHashMap<>();
+        models.stream()
+                .filter(m -> !slo.isMetBy(m))
+                .forEach(m -> rejected.put(m.model(), slo.violations(m)));
+
+        return new Ranking(slo, frontier, eligible, rejected);
+    }
+
+    public record Ranking(ServiceLevelObjective slo,
+                          List<ModelMetrics> frontier,
+                          List<ModelMetrics> eligible,
+                          Map<String, List<String>> rejected) {
+
+        public Optional<ModelMetrics> winner() {
+            return eligible.stream().findFirst();
+        }
+
+        public void printReport() {
+            logger.info("\nSLO: {}", slo);
+
+            winner().ifPresentOrElse(
+                    w -> logger.info("\n🏆 WINNER: {}", w),
+                    () -> logger.info("\n❌ NO WINNER: no model meets the SLO"));
+
+            if (!eligible.isEmpty()) {
+                logger.info("\nMeets SLO ({} order):", slo.objective().name().toLowerCase());
+                eligible.forEach(m -> logger.info("  {}{}", m, frontier.contains(m) ? "" : "  [dominated]"));
+            }
+
+            logger.info("\nPareto frontier (p50, p95, cost, accuracy, reliability):");
+            frontier.forEach(m -> logger.info("  {}", m));
+
+            if (!rejected.isEmpty()) {
+                logger.info("\n❌ Fails SLO:");
+                rejected.forEach((model, violations) ->
+                        logger.info("  {}: {}", model, String.join("; ", violations)));
+            }
+        }
+    }
+}
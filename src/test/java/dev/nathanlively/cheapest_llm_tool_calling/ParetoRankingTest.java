@@ -0,0 +1,88 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class ParetoRankingTest {
+
+    private static final ModelMetrics FAST_EXPENSIVE =
+            new ModelMetrics("fast-expensive", 1_000, 2_000, 2_500, 0.0010, 0.95, 1.0);
+    private static final ModelMetrics SLOW_CHEAP =
+            new ModelMetrics("slow-cheap", 4_000, 9_000, 12_000, 0.0001, 0.95, 1.0);
+    private static final ModelMetrics CHEAP_FAST =
+            new ModelMetrics("cheap-fast", 1_200, 2_800, 3_000, 0.0002, 0.92, 1.0);
+    private static final ModelMetrics DOMINATED =
+            new ModelMetrics("dominated", 1_500, 3_000, 4_000, 0.0003, 0.90, 0.8);
+
+    @Test
+    void frontierExcludesDominatedModels() {
+        var ranking = ParetoRanking.rank(List.of(FAST_EXPENSIVE, SLOW_CHEAP, CHEAP_FAST, DOMINATED),
+                ServiceLevelObjective.ANY_RELIABLE);
+
+        assertThat(ranking.frontier()).containsExactlyInAnyOrder(FAST_EXPENSIVE, SLOW_CHEAP, CHEAP_FAST);
+    }
+
+    @Test
+    void winnerIsCheapestModelMeetingSlo() {
+        var slo = ServiceLevelObjective.parse("p95 < 3s, accuracy > 0.9, cheapest");
+
+        var ranking = ParetoRanking.rank(List.of(FAST_EXPENSIVE, SLOW_CHEAP, CHEAP_FAST, DOMINATED), slo);
+
+        assertThat(ranking.winner()).contains(CHEAP_FAST);
+        assertThat(ranking.eligible()).containsExactly(CHEAP_FAST, FAST_EXPENSIVE);
+        assertThat(ranking.rejected()).containsOnlyKeys("slow-cheap", "dominated");
+    }
+
+    @Test
+    void noWinnerWhenSloIsUnreachable() {
+        var ranking = ParetoRanking.rank(List.of(FAST_EXPENSIVE, SLOW_CHEAP),
+                ServiceLevelObjective.parse("p95 < 500ms"));
+
+        assertThat(ranking.winner()).isEmpty();
+        assertThat(ranking.frontier()).hasSize(2);
+    }
+
+    @Test
+    void modelWithNoSuccessfulRunIsNotOnFrontier() {
+        TestResults failed = new TestResults("all-failed");
+        for (int i = 0; i < 3; i++) {
+            TestRun run = new TestRun();
+            run.error = "connection refused";
+            failed.addRun(run);
+        }
+        ModelMetrics allFailed = ModelMetrics.from(failed);
+
+        var ranking = ParetoRanking.rank(List.of(allFailed, FAST_EXPENSIVE, SLOW_CHEAP),
+                ServiceLevelObjective.parse("cheapest"));
+
+        assertThat(allFailed.p95Ms()).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(allFailed.costPerRun()).isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(ranking.frontier()).containsExactlyInAnyOrder(FAST_EXPENSIVE, SLOW_CHEAP);
+        assertThat(ranking.winner()).contains(SLOW_CHEAP);
+    }
+
+    @Test
+    void combineKeepsWorstCaseAndSumsCost() {
+        ModelMetrics simple = new ModelMetrics("m", 1_000, 2_000, 3_000, 0.0001, 1.0, 1.0);
+        ModelMetrics complex = new ModelMetrics("m", 3_000, 5_000, 6_000, 0.0002, 0.8, 0.9);
+
+        ModelMetrics overall = simple.combine(complex);
+
+        assertThat(overall.p95Ms()).isEqualTo(5_000);
+        assertThat(overall.costPerRun()).isCloseTo(0.0003, within(1e-12));
+        assertThat(overall.accuracy()).isEqualTo(0.8);
+        assertThat(overall.reliability()).isEqualTo(0.9);
+    }
+
+    @Test
+    void rejectsUnknownSloTerms() {
+        assertThatThrownBy(() -> ServiceLevelObjective.parse("p95 < 3s, vibes > 9000"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("vibes");
+    }
+}
@@ -0,0 +1,92 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Append latency and throughput of {@link PersistentChatMemory} with many sessions adding turns at once, against
+ * the in-memory {@link CompactChatMemory} it is built on, followed by the time to recover everything on restart.
+ */
+@EnabledIfEnvironmentVariable(named = "RUN_BENCHMARKS", matches = "true")
+public class PersistentChatMemoryBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(PersistentChatMemoryBenchmarkTest.class);
+    private static final int SESSIONS = 2_000;
+    private static final int TURNS = 20;
+    private static final int WINDOW = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendsDoNotWaitForDisk() {
+        logger.info(String.format("%-24s %10s %10s %10s %14s %10s",
+                "Memory", "p50 us", "p99 us", "max us", "appends/s", "flush ms"));
+        run("CompactChatMemory", new CompactChatMemory(WINDOW));
+
+        PersistentChatMemory persistent = new PersistentChatMemory(directory, WINDOW);
+        long[] latencies = run("PersistentChatMemory", persistent);
+        persistent.close();
+
+        PersistentChatMemory recovered = new PersistentChatMemory(directory, WINDOW);
+        logger.info("Recovered {} conversations in {}ms", recovered.getConversationCount(),
+                recovered.getRecoveryTime().toMillis());
+        assertThat(recovered.getConversationCount()).isEqualTo(SESSIONS);
+        assertThat(recovered.get("operator-0")).hasSize(WINDOW);
+        recovered.close();
+
+        // Write-behind: appends cost memory work, not an fsync (a few milliseconds on most disks)
+        assertThat(percentile(latencies, 0.99)).isLessThan(1_000_000);
+    }
+
+    private long[] run(String name, ChatMemory memory) {
+        long[] latencies = new long[SESSIONS * TURNS];
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            IntStream.range(0, SESSIONS).forEach(session -> executor.submit(() -> {
+                for (int turn = 0; turn < TURNS; turn++) {
+                    long appendStart = System.nanoTime();
+                    memory.add("operator-" + session, turn(turn));
+                    latencies[session * TURNS + turn] = System.nanoTime() - appendStart;
+                }
+            }));
+        }
+        long elapsed = System.nanoTime() - start;
+        long flushStart = System.nanoTime();
+        if (memory instanceof PersistentChatMemory persistent) {
+            persistent.flush();
+        }
+        long flushMs = (System.nanoTime() - flushStart) / 1_000_000;
+
+        Arrays.sort(latencies);
+        logger.info(String.format("%-24s %10d %10d %10d %14.0f %10d", name,
+                percentile(latencies, 0.50) / 1_000, percentile(latencies, 0.99) / 1_000,
+                latencies[latencies.length - 1] / 1_000, latencies.length / (elapsed / 1e9), flushMs));
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * sorted.length))];
+    }
+
+    private static List<Message> turn(int turn) {
+        return List.of(
+                new UserMessage("Rename channel " + (turn + 1) + " to Channel " + turn),
+                new AssistantMessage("Renamed channel " + (turn + 1) + " to Channel " + turn + "."));
+    }
+}
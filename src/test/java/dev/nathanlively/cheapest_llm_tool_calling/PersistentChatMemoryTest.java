@@ -0,0 +1,225 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PersistentChatMemoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void conversationsSurviveRestart() {
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            memory.add("a", List.of(new SystemMessage("rules"), new UserMessage("Rename channel 1 to Kick")));
+            memory.add("a", List.of(new AssistantMessage("Renamed channel 1 to Kick")));
+            memory.add("b", List.of(new UserMessage("Mute channel 2")));
+            memory.add("c", List.of(new UserMessage("Forget me")));
+            memory.clear("c");
+        }
+
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            assertThat(texts(memory, "a")).containsExactly("rules", "Rename channel 1 to Kick",
+                    "Renamed channel 1 to Kick");
+            assertThat(texts(memory, "b")).containsExactly("Mute channel 2");
+            assertThat(memory.get("c")).isEmpty();
+            assertThat(memory.getConversationCount()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void snapshotKeepsJournalSmall() throws IOException {
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 3, 2_000)) {
+            for (int i = 0; i < 200; i++) {
+                memory.add("a", List.of(new UserMessage("message " + i)));
+                memory.flush();
+            }
+            memory.add("b", List.of(new UserMessage("after the last snapshot")));
+        }
+
+        assertThat(Files.size(directory.resolve("chat-memory.journal"))).isLessThan(4_000);
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 3, 2_000)) {
+            assertThat(texts(memory, "a")).containsExactly("message 197", "message 198", "message 199");
+            assertThat(texts(memory, "b")).containsExactly("after the last snapshot");
+        }
+    }
+
+    @Test
+    void ignoresRecordTornByCrash() throws IOException {
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            memory.add("a", List.of(new UserMessage("Rename channel 1 to Kick")));
+        }
+        Files.write(directory.resolve("chat-memory.journal"), new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5, 6, 7, 8, 9},
+                StandardOpenOption.APPEND);
+
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            assertThat(texts(memory, "a")).containsExactly("Rename channel 1 to Kick");
+            memory.add("a", List.of(new UserMessage("Mute channel 2")));
+        }
+
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            assertThat(texts(memory, "a")).containsExactly("Rename channel 1 to Kick", "Mute channel 2");
+        }
+    }
+
+    @Test
+    void failedWriteFailsFlushAndIsRecoveredBySnapshot() {
+        FailingFileChannel[] journal = new FailingFileChannel[1];
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10, 1_000_000,
+                channel -> journal[0] = new FailingFileChannel(channel))) {
+            memory.add("a", List.of(new UserMessage("Rename channel 1 to Kick")));
+            memory.flush();
+
+            journal[0].failing = true;
+            memory.add("a", List.of(new UserMessage("Mute channel 2")));
+            assertThatThrownBy(memory::flush).isInstanceOf(UncheckedIOException.class);
+
+            journal[0].failing = false;
+            memory.add("a", List.of(new UserMessage("Solo channel 3")));
+            memory.flush();
+        }
+
+        try (PersistentChatMemory memory = new PersistentChatMemory(directory, 10)) {
+            assertThat(texts(memory, "a")).containsExactly("Rename channel 1 to Kick", "Mute channel 2",
+                    "Solo channel 3");
+        }
+    }
+
+    private static List<String> texts(PersistentChatMemory memory, String conversationId) {
+        return memory.get(conversationId).stream().map(Message::getText).toList();
+    }
+
+    /**
+     * A journal on a disk that, while {@code failing}, writes part of a record and then throws, and cannot be
+     * truncated or synced either, so neither a journal write nor a snapshot gets through.
+     */
+    private static final class FailingFileChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failing;
+
+        FailingFileChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            if (failing) {
+                ByteBuffer torn = sources[offset].duplicate();
+                torn.limit(torn.position() + torn.remaining() / 2);
+                delegate.write(torn);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(sources, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return delegate.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return delegate.read(destinations, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            return delegate.write(source);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            failIfFailing();
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            failIfFailing();
+            delegate.force(metaData);
+        }
+
+        private void failIfFailing() throws IOException {
+            if (failing) {
+                throw new IOException("No space left on device");
+            }
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            return delegate.transferFrom(source, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return delegate.read(destination, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            return delegate.write(source, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
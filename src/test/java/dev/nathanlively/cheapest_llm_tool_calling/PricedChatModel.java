@@ -0,0 +1,42 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+
+/**
+ * A provider's chat model together with its name and pricing, as composed by {@link HedgingChatModel}
+ * and {@link ModelRouter}.
+ */
+public record PricedChatModel(String name, ChatModel model, LlmPricing.@Nullable ModelPricing pricing) {
+    /** Response metadata entry naming the model that produced a composed model's response. */
+    static final String SERVED_BY_METADATA_KEY = "served-by";
+
+    public static PricedChatModel of(LlmProvider provider, String model) {
+        return new PricedChatModel(provider.getFullModelName(model), provider.createChatModel(model),
+                provider.getPricing(model));
+    }
+
+    /** The response stamped with this model's name, so whoever prices it knows which model it came from. */
+    ChatResponse stamp(ChatResponse response) {
+        return ChatResponse.builder().from(response).metadata(SERVED_BY_METADATA_KEY, name).build();
+    }
+
+    static @Nullable String servedBy(ChatResponse response) {
+        return response.getMetadata().get(SERVED_BY_METADATA_KEY);
+    }
+
+    double cost(int promptTokens, int completionTokens) {
+        return pricing != null ? pricing.calculateCost(promptTokens, completionTokens) : 0;
+    }
+
+    double cost(ChatResponse response) {
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return 0;
+        }
+        return cost(usage.getPromptTokens() != null ? usage.getPromptTokens() : 0,
+                usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+    }
+}
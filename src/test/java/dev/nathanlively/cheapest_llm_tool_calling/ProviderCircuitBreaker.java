@@ -0,0 +1,85 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Stops a sweep from hammering a provider endpoint that is down or misconfigured. The endpoint is a provider,
+ * so a dead host or a bad API key is found once rather than once per model, or one of its models, for a model
+ * that is retired or failing while the provider's other models are fine.
+ * <p>
+ * Closed: requests flow. After {@code failureThreshold} consecutive failed runs the breaker opens and every
+ * request is refused until {@code openDuration} has passed. Then it goes half-open and lets one probe
+ * through: success closes it, failure opens it again.
+ */
+public class ProviderCircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderCircuitBreaker.class);
+
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Instant openedAt = Instant.MIN;
+    @Nullable
+    private String lastFailure;
+
+    public ProviderCircuitBreaker(String endpoint, int failureThreshold, Duration openDuration) {
+        this(endpoint, failureThreshold, openDuration, Clock.systemUTC());
+    }
+
+    ProviderCircuitBreaker(String endpoint, int failureThreshold, Duration openDuration, Clock clock) {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (clock.instant().isBefore(openedAt.plus(openDuration))) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            logger.info("Circuit for {} is half-open, sending a probe", endpoint);
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Circuit for {} closed after successful probe", endpoint);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure(String error) {
+        lastFailure = error;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.instant();
+            logger.warn("Circuit for {} opened after {} consecutive failures, skipping it for {}s. Last error: {}",
+                    endpoint, consecutiveFailures, openDuration.toSeconds(), error);
+        }
+    }
+
+    public synchronized String skipReason() {
+        return "Skipped: circuit open for " + endpoint + " after " + consecutiveFailures
+               + " consecutive failures (last: " + lastFailure + ")";
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,97 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProviderCircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final ProviderCircuitBreaker breaker =
+            new ProviderCircuitBreaker("Groq", 2, Duration.ofMinutes(5), clock);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        breaker.recordFailure("Connection refused");
+        assertThat(breaker.allowRequest()).isTrue();
+
+        breaker.recordFailure("Connection refused");
+
+        assertThat(breaker.allowRequest()).isFalse();
+        assertThat(breaker.skipReason()).contains("Groq", "Connection refused");
+    }
+
+    @Test
+    void successResetsFailureCount() {
+        breaker.recordFailure("Timeout after 300 seconds");
+        breaker.recordSuccess();
+        breaker.recordFailure("Timeout after 300 seconds");
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(ProviderCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void probesHalfOpenAfterCooldown() {
+        breaker.recordFailure("503");
+        breaker.recordFailure("503");
+
+        clock.advance(Duration.ofMinutes(5));
+
+        assertThat(breaker.allowRequest()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(ProviderCircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void failedProbeReopensImmediately() {
+        breaker.recordFailure("503");
+        breaker.recordFailure("503");
+        clock.advance(Duration.ofMinutes(5));
+        breaker.allowRequest();
+
+        breaker.recordFailure("503");
+
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    void successfulProbeCloses() {
+        breaker.recordFailure("503");
+        breaker.recordFailure("503");
+        clock.advance(Duration.ofMinutes(5));
+        breaker.allowRequest();
+
+        breaker.recordSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(ProviderCircuitBreaker.State.CLOSED);
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rate-limit state reported by a provider on its last HTTP response: the status code plus the
+ * {@code Retry-After} and OpenAI-style {@code x-ratelimit-remaining-*} / {@code x-ratelimit-reset-*} headers
+ * that Groq, OpenAI and DeepSeek send.
+ */
+public record RateLimitInfo(int status,
+                            @Nullable Duration retryAfter,
+                            @Nullable Long remainingRequests,
+                            @Nullable Long remainingTokens,
+                            @Nullable Duration resetRequests,
+                            @Nullable Duration resetTokens) {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    // Reset headers look like "6ms", "7.66s", "2m59.56s" or "1h2m3s"
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    static RateLimitInfo from(int status, HttpHeaders headers, Instant now) {
+        return new RateLimitInfo(
+                status,
+                parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER), now),
+                parseLong(headers.getFirst("x-ratelimit-remaining-requests")),
+                parseLong(headers.getFirst("x-ratelimit-remaining-tokens")),
+                parseDuration(headers.getFirst("x-ratelimit-reset-requests")),
+                parseDuration(headers.getFirst("x-ratelimit-reset-tokens")));
+    }
+
+    public boolean isRateLimited() {
+        return status == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * How long to wait before the next request so that it is not rejected: {@code Retry-After} when the
+     * provider sent one, otherwise the reset time of whichever budget (requests or tokens) is exhausted.
+     * Zero when there is budget left, {@code null} when rate limited without any hint.
+     */
+    public @Nullable Duration delayBeforeNextRequest() {
+        if (retryAfter != null) {
+            return retryAfter;
+        }
+        Duration delay = Duration.ZERO;
+        if (isExhausted(remainingRequests) && resetRequests != null) {
+            delay = resetRequests;
+        }
+        if (isExhausted(remainingTokens) && resetTokens != null && resetTokens.compareTo(delay) > 0) {
+            delay = resetTokens;
+        }
+        if (delay.isZero() && isRateLimited()) {
+            // Rejected but nothing reported as exhausted: the longest advertised reset is the safe bet
+            return longest(resetRequests, resetTokens);
+        }
+        return delay;
+    }
+
+    /**
+     * The provider's hint when there is one, otherwise {@code fallback} (e.g. exponential backoff).
+     */
+    static Duration retryDelay(@Nullable RateLimitInfo info, Duration fallback) {
+        Duration hinted = info != null ? info.delayBeforeNextRequest() : null;
+        return hinted != null ? hinted : fallback;
+    }
+
+    private static boolean isExhausted(@Nullable Long remaining) {
+        return remaining != null && remaining <= 0;
+    }
+
+    private static @Nullable Duration longest(@Nullable Duration a, @Nullable Duration b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    static @Nullable Duration parseRetryAfter(@Nullable String value, Instant now) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            // delta-seconds; some providers send fractions
+            return Duration.ofMillis(Math.round(Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Instant retryAt = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration delay = Duration.between(now, retryAt);
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException notADate) {
+                return null;
+            }
+        }
+    }
+
+    static @Nullable Duration parseDuration(@Nullable String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis(Math.round(millis)) : null;
+    }
+
+    private static @Nullable Long parseLong(@Nullable String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
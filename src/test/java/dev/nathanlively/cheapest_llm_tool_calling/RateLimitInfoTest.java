@@ -0,0 +1,71 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitInfoTest {
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Test
+    void retryAfterSecondsWins() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "7");
+        headers.add("x-ratelimit-reset-tokens", "1m");
+
+        RateLimitInfo info = RateLimitInfo.from(429, headers, NOW);
+
+        assertThat(info.isRateLimited()).isTrue();
+        assertThat(info.delayBeforeNextRequest()).isEqualTo(Duration.ofSeconds(7));
+    }
+
+    @Test
+    void retryAfterHttpDate() {
+        assertThat(RateLimitInfo.parseRetryAfter("Wed, 01 Jan 2025 00:00:30 GMT", NOW))
+                .isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void waitsForExhaustedTokenBudget() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("x-ratelimit-remaining-requests", "14");
+        headers.add("x-ratelimit-remaining-tokens", "0");
+        headers.add("x-ratelimit-reset-requests", "2m59.56s");
+        headers.add("x-ratelimit-reset-tokens", "7.66s");
+
+        RateLimitInfo info = RateLimitInfo.from(429, headers, NOW);
+
+        assertThat(info.delayBeforeNextRequest()).isEqualTo(Duration.ofMillis(7_660));
+    }
+
+    @Test
+    void noWaitWhileBudgetRemains() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("x-ratelimit-remaining-requests", "14");
+        headers.add("x-ratelimit-remaining-tokens", "5000");
+        headers.add("x-ratelimit-reset-requests", "6ms");
+
+        RateLimitInfo info = RateLimitInfo.from(200, headers, NOW);
+
+        assertThat(info.delayBeforeNextRequest()).isZero();
+    }
+
+    @Test
+    void fallsBackWithoutHints() {
+        RateLimitInfo info = RateLimitInfo.from(429, new HttpHeaders(), NOW);
+
+        assertThat(RateLimitInfo.retryDelay(info, Duration.ofSeconds(1))).isEqualTo(Duration.ofSeconds(1));
+        assertThat(RateLimitInfo.retryDelay(null, Duration.ofSeconds(2))).isEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void parsesCompoundDurations() {
+        assertThat(RateLimitInfo.parseDuration("1h2m3s")).isEqualTo(Duration.ofSeconds(3_723));
+        assertThat(RateLimitInfo.parseDuration("6ms")).isEqualTo(Duration.ofMillis(6));
+        assertThat(RateLimitInfo.parseDuration("soon")).isNull();
+    }
+}
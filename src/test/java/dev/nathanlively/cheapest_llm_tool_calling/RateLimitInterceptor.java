@@ -0,0 +1,40 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Captures the status and rate-limit headers of every response a provider's {@link RestClient} receives,
+ * before Spring AI's error handler turns a 429 into an exception message.
+ */
+public class RateLimitInterceptor implements ClientHttpRequestInterceptor {
+    private final AtomicReference<@Nullable RateLimitInfo> last = new AtomicReference<>();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        ClientHttpResponse response = execution.execute(request, body);
+        last.set(RateLimitInfo.from(response.getStatusCode().value(), response.getHeaders(), Instant.now()));
+        return response;
+    }
+
+    public RestClient.Builder restClientBuilder() {
+        return RestClient.builder().requestInterceptor(this);
+    }
+
+    public @Nullable RateLimitInfo last() {
+        return last.get();
+    }
+
+    public void clear() {
+        last.set(null);
+    }
+}
@@ -0,0 +1,310 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.core.Ordered;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Records model responses to a {@link ResponseCache} and serves them back, so harness changes (validation,
+ * reporting) can be re-run without paying for identical prompts. Requests are keyed by a SHA-256 of the
+ * model, its options, the messages and the tool definitions.
+ * <p>
+ * Responses to tool-calling prompts are only meaningful together with their side effects, so the tools the
+ * model ran are recorded with their inputs and run again on replay before the cached answer is returned.
+ * Runs after chat memory so the key covers the whole conversation.
+ */
+public class RecordReplayAdvisor implements CallAdvisor {
+    private static final Logger logger = LoggerFactory.getLogger(RecordReplayAdvisor.class);
+
+    public enum Mode {
+        /** Pass every call through. */
+        OFF,
+        /** Call the model every time and overwrite the recording. */
+        RECORD,
+        /** Serve recordings only; a call without one fails instead of reaching the network. */
+        REPLAY,
+        /** Serve recordings, calling and recording the model on a miss. */
+        RECORD_MISSING
+    }
+
+    // Absent when OFF, so a harness that does not cache never touches the disk
+    private final @Nullable ResponseCache cache;
+    private final Mode mode;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger recorded = new AtomicInteger();
+
+    public RecordReplayAdvisor(Path directory, long maxBytes, Mode mode) {
+        this(new ResponseCache(directory, maxBytes), mode);
+    }
+
+    RecordReplayAdvisor(@Nullable ResponseCache cache, Mode mode) {
+        if (cache == null && mode != Mode.OFF) {
+            throw new IllegalArgumentException(mode + " needs a response cache");
+        }
+        this.cache = cache;
+        this.mode = mode;
+    }
+
+    /**
+     * Configured by {@code LLM_CACHE_MODE} (default {@code OFF}), {@code LLM_CACHE_DIR} (default
+     * {@code target/llm-cache}) and {@code LLM_CACHE_MAX_MB} (default 500). The cache directory is only
+     * created when a mode other than {@code OFF} is set.
+     *
+     * @throws IllegalArgumentException if {@code LLM_CACHE_MODE} is not one of {@link Mode}
+     */
+    public static RecordReplayAdvisor fromEnvironment() {
+        Mode mode = parseMode(System.getenv().getOrDefault("LLM_CACHE_MODE", Mode.OFF.name()));
+        if (mode == Mode.OFF) {
+            return new RecordReplayAdvisor(null, mode);
+        }
+        String directory = System.getenv().getOrDefault("LLM_CACHE_DIR", "target/llm-cache");
+        long maxMb = Long.parseLong(System.getenv().getOrDefault("LLM_CACHE_MAX_MB", "500"));
+        return new RecordReplayAdvisor(Path.of(directory), maxMb * 1_000_000, mode);
+    }
+
+    static Mode parseMode(String mode) {
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("LLM_CACHE_MODE must be one of " + Arrays.toString(Mode.values())
+                                               + " but was '" + mode + "'", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "RecordReplayAdvisor";
+    }
+
+    @Override
+    public int getOrder() {
+        // Innermost, after memory has added the conversation history
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ResponseCache cache = this.cache;
+        if (cache == null) {
+            return chain.nextCall(request);
+        }
+        String model = modelName(request);
+        String key = key(model, request.prompt());
+
+        if (mode != Mode.RECORD) {
+            ResponseCache.Entry entry = cache.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                replayTools(request.prompt(), entry.toolInvocations());
+                return ChatClientResponse.builder()
+                        .chatResponse(toChatResponse(entry))
+                        .context(request.context())
+                        .build();
+            }
+            misses.incrementAndGet();
+            if (mode == Mode.REPLAY) {
+                throw new IllegalStateException("No recorded response for " + model + " (key " + key + ")");
+            }
+        }
+
+        List<ResponseCache.ToolInvocation> invocations = Collections.synchronizedList(new ArrayList<>());
+        ChatClientResponse response = chain.nextCall(recordingTools(request, invocations));
+        ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse != null) {
+            cache.put(key, toEntry(model, chatResponse, invocations));
+            recorded.incrementAndGet();
+        }
+        return response;
+    }
+
+    private static String modelName(ChatClientRequest request) {
+        Object model = request.context().get(BenchmarkRunner.MODEL_CONTEXT_KEY);
+        if (model != null) {
+            return model.toString();
+        }
+        ChatOptions options = request.prompt().getOptions();
+        return options != null && options.getModel() != null ? options.getModel() : "unknown";
+    }
+
+    static String key(String model, Prompt prompt) {
+        StringBuilder canonical = new StringBuilder("model=").append(model).append('\n');
+        ChatOptions options = prompt.getOptions();
+        if (options != null) {
+            canonical.append("options=").append(options.getModel()).append('|').append(options.getTemperature())
+                    .append('|').append(options.getTopP()).append('|').append(options.getTopK())
+                    .append('|').append(options.getMaxTokens()).append('|').append(options.getStopSequences())
+                    .append('\n');
+        }
+        for (Message message : prompt.getInstructions()) {
+            canonical.append(message.getMessageType()).append(':').append(message.getText()).append('\n');
+            if (message instanceof AssistantMessage assistant) {
+                assistant.getToolCalls().forEach(call ->
+                        canonical.append("call:").append(call.name()).append(call.arguments()).append('\n'));
+            } else if (message instanceof ToolResponseMessage toolResponses) {
+                toolResponses.getResponses().forEach(r ->
+                        canonical.append("result:").append(r.name()).append(r.responseData()).append('\n'));
+            }
+        }
+        if (options instanceof ToolCallingChatOptions toolOptions) {
+            toolOptions.getToolCallbacks().stream()
+                    .map(ToolCallback::getToolDefinition)
+                    .sorted((a, b) -> a.name().compareTo(b.name()))
+                    .forEach(definition -> canonical.append("tool:").append(definition.name())
+                            .append(definition.description()).append(definition.inputSchema()).append('\n'));
+        }
+        return sha256(canonical.toString());
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ChatClientRequest recordingTools(ChatClientRequest request,
+                                                    List<ResponseCache.ToolInvocation> invocations) {
+        if (!(request.prompt().getOptions() instanceof ToolCallingChatOptions options)
+            || options.getToolCallbacks().isEmpty()) {
+            return request;
+        }
+        ToolCallingChatOptions recordingOptions = options.copy();
+        recordingOptions.setToolCallbacks(options.getToolCallbacks().stream()
+                .map(callback -> recording(callback, invocations))
+                .toList());
+        return request.mutate()
+                .prompt(new Prompt(request.prompt().getInstructions(), recordingOptions))
+                .build();
+    }
+
+    private static ToolCallback recording(ToolCallback delegate, List<ResponseCache.ToolInvocation> invocations) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return delegate.getToolDefinition();
+            }
+
+            @Override
+            public ToolMetadata getToolMetadata() {
+                return delegate.getToolMetadata();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                invocations.add(new ResponseCache.ToolInvocation(delegate.getToolDefinition().name(), toolInput));
+                return delegate.call(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, @Nullable ToolContext toolContext) {
+                invocations.add(new ResponseCache.ToolInvocation(delegate.getToolDefinition().name(), toolInput));
+                return delegate.call(toolInput, toolContext);
+            }
+        };
+    }
+
+    private static void replayTools(Prompt prompt, List<ResponseCache.ToolInvocation> invocations) {
+        if (invocations.isEmpty()) {
+            return;
+        }
+        Map<String, ToolCallback> callbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks().stream().collect(Collectors.toMap(
+                        callback -> callback.getToolDefinition().name(), Function.identity(), (a, b) -> a))
+                : Map.of();
+        for (ResponseCache.ToolInvocation invocation : invocations) {
+            ToolCallback callback = callbacks.get(invocation.name());
+            if (callback == null) {
+                logger.warn("Recorded tool {} is not offered any more, skipping it", invocation.name());
+                continue;
+            }
+            callback.call(invocation.input());
+        }
+    }
+
+    private static ResponseCache.Entry toEntry(String model, ChatResponse response,
+                                               List<ResponseCache.ToolInvocation> invocations) {
+        Usage usage = response.getMetadata().getUsage();
+        int promptTokens = usage != null && usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        int completionTokens = usage != null && usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        List<String> texts = response.getResults().stream()
+                .map(generation -> Objects.requireNonNullElse(generation.getOutput().getText(), ""))
+                .toList();
+        return new ResponseCache.Entry(model, texts, promptTokens, completionTokens, List.copyOf(invocations),
+                Instant.now());
+    }
+
+    private static ChatResponse toChatResponse(ResponseCache.Entry entry) {
+        List<Generation> generations = entry.texts().stream()
+                .map(text -> new Generation(new AssistantMessage(text)))
+                .toList();
+        return new ChatResponse(generations, ChatResponseMetadata.builder()
+                .model(entry.model())
+                .usage(new DefaultUsage(entry.promptTokens(), entry.completionTokens()))
+                .build());
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public int getRecorded() {
+        return recorded.get();
+    }
+
+    @Override
+    public String toString() {
+        if (cache == null) {
+            return mode.name();
+        }
+        return String.format("%s: %d hits, %d misses, %d recorded, %d MB on disk",
+                mode, getHits(), getMisses(), getRecorded(), cache.getTotalBytes() / 1_000_000);
+    }
+}
@@ -0,0 +1,124 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.annotation.Tool;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RecordReplayAdvisorTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private final ToolRunningChatModel model = new ToolRunningChatModel();
+
+    @Test
+    void replayServesRecordingAndRerunsTools() {
+        Console recordingConsole = new Console();
+        ChatResponse recorded = call(RecordReplayAdvisor.Mode.RECORD_MISSING, recordingConsole);
+
+        Console replayConsole = new Console();
+        RecordReplayAdvisor replay = new RecordReplayAdvisor(cacheDir, 1_000_000, RecordReplayAdvisor.Mode.REPLAY);
+        ChatResponse replayed = client(replay).prompt().user("Rename channel 1 to Kick").tools(replayConsole)
+                .call().chatResponse();
+
+        assertThat(model.calls.get()).isEqualTo(1);
+        assertThat(replay.getHits()).isEqualTo(1);
+        assertThat(replayed.getResult().getOutput().getText()).isEqualTo(recorded.getResult().getOutput().getText());
+        assertThat(replayed.getMetadata().getUsage().getPromptTokens()).isEqualTo(1_000);
+        assertThat(replayConsole.writes).containsExactlyElementsOf(recordingConsole.writes);
+    }
+
+    @Test
+    void differentConversationMisses() {
+        call(RecordReplayAdvisor.Mode.RECORD_MISSING, new Console());
+
+        RecordReplayAdvisor replay = new RecordReplayAdvisor(cacheDir, 1_000_000, RecordReplayAdvisor.Mode.REPLAY);
+
+        assertThatThrownBy(() -> client(replay).prompt().user("Rename channel 2 to Snare").tools(new Console())
+                .call().chatResponse())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("No recorded response");
+    }
+
+    @Test
+    void unknownModeIsReportedByName() {
+        assertThat(RecordReplayAdvisor.parseMode(" replay ")).isEqualTo(RecordReplayAdvisor.Mode.REPLAY);
+        assertThatThrownBy(() -> RecordReplayAdvisor.parseMode("REPLAYY"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("LLM_CACHE_MODE")
+                .hasMessageContaining("REPLAYY");
+    }
+
+    @Test
+    void cacheStaysWithinSizeBound() {
+        ResponseCache cache = new ResponseCache(cacheDir, 600);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, new ResponseCache.Entry("m", List.of("answer " + i), 1, 1, List.of(), Instant.now()));
+        }
+
+        assertThat(cache.getTotalBytes()).isLessThanOrEqualTo(600);
+        assertThat(cache.get("key9")).isNotNull();
+        assertThat(cache.get("key0")).isNull();
+    }
+
+    private ChatResponse call(RecordReplayAdvisor.Mode mode, Console console) {
+        RecordReplayAdvisor advisor = new RecordReplayAdvisor(cacheDir, 1_000_000, mode);
+        return client(advisor).prompt().user("Rename channel 1 to Kick").tools(console).call().chatResponse();
+    }
+
+    private ChatClient client(RecordReplayAdvisor advisor) {
+        return ChatClient.builder(model).defaultAdvisors(advisor).build();
+    }
+
+    static class Console {
+        final List<String> writes = new ArrayList<>();
+
+        @Tool(description = "Set a mixer parameter")
+        public String setSingleParameter(ApiCall apiCall) {
+            writes.add(apiCall.path() + "=" + apiCall.value());
+            return "SUCCESS";
+        }
+    }
+
+    /**
+     * Runs the offered tool once, as a model with internal tool execution would, then answers.
+     */
+    private static class ToolRunningChatModel implements ChatModel {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return ToolCallingChatOptions.builder().build();
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            if (prompt.getOptions() instanceof ToolCallingChatOptions options && !options.getToolCallbacks().isEmpty()) {
+                options.getToolCallbacks().getFirst()
+                        .call("{\"apiCall\": {\"path\": \"ch.0.cfg.name\", \"value\": \"Kick\"}}");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("Renamed channel 1 to Kick"))),
+                    ChatResponseMetadata.builder().usage(new DefaultUsage(1_000, 100)).build());
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk store of recorded model responses, one JSON file per request hash. Total size is bounded: when a
+ * write pushes it over {@code maxBytes} the least recently used entries are deleted, with a file's
+ * modification time standing in for its last use.
+ */
+class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String SUFFIX = ".json";
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    /** A tool the model ran while producing the response, replayed so tool side effects happen offline too. */
+    record ToolInvocation(String name, String input) {
+    }
+
+    record Entry(String model,
+                 List<String> texts,
+                 int promptTokens,
+                 int completionTokens,
+                 List<ToolInvocation> toolInvocations,
+                 Instant recordedAt) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private long totalBytes;
+
+    ResponseCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = entries()) {
+                totalBytes = files.mapToLong(ResponseCache::size).sum();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open response cache at " + directory, e);
+        }
+        logger.info("Response cache at {}: {} MB of {} MB", directory, totalBytes / 1_000_000, maxBytes / 1_000_000);
+    }
+
+    synchronized @Nullable Entry get(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Entry entry = objectMapper.readValue(file.toFile(), Entry.class);
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return entry;
+        } catch (IOException e) {
+            logger.warn("Dropping unreadable cache entry {}: {}", file.getFileName(), e.getMessage());
+            delete(file);
+            return null;
+        }
+    }
+
+    synchronized void put(String key, Entry entry) {
+        Path file = directory.resolve(key + SUFFIX);
+        Path temp = directory.resolve(key + ".tmp");
+        try {
+            long previous = Files.exists(file) ? size(file) : 0;
+            objectMapper.writeValue(temp.toFile(), entry);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            totalBytes += size(file) - previous;
+        } catch (IOException e) {
+            logger.warn("Cannot write cache entry {}: {}", file.getFileName(), e.getMessage());
+            delete(temp);
+            return;
+        }
+        if (totalBytes > maxBytes) {
+            evict();
+        }
+    }
+
+    synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void evict() {
+        try (Stream<Path> files = entries()) {
+            List<Path> oldestFirst = files
+                    .sorted(Comparator.comparing(ResponseCache::lastModified))
+                    .toList();
+            for (Path file : oldestFirst) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                long size = size(file);
+                if (delete(file)) {
+                    totalBytes -= size;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot evict from response cache: {}", e.getMessage());
+        }
+    }
+
+    private Stream<Path> entries() throws IOException {
+        return Files.list(directory).filter(file -> file.getFileName().toString().endsWith(SUFFIX));
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * The last {@code capacity} turns served by one route: latency, outcome and cost, summarised as the same
+ * {@link ModelMetrics} the benchmark ranks on.
+ */
+class RouteWindow {
+    private record Sample(long latencyMs, boolean success, double cost) {
+    }
+
+    private final int capacity;
+    private final Deque<Sample> samples = new ArrayDeque<>();
+
+    RouteWindow(int capacity) {
+        this.capacity = capacity;
+    }
+
+    synchronized void record(Duration latency, boolean success, double cost) {
+        if (samples.size() == capacity) {
+            samples.removeFirst();
+        }
+        samples.addLast(new Sample(latency.toMillis(), success, cost));
+    }
+
+    synchronized int size() {
+        return samples.size();
+    }
+
+    /**
+     * Latency covers failed turns too, since a caller waited for them; cost is averaged over successful turns.
+     * {@code accuracy} is passed in because live traffic has no ground truth to score against.
+     */
+    synchronized ModelMetrics toMetrics(String model, double accuracy) {
+        long[] latencies = samples.stream().mapToLong(Sample::latencyMs).sorted().toArray();
+        double cost = samples.stream().filter(Sample::success).mapToDouble(Sample::cost).average().orElse(0);
+        double reliability = samples.isEmpty() ? 0 : (double) samples.stream().filter(Sample::success).count() / samples.size();
+        return new ModelMetrics(model, percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                cost, accuracy, reliability);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.clamp(rank - 1, 0, sorted.length - 1)];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Arrays.toString(samples.stream().mapToLong(Sample::latencyMs).toArray());
+    }
+}
@@ -0,0 +1,81 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One conversation's view of a shared {@link ModelRouter}. Each turn goes to the route the router ranks
+ * first and fails over down the ranking on errors, unless the failed route already ran tools: a retry
+ * elsewhere would repeat console writes.
+ */
+public class RoutingChatModel implements ChatModel {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingChatModel.class);
+
+    public enum Stickiness {
+        /** Every turn is routed on its own. */
+        TURN,
+        /** The route that served the first turn keeps the conversation unless it fails. */
+        CONVERSATION
+    }
+
+    private final ModelRouter router;
+    private final Stickiness stickiness;
+    private ModelRouter.@Nullable Route pinned;
+
+    public RoutingChatModel(ModelRouter router, Stickiness stickiness) {
+        this.router = router;
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        // ChatClient only attaches tools when the model's default options support tool calling
+        return ToolCallingChatOptions.builder().build();
+    }
+
+    @Override
+    public synchronized ChatResponse call(Prompt prompt) {
+        List<ModelRouter.Route> candidates = new ArrayList<>(router.rank());
+        if (stickiness == Stickiness.CONVERSATION && pinned != null) {
+            candidates.remove(pinned);
+            candidates.addFirst(pinned);
+        }
+
+        RuntimeException failure = null;
+        for (ModelRouter.Route route : candidates) {
+            ToolGate gate = new ToolGate();
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = route.model().model().call(
+                        DelegatePrompts.forDelegate(prompt, callback -> gate.guard(route.name(), callback)));
+                router.recordSuccess(route, Duration.ofNanos(System.nanoTime() - start), response);
+                pinned = route;
+                return route.model().stamp(response);
+            } catch (RuntimeException e) {
+                router.recordFailure(route, Duration.ofNanos(System.nanoTime() - start));
+                if (gate.owner() != null) {
+                    logger.warn("{} failed after running tools, not failing over: {}", route.name(), e.getMessage());
+                    throw e;
+                }
+                logger.warn("{} failed, trying the next route: {}", route.name(), e.getMessage());
+                failure = e;
+                pinned = null;
+            }
+        }
+        throw failure != null ? failure : new IllegalStateException("No routes configured");
+    }
+
+    public ModelRouter.@Nullable Route getPinnedRoute() {
+        return pinned;
+    }
+}
@@ -0,0 +1,112 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutingChatModelTest {
+    private static final LlmPricing.ModelPricing CHEAP = new LlmPricing.ModelPricing(0.05, 0.08, true, 840);
+    private static final LlmPricing.ModelPricing PREMIUM = new LlmPricing.ModelPricing(2.50, 10.00, true, 150);
+
+    private final StubChatModel cheapModel = new StubChatModel("cheap", Duration.ofMillis(150));
+    private final StubChatModel premiumModel = new StubChatModel("premium", Duration.ofMillis(10));
+    private final List<ModelRouter.Route> routes = List.of(
+            new ModelRouter.Route(new PricedChatModel("cheap", cheapModel, CHEAP)),
+            new ModelRouter.Route(new PricedChatModel("premium", premiumModel, PREMIUM)));
+
+    @Test
+    void cheapModelServesWhileItMeetsSlo() {
+        var router = new ModelRouter(routes, ServiceLevelObjective.parse("p95 < 500ms, cheapest")).withMinSamples(3);
+        var model = new RoutingChatModel(router, RoutingChatModel.Stickiness.TURN);
+
+        for (int i = 0; i < 6; i++) {
+            assertThat(text(model.call(new Prompt("Rename channel 1 to Kick")))).isEqualTo("cheap");
+        }
+        assertThat(premiumModel.getCalls()).isZero();
+    }
+
+    @Test
+    void slowCheapModelLosesTrafficOnceMeasured() {
+        var router = new ModelRouter(routes, ServiceLevelObjective.parse("p95 < 100ms, cheapest"))
+                .withMinSamples(3)
+                .withProbeEvery(0);
+        var model = new RoutingChatModel(router, RoutingChatModel.Stickiness.TURN);
+
+        ChatResponse last = null;
+        for (int i = 0; i < 6; i++) {
+            last = model.call(new Prompt("Rename channel 1 to Kick"));
+        }
+
+        assertThat(text(last)).isEqualTo("premium");
+        assertThat(cheapModel.getCalls()).isEqualTo(3);
+    }
+
+    @Test
+    void failsOverToNextRouteOnError() {
+        cheapModel.setFailing(true);
+        var router = new ModelRouter(routes, ServiceLevelObjective.parse("p95 < 500ms, reliability > 0.9, cheapest"))
+                .withMinSamples(3);
+        var model = new RoutingChatModel(router, RoutingChatModel.Stickiness.TURN);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(text(model.call(new Prompt("Rename channel 1 to Kick")))).isEqualTo("premium");
+        }
+
+        assertThat(router.metrics(routes.getFirst()).reliability()).isZero();
+        assertThat(text(model.call(new Prompt("Rename channel 1 to Kick")))).isEqualTo("premium");
+        assertThat(cheapModel.getCalls()).isEqualTo(3);
+    }
+
+    @Test
+    void conversationStaysOnItsRoute() {
+        var router = new ModelRouter(routes, ServiceLevelObjective.parse("p95 < 100ms, cheapest"))
+                .withMinSamples(3)
+                .withProbeEvery(0);
+        var conversation = new RoutingChatModel(router, RoutingChatModel.Stickiness.CONVERSATION);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(text(conversation.call(new Prompt("turn " + i)))).isEqualTo("cheap");
+        }
+
+        var nextConversation = new RoutingChatModel(router, RoutingChatModel.Stickiness.CONVERSATION);
+        assertThat(text(nextConversation.call(new Prompt("turn 0")))).isEqualTo("premium");
+    }
+
+    @Test
+    void unmeasuredRoutesArePricedFromLlmPricing() {
+        var router = new ModelRouter(routes, ServiceLevelObjective.ANY_RELIABLE);
+
+        ModelMetrics estimate = router.metrics(routes.getLast());
+
+        assertThat(estimate.costPerRun()).isEqualTo(PREMIUM.calculateCost(1_000, 100));
+    }
+
+    @Test
+    void runIsPricedByTheRouteThatServedIt() {
+        var router = new ModelRouter(routes, ServiceLevelObjective.parse("p95 < 100ms, cheapest"))
+                .withMinSamples(3)
+                .withProbeEvery(0);
+        var provider = new RoutingLlmProvider(router, RoutingChatModel.Stickiness.TURN);
+        ChatModel model = provider.createChatModel("per-turn");
+
+        ChatResponse cheapTurn = model.call(new Prompt("Rename channel 1 to Kick"));
+        for (int i = 0; i < 5; i++) {
+            model.call(new Prompt("Rename channel 1 to Kick"));
+        }
+
+        assertThat(text(cheapTurn)).isEqualTo("cheap");
+        assertThat(provider.getPricing("per-turn", cheapTurn)).isEqualTo(CHEAP);
+        assertThat(provider.getPricing("per-turn", model.call(new Prompt("Rename channel 1 to Kick"))))
+                .isEqualTo(PREMIUM);
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+}
@@ -0,0 +1,81 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Serves every conversation through one shared {@link ModelRouter}, so routing decisions learn from all
+ * traffic. Each chat client is one conversation with its own memory.
+ */
+public class RoutingLlmProvider extends LlmProvider {
+    private final ModelRouter router;
+    private final RoutingChatModel.Stickiness stickiness;
+
+    public RoutingLlmProvider(ModelRouter router, RoutingChatModel.Stickiness stickiness) {
+        super("Router", "", List.of("per-" + stickiness.name().toLowerCase(Locale.ROOT)));
+        this.router = router;
+        this.stickiness = stickiness;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public ChatModel createChatModel(String model) {
+        return new RoutingChatModel(router, stickiness);
+    }
+
+    @Override
+    public ChatClient createChatClient(String model, TestScenario scenario) {
+        MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
+                .maxMessages(10)
+                .build();
+        return ChatClient.builder(createChatModel(model))
+                .defaultAdvisors(timed(
+                        new EmptyMessageFilterAdvisor(),
+                        MessageChatMemoryAdvisor.builder(chatMemory)
+                                .conversationId("test-" + System.currentTimeMillis())
+                                .build(),
+                        new SimpleLoggerAdvisor()))
+                .build();
+    }
+
+    /**
+     * Priced as the route that served the response, which {@link RoutingChatModel} stamps on it. Concurrent
+     * runs share the router, so the route cannot be read back from it afterwards.
+     */
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model, ChatResponse response) {
+        String servedBy = PricedChatModel.servedBy(response);
+        return router.getRoutes().stream()
+                .filter(route -> route.model().name().equals(servedBy))
+                .findFirst()
+                .map(route -> pricing(route.model()))
+                .orElseGet(() -> getPricing(model));
+    }
+
+    /**
+     * Priced as the first route, for checks made before any turn has been served.
+     */
+    @Override
+    public LlmPricing.ModelPricing getPricing(String model) {
+        return pricing(router.getRoutes().getFirst().model());
+    }
+
+    private static LlmPricing.ModelPricing pricing(PricedChatModel priced) {
+        return priced.pricing() != null ? priced.pricing() : new LlmPricing.ModelPricing(0.0, 0.0, true, 0);
+    }
+
+    public ModelRouter getRouter() {
+        return router;
+    }
+}
@@ -0,0 +1,177 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hard constraints a production model must meet, plus the objective used to pick among the models that meet
+ * them. Can be written the way we talk about it, e.g. {@code "p95 < 3s, accuracy > 0.9, cheapest"}.
+ */
+public record ServiceLevelObjective(List<Constraint> constraints, Objective objective) {
+
+    private static final Pattern CONSTRAINT_PATTERN =
+            Pattern.compile("(p50|p95|p99|cost|accuracy|reliability)\\s*(<=|>=|<|>)\\s*\\$?([0-9.]+)\\s*(ms|s)?");
+
+    /** Anything that succeeded at least once, cheapest first. */
+    public static final ServiceLevelObjective ANY_RELIABLE = parse("reliability > 0, cheapest");
+
+    public ServiceLevelObjective {
+        constraints = List.copyOf(constraints);
+    }
+
+    public static ServiceLevelObjective parse(String spec) {
+        List<Constraint> constraints = new ArrayList<>();
+        Objective objective = Objective.CHEAPEST;
+
+        for (String term : spec.toLowerCase(Locale.ROOT).split(",")) {
+            String trimmed = term.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Objective named = Objective.fromName(trimmed);
+            if (named != null) {
+                objective = named;
+                continue;
+            }
+
+            Matcher matcher = CONSTRAINT_PATTERN.matcher(trimmed);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Cannot parse SLO term '" + trimmed + "' in: " + spec);
+            }
+            Metric metric = Metric.valueOf(matcher.group(1).toUpperCase(Locale.ROOT));
+            double threshold = Double.parseDouble(matcher.group(3));
+            if ("s".equals(matcher.group(4))) {
+                threshold *= 1000;
+            }
+            constraints.add(new Constraint(metric, Comparison.fromSymbol(matcher.group(2)), threshold));
+        }
+        return new ServiceLevelObjective(constraints, objective);
+    }
+
+    public List<String> violations(ModelMetrics metrics) {
+        return constraints.stream()
+                .filter(c -> !c.isMetBy(metrics))
+                .map(c -> c.describe(metrics))
+                .toList();
+    }
+
+    public boolean isMetBy(ModelMetrics metrics) {
+        return constraints.stream().allMatch(c -> c.isMetBy(metrics));
+    }
+
+    @Override
+    public String toString() {
+        List<String> terms = new ArrayList<>(constraints.stream().map(Constraint::toString).toList());
+        terms.add(objective.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        return String.join(", ", terms);
+    }
+
+    public enum Metric {
+        P50(ModelMetrics::p50Ms),
+        P95(ModelMetrics::p95Ms),
+        P99(ModelMetrics::p99Ms),
+        COST(ModelMetrics::costPerRun),
+        ACCURACY(ModelMetrics::accuracy),
+        RELIABILITY(ModelMetrics::reliability);
+
+        private final ToDoubleFunction<ModelMetrics> extractor;
+
+        Metric(ToDoubleFunction<ModelMetrics> extractor) {
+            this.extractor = extractor;
+        }
+
+        double of(ModelMetrics metrics) {
+            return extractor.applyAsDouble(metrics);
+        }
+    }
+
+    public enum Comparison {
+        LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">=");
+
+        private final String symbol;
+
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Comparison fromSymbol(String symbol) {
+            for (Comparison comparison : values()) {
+                if (comparison.symbol.equals(symbol)) {
+                    return comparison;
+                }
+            }
+            throw new IllegalArgumentException("Unknown comparison: " + symbol);
+        }
+
+        boolean test(double value, double threshold) {
+            return switch (this) {
+                case LESS -> value < threshold;
+                case LESS_OR_EQUAL -> value <= threshold;
+                case GREATER -> value > threshold;
+                case GREATER_OR_EQUAL -> value >= threshold;
+            };
+        }
+    }
+
+    /** Thresholds for latency metrics are in milliseconds. */
+    public record Constraint(Metric metric, Comparison comparison, double threshold) {
+        boolean isMetBy(ModelMetrics metrics) {
+            return comparison.test(metric.of(metrics), threshold);
+        }
+
+        String describe(ModelMetrics metrics) {
+            return String.format("%s=%s (needs %s)", metric.name().toLowerCase(Locale.ROOT),
+                    format(metric.of(metrics)), this);
+        }
+
+        private String format(double value) {
+            return switch (metric) {
+                case P50, P95, P99 -> String.format("%.0fms", value);
+                case COST -> String.format("$%.6f", value);
+                case ACCURACY, RELIABILITY -> String.format("%.2f", value);
+            };
+        }
+
+        @Override
+        public String toString() {
+            return metric.name().toLowerCase(Locale.ROOT) + " " + comparison.symbol + " " + format(threshold);
+        }
+    }
+
+    /** How to choose among models that meet every constraint. Ties fall through to the next objective. */
+    public enum Objective {
+        CHEAPEST(Comparator.comparingDouble(ModelMetrics::costPerRun)),
+        FASTEST(Comparator.comparingDouble(ModelMetrics::p95Ms)),
+        MOST_ACCURATE(Comparator.comparingDouble(ModelMetrics::accuracy).reversed());
+
+        private final Comparator<ModelMetrics> primary;
+
+        Objective(Comparator<ModelMetrics> primary) {
+            this.primary = primary;
+        }
+
+        Comparator<ModelMetrics> comparator() {
+            return primary
+                    .thenComparing(Comparator.comparingDouble(ModelMetrics::reliability).reversed())
+                    .thenComparing(Comparator.comparingDouble(ModelMetrics::accuracy).reversed())
+                    .thenComparingDouble(ModelMetrics::p95Ms)
+                    .thenComparingDouble(ModelMetrics::costPerRun);
+        }
+
+        static @Nullable Objective fromName(String name) {
+            return switch (name) {
+                case "cheapest" -> CHEAPEST;
+                case "fastest" -> FASTEST;
+                case "most-accurate", "most accurate", "most_accurate" -> MOST_ACCURATE;
+                default -> null;
+            };
+        }
+    }
+}
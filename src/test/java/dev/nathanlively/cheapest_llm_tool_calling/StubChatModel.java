@@ -0,0 +1,57 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline stand-in for a provider's chat model: answers with its own name after an injected latency, reports
+ * fixed token usage, and can be switched to failing like an overloaded provider.
+ */
+class StubChatModel implements ChatModel {
+    private final String name;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile Duration latency;
+    private volatile boolean failing;
+
+    StubChatModel(String name, Duration latency) {
+        this.name = name;
+        this.latency = latency;
+    }
+
+    void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(name + " interrupted", e);
+        }
+        if (failing) {
+            throw new IllegalStateException("503 Service Unavailable from " + name);
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(name))),
+                ChatResponseMetadata.builder().usage(new DefaultUsage(1_000, 100)).build());
+    }
+}
@@ -1,15 +1,21 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.ToDoubleFunction;
 
 // Helper classes
 class TestResults {
     final String modelName;
     final List<TestRun> runs = new ArrayList<>();
     final Set<String> errors = new HashSet<>();
+    String stopReason;
+    // Model load time measured by warm-up, kept out of the runs' latency
+    Duration coldStart;
 
     TestResults(String modelName) {
         this.modelName = modelName;
@@ -22,6 +28,15 @@ class TestResults {
         }
     }
 
+    /**
+     * Records why a run of this model was not attempted. Skipped runs are not runs, so they do not drag down
+     * success rate or latency.
+     */
+    void skip(String reason) {
+        stopReason = reason;
+        errors.add(reason);
+    }
+
     double getAverageTime() {
         return runs.stream()
                 .mapToLong(r -> r.executionTimeMs)
@@ -42,6 +57,23 @@ class TestResults {
                 .orElse(0);
     }
 
+    /**
+     * Nearest-rank percentile of run latency, e.g. {@code 95} for p95. Runs that failed before the clock
+     * started (time 0) are ignored.
+     */
+    double getLatencyPercentile(double percentile) {
+        long[] times = runs.stream()
+                .mapToLong(r -> r.executionTimeMs)
+                .filter(t -> t > 0)
+                .sorted()
+                .toArray();
+        if (times.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * times.length);
+        return times[Math.clamp(rank - 1, 0, times.length - 1)];
+    }
+
     double getAverageCost() {
         return runs.stream()
                 .mapToDouble(r -> r.cost)
@@ -62,4 +94,115 @@ class TestResults {
                 .average()
                 .orElse(0);
     }
+
+    /**
+     * Average of a measured quantity over the runs that reported it. Providers that do not measure it leave
+     * zero, so this returns zero for them.
+     */
+    double getAverageMeasured(ToDoubleFunction<TestRun> metric) {
+        return runs.stream()
+                .mapToDouble(metric)
+                .filter(v -> v > 0)
+                .average()
+                .orElse(0);
+    }
+
+    /**
+     * Average split of a run's wall-clock time, for runs whose provider reported server-side timings. Queueing
+     * is server time not spent loading, processing the prompt or generating; client overhead is wall-clock
+     * time the server never saw (network, serialization, tool execution).
+     */
+    TimingBreakdown getTimingBreakdown() {
+        List<TestRun> timed = runs.stream().filter(r -> r.serverTotalMs > 0).toList();
+        if (timed.isEmpty()) {
+            return TimingBreakdown.NONE;
+        }
+        double queue = 0, load = 0, prompt = 0, generation = 0, client = 0;
+        for (TestRun run : timed) {
+            queue += Math.max(0, run.serverTotalMs - run.loadDurationMs - run.promptEvalMs - run.evalMs);
+            load += run.loadDurationMs;
+            prompt += run.promptEvalMs;
+            generation += run.evalMs;
+            client += Math.max(0, run.executionTimeMs - run.serverTotalMs);
+        }
+        int n = timed.size();
+        return new TimingBreakdown(queue / n, load / n, prompt / n, generation / n, client / n);
+    }
+
+    record TimingBreakdown(double queueMs, double loadMs, double promptEvalMs, double evalMs, double clientMs) {
+        static final TimingBreakdown NONE = new TimingBreakdown(0, 0, 0, 0, 0);
+
+        double totalMs() {
+            return queueMs + loadMs + promptEvalMs + evalMs + clientMs;
+        }
+
+        boolean isEmpty() {
+            return totalMs() == 0;
+        }
+    }
+
+    Interval getSuccessRateInterval(double z) {
+        int n = runs.size();
+        if (n == 0) {
+            return new Interval(0, 1);
+        }
+        // Wilson score interval: well-behaved at 0% and 100% with only a handful of runs
+        double p = getSuccessRate();
+        double z2 = z * z;
+        double denominator = 1 + z2 / n;
+        double center = (p + z2 / (2.0 * n)) / denominator;
+        double margin = z * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / denominator;
+        return new Interval(Math.max(0, center - margin), Math.min(1, center + margin));
+    }
+
+    /** Confidence interval on mean latency, ignoring runs that failed before the clock started (time 0). */
+    Interval getLatencyInterval(double z) {
+        return meanInterval(runs.stream().mapToDouble(r -> r.executionTimeMs).filter(t -> t > 0).toArray(), z);
+    }
+
+    Interval getAccuracyInterval(double z) {
+        return meanInterval(runs.stream().filter(r -> r.success).mapToDouble(r -> r.accuracyScore).toArray(), z);
+    }
+
+    /**
+     * True when this model is clearly worse than {@code leader}: its success-rate or accuracy interval lies
+     * entirely below the leader's, or it is both slower (non-overlapping latency intervals) and no cheaper
+     * or more accurate.
+     */
+    boolean isDominatedBy(TestResults leader, double z) {
+        if (getSuccessRateInterval(z).upper() < leader.getSuccessRateInterval(z).lower()) {
+            return true;
+        }
+        if (getAccuracyInterval(z).upper() < leader.getAccuracyInterval(z).lower()) {
+            return true;
+        }
+        return getLatencyInterval(z).lower() > leader.getLatencyInterval(z).upper()
+               && getAverageCost() >= leader.getAverageCost()
+               && getAverageAccuracy() <= leader.getAverageAccuracy()
+               && getSuccessRate() <= leader.getSuccessRate();
+    }
+
+    private static Interval meanInterval(double[] values, double z) {
+        int n = values.length;
+        if (n == 0) {
+            return new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        double mean = Arrays.stream(values).average().orElse(0);
+        if (n == 1) {
+            return new Interval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+        double variance = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum() / (n - 1);
+        double margin = z * Math.sqrt(variance / n);
+        return new Interval(mean - margin, mean + margin);
+    }
+
+    record Interval(double lower, double upper) {
+        double center() {
+            return (lower + upper) / 2;
+        }
+
+        double halfWidth() {
+            return (upper - lower) / 2;
+        }
+    }
 }
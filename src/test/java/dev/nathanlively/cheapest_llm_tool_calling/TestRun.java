@@ -1,12 +1,33 @@
 package dev.nathanlively.cheapest_llm_tool_calling;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 class TestRun {
     long executionTimeMs;
     boolean success;
     String error;
+    // Summed over every turn of the run, not just the last one
     int promptTokens;
     int completionTokens;
     double cost;
     int toolCallsMade;
+    // Redundant writes a coalescing tool service did not send
+    int toolCallsSaved;
     double accuracyScore;
+    // Measured by local providers, zero when not reported
+    long loadDurationMs;
+    // Server-side time of all model calls in the run, from Ollama's total/prompt-eval/eval durations
+    long serverTotalMs;
+    long promptEvalMs;
+    long evalMs;
+    double promptEvalTokensPerSecond;
+    double evalTokensPerSecond;
+    long diskSizeBytes;
+    long residentMemoryBytes;
+    // Part of the resident memory in VRAM; less than resident means layers were offloaded to the CPU
+    long vramBytes;
+    // Time and bytes each advisor added, one entry per turn, when the provider has advisor timings
+    List<Map<String, AdvisorTimings.Sample>> advisorTurns = new ArrayList<>();
 }
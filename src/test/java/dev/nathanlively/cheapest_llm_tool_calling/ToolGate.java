@@ -0,0 +1,55 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exactly-once ownership of one turn's tool side effects when several legs race on the same prompt. The
+ * first leg to call a tool, or to finish, owns the turn; any other leg that tries either is cancelled.
+ */
+final class ToolGate {
+    private final AtomicReference<@Nullable String> owner = new AtomicReference<>();
+
+    void claim(String leg) {
+        if (!owner.compareAndSet(null, leg) && !leg.equals(owner.get())) {
+            throw new CancellationException(leg + " lost the turn to " + owner.get());
+        }
+    }
+
+    @Nullable
+    String owner() {
+        return owner.get();
+    }
+
+    ToolCallback guard(String leg, ToolCallback delegate) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return delegate.getToolDefinition();
+            }
+
+            @Override
+            public ToolMetadata getToolMetadata() {
+                return delegate.getToolMetadata();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                claim(leg);
+                return delegate.call(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, @Nullable ToolContext toolContext) {
+                claim(leg);
+                return delegate.call(toolInput, toolContext);
+            }
+        };
+    }
+}
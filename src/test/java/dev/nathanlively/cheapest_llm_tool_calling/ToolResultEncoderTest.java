@@ -0,0 +1,52 @@
+package dev.nathanlively.cheapest_llm_tool_calling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ToolResultEncoderTest {
+    private static final String SET = "setSingleParameter";
+    private static final String SET_MANY = "setMultipleParameters";
+    private static final String GET = "getParameter";
+    private static final String KICK = "{\"path\":\"ch.0.cfg.name\",\"value\":\"Kick\",\"status\":\"SUCCESS\"}";
+    private static final String DRUMS = "[" + KICK + ","
+                                        + "{\"path\":\"ch.1.cfg.name\",\"value\":\"Snare\",\"status\":\"SUCCESS\"},"
+                                        + "{\"path\":\"ch.1.cfg.name\",\"value\":\"Snare-Top\",\"status\":\"SUCCESS\"}]";
+
+    @Test
+    void compactWritesOneLinePerResponse() {
+        assertThat(ToolResultEncoder.COMPACT.encode(SET, KICK, List.of())).isEqualTo("ch.0.cfg.name=Kick ✓");
+        assertThat(ToolResultEncoder.COMPACT.encode(GET,
+                "{\"path\":\"ch.99.cfg.name\",\"value\":null,\"status\":\"NOT_FOUND\"}", List.of()))
+                .isEqualTo("ch.99.cfg.name=null ✗ NOT_FOUND");
+    }
+
+    @Test
+    void deltaListsOnlyNewValues() {
+        String earlier = ToolResultEncoder.DELTA.encode(SET, KICK, List.of());
+
+        assertThat(ToolResultEncoder.DELTA.encode(SET_MANY, DRUMS, List.of(earlier)))
+                .isEqualTo("ch.1.cfg.name=Snare-Top ✓\n1 unchanged ✓");
+        assertThat(ToolResultEncoder.DELTA.encode(SET, KICK, List.of(DRUMS))).isEqualTo("1 unchanged ✓");
+    }
+
+    @Test
+    void deltaAlwaysAnswersReads() {
+        String firstRead = ToolResultEncoder.DELTA.encode(GET, KICK, List.of());
+        String secondRead = ToolResultEncoder.DELTA.encode(GET, KICK, List.of(firstRead));
+
+        assertThat(firstRead).isEqualTo("ch.0.cfg.name=Kick ✓");
+        assertThat(secondRead).isEqualTo("ch.0.cfg.name=Kick ✓");
+    }
+
+    @Test
+    void leavesOtherResultsAlone() {
+        String weather = "{\"location\":\"Tokyo\",\"temperature\":18}";
+
+        assertThat(ToolResultEncoder.COMPACT.encode("getWeather", weather, List.of())).isEqualTo(weather);
+        assertThat(ToolResultEncoder.DELTA.encode("getWeather", "Sunny", List.of())).isEqualTo("Sunny");
+        assertThat(ToolResultEncoder.JSON.encode(SET, KICK, List.of())).isEqualTo(KICK);
+    }
+}